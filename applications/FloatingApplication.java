@@ -233,6 +233,7 @@ public class FloatingApplication extends Application {
 
 		rng = null;
 		super.setAppID(APP_ID);
+		super.subscribe("floating");
 
 	}
     
@@ -388,7 +389,7 @@ public class FloatingApplication extends Application {
 	switch (mode) {
 	case MODE_FIXED_ANCHOR:
 	    // Note: Also here we use the real location and not the perceived one
-	    if (curTime - lastMessage >= interval) {
+	    if (curTime >= lastMessage + interval) {
 		location = host.getLocation();
 		distance = location.distance (anchor);
 		
@@ -410,6 +411,10 @@ public class FloatingApplication extends Application {
 		    m.setTtl ((int) (ttl));
 		}
 	    }
+	    if (!flux) {
+		/* nothing to do before the next message is due */
+		super.setNextUpdate(lastMessage + interval);
+	    }
 	    break;
 	    
 	case MODE_VARIABLE_ANCHOR:
@@ -90,6 +90,9 @@ public class PingApplication extends Application {
 		
 		rng = new Random(this.seed);
 		super.setAppID(APP_ID);
+		super.subscribe("ping");
+		super.subscribe("pong");
+		scheduleNextPing();
 	}
 	
 	/** 
@@ -174,7 +177,7 @@ public class PingApplication extends Application {
 	public void update(DTNHost host) {
 		if (this.passive) return;
 		double curTime = SimClock.getTime();
-		if (curTime - this.lastPing >= this.interval) {
+		if (curTime >= this.lastPing + this.interval) {
 			// Time to send a new ping
 			Message m = new Message(host, randomHost(), "ping" +
 					SimClock.getIntTime() + "-" + host.getAddress(),
@@ -188,6 +191,16 @@ public class PingApplication extends Application {
 			
 			this.lastPing = curTime;
 		}
+		scheduleNextPing();
+	}
+	
+	/**
+	 * Schedules the next update of the application to the time of the next
+	 * ping (or never for passive instances)
+	 */
+	private void scheduleNextPing() {
+		super.setNextUpdate(this.passive ? NEVER : 
+			this.lastPing + this.interval);
 	}
 
 	/**
@@ -202,6 +215,7 @@ public class PingApplication extends Application {
 	 */
 	public void setLastPing(double lastPing) {
 		this.lastPing = lastPing;
+		scheduleNextPing();
 	}
 
 	/**
@@ -216,6 +230,7 @@ public class PingApplication extends Application {
 	 */
 	public void setInterval(double interval) {
 		this.interval = interval;
+		scheduleNextPing();
 	}
 
 	/**
@@ -230,6 +245,7 @@ public class PingApplication extends Application {
 	 */
 	public void setPassive(boolean passive) {
 		this.passive = passive;
+		scheduleNextPing();
 	}
 
 	/**
@@ -4,7 +4,9 @@
  */
 package core;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
@@ -17,7 +19,12 @@ import java.util.List;
  * 
  * <p>
  * In addition, the application's <code>update()</code> method is called every
- * simulation cycle.
+ * simulation cycle, unless the application has scheduled its next update
+ * with {@link #setNextUpdate(double)}; then <code>update()</code> is not
+ * called before the scheduled time. Applications can also subscribe to
+ * message types (the value of the message's {@value #TYPE_PROPERTY} 
+ * property) with {@link #subscribe(String)}; then only messages of the
+ * subscribed types are passed to <code>handle()</code>.
  * </p>
  * 
  * <p>
@@ -33,10 +40,20 @@ import java.util.List;
  * @author teemuk
  */
 public abstract class Application {
+	/** Name of the message property that defines the message type for 
+	 * message type subscriptions ({@value}) */
+	public static final String TYPE_PROPERTY = "type";
+	/** Next update time of applications that don't need updates */
+	public static final double NEVER = Double.MAX_VALUE;
 
 	private List<ApplicationListener> aListeners = null;
 	
 	public String	appID	= null;
+	
+	/** the message types the application handles (null = all types) */
+	private Set<String> messageTypes = null;
+	/** simulation time when the application wants its next update */
+	private double nextUpdate = 0;
 
 	public Application(){	
 	}
@@ -49,6 +66,8 @@ public abstract class Application {
 	public Application(Application app){	
 		this.aListeners = app.getAppListeners();
 		this.appID = app.appID;
+		this.messageTypes = app.messageTypes;
+		this.nextUpdate = app.nextUpdate;
 	}
 	
 	/**
@@ -69,12 +88,62 @@ public abstract class Application {
 	
 
 	/** 
-	 * Called every simulation cycle.
+	 * Called every simulation cycle (from the time set with 
+	 * {@link #setNextUpdate(double)} on).
 	 * 
 	 * @param host	The host this application instance is attached to.
 	 */
 	public abstract void update(DTNHost host);
 	
+	/**
+	 * Schedules the next update of the application: {@link #update(DTNHost)}
+	 * is not called before the given simulation time. Applications that
+	 * don't call this method are updated every simulation cycle.
+	 * 
+	 * @param time	The time of the next update or {@link #NEVER}.
+	 */
+	public void setNextUpdate(double time) {
+		this.nextUpdate = time;
+	}
+	
+	/**
+	 * Returns the simulation time the application wants its next update.
+	 * 
+	 * @return	The time of the next update.
+	 */
+	public double getNextUpdate() {
+		return this.nextUpdate;
+	}
+	
+	/**
+	 * Subscribes the application to a message type. Once the application 
+	 * has subscribed to one or more types, only the messages whose
+	 * {@value #TYPE_PROPERTY} property is one of the subscribed types are 
+	 * passed to {@link #handle(Message, DTNHost)}. Should be called only 
+	 * when the application is created.
+	 * 
+	 * @param type	The message type.
+	 */
+	protected void subscribe(String type) {
+		if (this.messageTypes == null) {
+			this.messageTypes = new HashSet<String>();
+		}
+		this.messageTypes.add(type);
+	}
+	
+	/**
+	 * Returns true if the application handles the message, i.e., it has not
+	 * subscribed to any message types or the message is of a subscribed
+	 * type.
+	 * 
+	 * @param msg	The message.
+	 * @return	True if the message should be passed to the application.
+	 */
+	public boolean isSubscribed(Message msg) {
+		return this.messageTypes == null ||
+			this.messageTypes.contains(msg.getProperty(TYPE_PROPERTY));
+	}
+	
 	/** 
 	 * <p>
 	 * Returns an unique application ID. The application will only receive
@@ -49,8 +49,14 @@ public class CBRConnection extends Connection {
 			"start transfer of " + m + " from " + from;
 
 		this.msgFromNode = from;
+		/* ask first so that denied messages are not replicated */
+		int retVal = getOtherNode(from).offerMessage(m, from);
+		if (retVal != MessageRouter.RCV_OK) {
+			return retVal;
+		}
+
 		Message newMessage = m.replicate();
-		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+		retVal = getOtherNode(from).receiveMessage(newMessage, from);
 
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
@@ -187,6 +187,28 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public Coord getLocation() {
 		return this.location;
+	}
+
+	/**
+	 * Returns the current velocity of this host, i.e., how much the
+	 * coordinates of the host change per second while it moves towards its
+	 * current waypoint.
+	 * @return The velocity (a new Coord; zero if the host isn't moving)
+	 */
+	public Coord getVelocity() {
+		if (this.destination == null || !isMovementActive() ||
+				SimClock.getTime() < this.nextTimeToMove) {
+			return new Coord(0, 0);
+		}
+		double distance = this.location.distance(this.destination);
+		if (distance == 0) {
+			return new Coord(0, 0);
+		}
+		return new Coord(
+				this.speed * (this.destination.getX() - this.location.getX()) /
+					distance,
+				this.speed * (this.destination.getY() - this.location.getY()) /
+					distance);
 	}
 
 	/**
@@ -440,6 +462,17 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router.sendMessage(id, to);
 	}
 
+	/**
+	 * Asks if this host would accept a message from another host
+	 * @param m The message
+	 * @param from Who the message is from
+	 * @return The value returned by 
+	 * {@link MessageRouter#offerMessage(Message, DTNHost)}
+	 */
+	public int offerMessage(Message m, DTNHost from) {
+		return this.router.offerMessage(m, from);
+	}
+
 	/**
 	 * Start receiving a message from another host
 	 * @param m The message
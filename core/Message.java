@@ -34,6 +34,10 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Dense indices of the message IDs created so far */
+	private static Map<String, Integer> idIndices;
+	/** Dense index of the ID of this message (or -1 if not resolved yet) */
+	private int idIndex;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -57,6 +61,8 @@ public class Message implements Comparable<Message> {
 	
 	//lyx
 	private String dataName;
+	/** interned ID of the data name (-1 if the message has no data name) */
+	private int dataId;
 	
 	static {
 		reset();
@@ -78,6 +84,7 @@ public class Message implements Comparable<Message> {
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
+		this.idIndex = -1;
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -86,6 +93,7 @@ public class Message implements Comparable<Message> {
 		this.requestMsg = null;
 		this.properties = null;
 		this.appID = null;
+		this.dataId = -1;
 		
 		Message.nextUniqueId++;
 		addNodeOnPath(from);
@@ -101,6 +109,7 @@ public class Message implements Comparable<Message> {
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
+		this.idIndex = -1;
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -110,6 +119,7 @@ public class Message implements Comparable<Message> {
 		this.properties = null;
 		this.appID = null;
 		this.dataName = dataName;
+		this.dataId = -1;
 		
 		Message.nextUniqueId++;
 		addNodeOnPath(from);
@@ -127,6 +137,22 @@ public class Message implements Comparable<Message> {
 		return this.dataName;
 	}
 	
+	/**
+	 * Sets the interned ID of the message's data name
+	 * @param dataId The ID (see {@link routing.nddr.ContentCatalog})
+	 */
+	public void setDataId(int dataId) {
+		this.dataId = dataId;
+	}
+	
+	/**
+	 * Returns the interned ID of the message's data name
+	 * @return The ID or -1 if the message has no data name
+	 */
+	public int getDataId() {
+		return this.dataId;
+	}
+	
 	//lyx
 	public void setTo(DTNHost dest) {
 		this.to = dest;
@@ -169,6 +195,47 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 	
+	/**
+	 * Returns a dense, non-negative index of the ID of this message. All
+	 * messages (and replicates) with the same ID share the same index and the
+	 * indices are given in the order the IDs are first seen, so they are
+	 * suitable for indexing e.g. bit sets.
+	 * @return The index of the message ID
+	 */
+	public int getIdIndex() {
+		if (this.idIndex < 0) {
+			this.idIndex = getIdIndex(this.id);
+		}
+		return this.idIndex;
+	}
+	
+	/**
+	 * Returns the dense index of a message ID. A new index is given for
+	 * IDs that haven't been seen before.
+	 * @param id The message ID
+	 * @return The index of the ID
+	 * @see #getIdIndex()
+	 */
+	public static int getIdIndex(String id) {
+		Integer index = idIndices.get(id);
+		if (index == null) {
+			index = idIndices.size();
+			idIndices.put(id, index);
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the dense index of a message ID without giving new indices
+	 * @param id The message ID
+	 * @return The index of the ID or -1 if the ID hasn't been seen before
+	 * @see #getIdIndex(String)
+	 */
+	public static int findIdIndex(String id) {
+		Integer index = idIndices.get(id);
+		return index == null ? -1 : index;
+	}
+	
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -223,6 +290,19 @@ public class Message implements Comparable<Message> {
 		}
 	}
 	
+	/**
+	 * Returns the simulation time when the TTL of this message runs out or
+	 * Double.MAX_VALUE if the TTL is infinite.
+	 * @return The expiry time
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated +
+			(ttlAsSeconds ? this.initTtl : this.initTtl * 60.0);
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -314,6 +394,10 @@ public class Message implements Comparable<Message> {
 		this.initTtl = m.initTtl;
 		this.appID = m.appID;
 		this.dataName = m.dataName; // add by lyx
+		this.dataId = m.dataId;
+		if (this.id.equals(m.id)) {
+			this.idIndex = m.idIndex;
+		}
 		
 		if (m.properties != null) {
 			Set<String> keys = m.properties.keySet();
@@ -396,6 +480,7 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		idIndices = new HashMap<String, Integer>();
 		Settings s = new Settings();
 		ttlAsSeconds = s.getBoolean(TTL_SECONDS_S, false);
 	}
@@ -18,6 +18,7 @@ import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 
 import movement.Path;
+import routing.MessageRouter;
 import ui.DTNSimUI;
 import core.Coord;
 import core.DTN2Manager;
@@ -99,6 +100,8 @@ public class DTNSimGUI extends DTNSimUI {
 		double simTime = SimClock.getTime();
 		double endTime = scen.getEndTime();
 		
+		// keep delivered messages' paths for the routing info panel
+		MessageRouter.setKeepDeliveredMessages(true);
 		startGUI();
 		
 		// Startup DTN2Manager
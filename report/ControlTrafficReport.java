@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimScenario;
+
+/**
+ * Reports the amount of routing control traffic (e.g., summary vectors)
+ * the routers have sent compared to the amount of relayed message data.
+ * Control traffic is reported per traffic type and as a ratio to the relayed
+ * message bytes. Messages created during the warm up period are ignored
+ * (control traffic is not).
+ */
+public class ControlTrafficReport extends Report implements MessageListener {
+	private int nrofStarted;
+	private int nrofRelayed;
+	private long relayedBytes;
+
+	/**
+	 * Constructor.
+	 */
+	public ControlTrafficReport() {
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.nrofStarted = 0;
+		this.nrofRelayed = 0;
+		this.relayedBytes = 0;
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		if (isWarmupID(m.getId())) {
+			return;
+		}
+		this.nrofStarted++;
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		if (isWarmupID(m.getId())) {
+			return;
+		}
+		this.nrofRelayed++;
+		this.relayedBytes += m.getSize();
+	}
+
+	public void newMessage(Message m) {
+		if (isWarmup()) {
+			addWarmupID(m.getId());
+		}
+	}
+
+	// nothing to do for the rest of the messages
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
+
+	@Override
+	public void done() {
+		Map<String, Long> traffic = new TreeMap<String, Long>();
+		long controlBytes = 0;
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			for (Map.Entry<String, Long> e :
+					h.getRouter().getControlTraffic().entrySet()) {
+				Long old = traffic.get(e.getKey());
+				traffic.put(e.getKey(), (old == null ? 0 : old) + e.getValue());
+				controlBytes += e.getValue();
+			}
+		}
+
+		double ratio = Double.NaN;
+		if (this.relayedBytes > 0) {
+			ratio = (1.0 * controlBytes) / this.relayedBytes;
+		}
+
+		write("Control traffic for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("started: " + this.nrofStarted +
+				"\nrelayed: " + this.nrofRelayed +
+				"\nrelayed_bytes: " + this.relayedBytes +
+				"\ncontrol_bytes: " + controlBytes +
+				"\ncontrol_ratio: " + format(ratio));
+		for (Map.Entry<String, Long> e : traffic.entrySet()) {
+			write(e.getKey() + "_bytes: " + e.getValue());
+		}
+		super.done();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.MessageRouter;
+import routing.NDDRRouter;
+import routing.nddr.ChunkRetrieval;
+import routing.nddr.ContentCatalog;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports the chunked retrievals of the NDDR routers (see
+ * {@link NDDRRouter#CHUNK_SIZE_S}). For every completed object, a line
+ * with the consumer, the object name, number of chunks, size, request time
+ * and completion time (seconds from the request to the last chunk) is
+ * written. The summary tells how many of the objects were completed (and
+ * how many of them were completed instantly from the consumer's own
+ * content store; those are not included in the completion time
+ * statistics), how many were left partially received, and how many bytes
+ * the chunking saved
+ * from being resent compared with whole object transfers (see
+ * {@link NDDRRouter#getChunkBytesSaved()}) versus how many bytes were still
+ * lost in aborted transfers. The retrievals are collected at the end of
+ * the simulation, so warm up period is not taken into account.
+ */
+public class NDDRChunkReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public NDDRChunkReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		ContentCatalog catalog = ContentCatalog.getInstance();
+		List<Double> completionTimes = new ArrayList<Double>();
+		int nrofRequested = 0;
+		int nrofPartial = 0;
+		int nrofLocal = 0;
+		long chunksReceived = 0;
+		long bytesSaved = 0;
+		long abortedBytes = 0;
+
+		write("Chunked retrievals for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("host object chunks size requested completion_time");
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof NDDRRouter)) {
+				continue;
+			}
+			NDDRRouter nddr = (NDDRRouter)r;
+			for (ChunkRetrieval cr : nddr.getRetrievals()) {
+				nrofRequested++;
+				chunksReceived += cr.getNrofReceived();
+				if (cr.isComplete()) {
+					double time = cr.getCompletionTime() - cr.getStartTime();
+					if (time > 0) {
+						completionTimes.add(time);
+					} else {
+						nrofLocal++;
+					}
+					write(h + " " + catalog.getName(cr.getObjectId()) + " " +
+							cr.getNrofChunks() + " " + cr.getSize() + " " +
+							format(cr.getStartTime()) + " " + format(time));
+				} else if (cr.getNrofReceived() > 0) {
+					nrofPartial++;
+				}
+			}
+			bytesSaved += nddr.getChunkBytesSaved();
+			abortedBytes += nddr.getAbortedBytes();
+		}
+
+		double completionRatio = Double.NaN;
+		if (nrofRequested > 0) {
+			completionRatio = (1.0 * (completionTimes.size() + nrofLocal)) / 
+				nrofRequested;
+		}
+
+		write("\nrequested: " + nrofRequested +
+				"\ncompleted: " + (completionTimes.size() + nrofLocal) +
+				"\ncompleted_locally: " + nrofLocal +
+				"\ncompletion_ratio: " + format(completionRatio) +
+				"\npartial: " + nrofPartial +
+				"\nchunks_received: " + chunksReceived +
+				"\ncompletion_time_avg: " + getAverage(completionTimes) +
+				"\ncompletion_time_med: " + getMedian(completionTimes) +
+				"\nbytes_saved: " + bytesSaved +
+				"\naborted_bytes: " + abortedBytes);
+		super.done();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.MessageRouter;
+import routing.NDDRRouter;
+import routing.nddr.CachingStrategy;
+import routing.nddr.ContentStore;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports the hit, miss, insertion, eviction and rejection counts of the
+ * NDDR routers' content stores (see {@link ContentStore}), summed over all
+ * the hosts, the caching decisions of the routers' caching strategies (see
+ * {@link CachingStrategy}) and the cache occupancy at the end of the
+ * simulation. Lookups of the data a host produces itself are not counted.
+ * The counts are collected from the routers at the end of the simulation,
+ * so warm up period is not taken into account.
+ */
+public class NDDRContentStoreReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public NDDRContentStoreReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		long hits = 0;
+		long misses = 0;
+		long insertions = 0;
+		long evictions = 0;
+		long rejections = 0;
+		long usedBytes = 0;
+		int entries = 0;
+		int nrofStores = 0;
+		String storeType = "";
+		long decisions = 0;
+		long admissions = 0;
+		String strategy = "";
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof NDDRRouter)) {
+				continue;
+			}
+			ContentStore cs = ((NDDRRouter)r).getContentStore();
+			hits += cs.getNrofHits();
+			misses += cs.getNrofMisses();
+			insertions += cs.getNrofInsertions();
+			evictions += cs.getNrofEvictions();
+			rejections += cs.getNrofRejections();
+			usedBytes += cs.getUsed();
+			entries += cs.size();
+			nrofStores++;
+			storeType = cs.getClass().getSimpleName();
+			CachingStrategy caching = ((NDDRRouter)r).getCachingStrategy();
+			decisions += caching.getNrofDecisions();
+			admissions += caching.getNrofAdmissions();
+			strategy = caching.getClass().getSimpleName();
+		}
+
+		double hitRatio = Double.NaN;
+		if (hits + misses > 0) {
+			hitRatio = (1.0 * hits) / (hits + misses);
+		}
+
+		write("Content stores for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		double admissionRatio = Double.NaN;
+		if (decisions > 0) {
+			admissionRatio = (1.0 * admissions) / decisions;
+		}
+
+		write("stores: " + nrofStores + " " + storeType +
+				"\ncaching: " + strategy +
+				"\ncaching_decisions: " + decisions +
+				"\nadmission_ratio: " + format(admissionRatio) +
+				"\nhits: " + hits +
+				"\nmisses: " + misses +
+				"\nhit_ratio: " + format(hitRatio) +
+				"\ninsertions: " + insertions +
+				"\nevictions: " + evictions +
+				"\nrejections: " + rejections +
+				"\ncached_entries: " + entries +
+				"\ncached_bytes: " + usedBytes);
+		super.done();
+	}
+}
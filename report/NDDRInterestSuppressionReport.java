@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Map;
+
+import routing.MessageRouter;
+import routing.NDDRRouter;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports the effect of NDDR Interest suppression (see
+ * {@link NDDRRouter#SUPPRESSION_S}): how many Interest transfers were
+ * started and how many were suppressed because the peer's interest digest
+ * said the peer already had the Interest pending. The digest only contains
+ * the (data ID, requester) keys of the peer's PIT entries; whether the peer
+ * could satisfy the Interest isn't considered. The false positives are the
+ * suppressions the digest got wrong, i.e., Interests whose key wasn't in
+ * the peer's PIT after all. The digest bytes are the cost of the exchanged
+ * digests. The counts are summed over all the hosts at the end of the
+ * simulation, so warm up period is not taken into account.
+ */
+public class NDDRInterestSuppressionReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public NDDRInterestSuppressionReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		long sent = 0;
+		long suppressed = 0;
+		long falsePositives = 0;
+		long digestBytes = 0;
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof NDDRRouter)) {
+				continue;
+			}
+			NDDRRouter nddr = (NDDRRouter)r;
+			sent += nddr.getNrofInterestsSent();
+			suppressed += nddr.getNrofInterestsSuppressed();
+			falsePositives += nddr.getNrofFalseSuppressions();
+			Map<String, Long> traffic = r.getControlTraffic();
+			Long bytes = traffic.get(NDDRRouter.INTEREST_DIGEST_TRAFFIC);
+			if (bytes != null) {
+				digestBytes += bytes;
+			}
+		}
+
+		double suppressionRatio = Double.NaN;
+		if (sent + suppressed > 0) {
+			suppressionRatio = (1.0 * suppressed) / (sent + suppressed);
+		}
+		double fpRate = Double.NaN;
+		if (suppressed > 0) {
+			fpRate = (1.0 * falsePositives) / suppressed;
+		}
+
+		write("Interest suppression for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("interests_sent: " + sent +
+				"\nsuppressed: " + suppressed +
+				"\nsuppression_ratio: " + format(suppressionRatio) +
+				"\nfalse_positives: " + falsePositives +
+				"\nfalse_positive_ratio: " + format(fpRate) +
+				"\ndigest_bytes: " + digestBytes);
+		super.done();
+	}
+}
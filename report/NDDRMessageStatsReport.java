@@ -25,10 +25,10 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 	private List<Integer> hopCountsOfData;
 	private List<Double> msgBufferTime;
 	private List<Double> rtt; // round trip times
-	private HashSet<String> interestCreateSet;
-	private HashSet<String> interestDeliverySet;
-	private HashSet<String> dataCreateSet;
-	private HashSet<String> dataDeliverySet;
+	private HashSet<Long> interestCreateSet;
+	private HashSet<Long> interestDeliverySet;
+	private HashSet<Long> dataCreateSet;
+	private HashSet<Long> dataDeliverySet;
 
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -61,10 +61,10 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 		this.msgBufferTime = new ArrayList<Double>();
 		this.hopCountsOfData = new ArrayList<Integer>();
 		this.rtt = new ArrayList<Double>();
-		this.interestCreateSet = new HashSet<String>();
-		this.interestDeliverySet = new HashSet<String>();
-		this.dataCreateSet = new HashSet<String>();
-		this.dataDeliverySet = new HashSet<String>();
+		this.interestCreateSet = new HashSet<Long>();
+		this.interestDeliverySet = new HashSet<Long>();
+		this.dataCreateSet = new HashSet<Long>();
+		this.dataDeliverySet = new HashSet<Long>();
 
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -93,7 +93,7 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 			this.nrofRemoved++;
 			if(m.getProperty(NDDRRouter.TYPE).equals(NDDRRouter.TYPE_INTEREST)){
 				this.nrofDelivered++; // delivery of interest
-				if (this.interestDeliverySet.add(m.getFrom() + "_" + m.getDataName())) 
+				if (this.interestDeliverySet.add(key(m.getFrom(), m))) 
 					this.nrofDifferentInterestsFromDifferentHostsDelivered++;
 			}
 		}
@@ -101,6 +101,13 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 		this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
 	}
 
+	/**
+	 * Returns a (host, data ID) key for the sets of different messages
+	 */
+	private static long key(DTNHost host, Message m) {
+		return ((long)host.getAddress() << 32) | (m.getDataId() & 0xFFFFFFFFL);
+	}
+
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
 		if (isWarmupID(m.getId())) {
 			return;
@@ -118,7 +125,7 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 		this.nrofRelayed++;
 		if (finalTarget) {
 			this.nrofDelivered++; //delivery of data
-			if (this.dataDeliverySet.add(m.getTo() + "_" + m.getDataName())) {
+			if (this.dataDeliverySet.add(key(m.getTo(), m))) {
 				this.nrofDifferentDataDeliveredToDifferentHosts++;
 				this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
 				this.hopCountsOfData.add(m.getHops().size() - 1);
@@ -134,13 +141,13 @@ public class NDDRMessageStatsReport extends Report implements MessageListener {
 		this.creationTimes.put(m.getId(), getSimTime());
 		this.nrofCreated++;
 		if (m.getProperty(NDDRRouter.TYPE).equals(NDDRRouter.TYPE_DATA)) {
-			if (this.dataCreateSet.add(m.getTo() + "_" + m.getDataName())) {
+			if (this.dataCreateSet.add(key(m.getTo(), m))) {
 				this.nrofDifferentDataCreatedToDifferentHosts++;
 			}
 		}
 		if (m.getProperty(NDDRRouter.TYPE).equals(NDDRRouter.TYPE_INTEREST)) {
 			this.nrofInterestCreated++;
-			if (this.interestCreateSet.add(m.getFrom() + "_" + m.getDataName())) {
+			if (this.interestCreateSet.add(key(m.getFrom(), m))) {
 				this.nrofDifferentInterestsCreatedOnDifferentHosts++;
 			}
 		}
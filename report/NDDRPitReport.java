@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.MessageRouter;
+import routing.NDDRRouter;
+import routing.nddr.PendingInterestTable;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports how the Interests were handled by the NDDR routers' Pending
+ * Interest Tables (see {@link PendingInterestTable}): how many entries were
+ * created, how many Interests were aggregated to existing entries, and how
+ * many entries were satisfied by Data or expired. The counts are summed
+ * over all the hosts at the end of the simulation, so warm up period is not
+ * taken into account.
+ */
+public class NDDRPitReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public NDDRPitReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		long created = 0;
+		long aggregated = 0;
+		long duplicates = 0;
+		long satisfied = 0;
+		long expired = 0;
+		int entries = 0;
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof NDDRRouter)) {
+				continue;
+			}
+			PendingInterestTable pit =
+				((NDDRRouter)r).getPendingInterestTable();
+			created += pit.getNrofCreated();
+			aggregated += pit.getNrofAggregated();
+			duplicates += pit.getNrofDuplicates();
+			satisfied += pit.getNrofSatisfied();
+			expired += pit.getNrofExpired();
+			entries += pit.size();
+		}
+
+		double aggregationRatio = Double.NaN;
+		if (created + aggregated > 0) {
+			aggregationRatio = (1.0 * aggregated) / (created + aggregated);
+		}
+
+		write("Pending Interest Tables for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("created: " + created +
+				"\naggregated: " + aggregated +
+				"\naggregation_ratio: " + format(aggregationRatio) +
+				"\nduplicates: " + duplicates +
+				"\nsatisfied: " + satisfied +
+				"\nexpired: " + expired +
+				"\nentries_at_end: " + entries);
+		super.done();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.ActiveRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimScenario;
+
+/**
+ * Reports how many of the message transfers were aborted because the
+ * connection broke in the middle of the transfer, and how many bytes were
+ * wasted in the aborted transfers. Useful for evaluating the transfer
+ * planner (see {@link routing.util.TransferPlanner}). The transfer counts
+ * and wasted bytes are collected from the (active) routers at the end of
+ * the simulation, so warm up period is not taken into account.
+ */
+public class TransferAbortReport extends Report implements MessageListener {
+	private long relayedBytes;
+
+	/**
+	 * Constructor.
+	 */
+	public TransferAbortReport() {
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.relayedBytes = 0;
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		this.relayedBytes += m.getSize();
+	}
+
+	// nothing to do for the rest of the messages
+	public void newMessage(Message m) {}
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
+
+	@Override
+	public void done() {
+		int nrofStarted = 0;
+		int nrofAborted = 0;
+		long abortedBytes = 0;
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (r instanceof ActiveRouter) {
+				ActiveRouter ar = (ActiveRouter)r;
+				nrofStarted += ar.getNrofTransfersStarted();
+				nrofAborted += ar.getNrofTransfersAborted();
+				abortedBytes += ar.getAbortedBytes();
+			}
+		}
+
+		double abortRate = Double.NaN;
+		if (nrofStarted > 0) {
+			abortRate = (1.0 * nrofAborted) / nrofStarted;
+		}
+		double wasteRatio = Double.NaN;
+		if (this.relayedBytes + abortedBytes > 0) {
+			wasteRatio = (1.0 * abortedBytes) /
+				(this.relayedBytes + abortedBytes);
+		}
+
+		write("Transfer aborts for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		write("started: " + nrofStarted +
+				"\naborted: " + nrofAborted +
+				"\nabort_rate: " + format(abortRate) +
+				"\nrelayed_bytes: " + this.relayedBytes +
+				"\nwasted_bytes: " + abortedBytes +
+				"\nwaste_ratio: " + format(wasteRatio));
+		super.done();
+	}
+}
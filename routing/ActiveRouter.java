@@ -5,14 +5,19 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.TreeSet;
 
+import routing.eviction.EvictionPolicy;
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import routing.util.TransferPlanner;
+import util.TimerWheel;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
@@ -35,19 +40,65 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	
+	/** Buffer eviction policy -setting id ({@value}). Name of the
+	 * {@link EvictionPolicy} class (from package 
+	 * {@value EvictionPolicy#EVICTION_PACKAGE}) that decides which message
+	 * is dropped first when the buffer is full. 
+	 * Default={@value EvictionPolicy#DEFAULT_POLICY} */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	
+	/** Summary vector exchange -setting id ({@value}). Boolean valued.
+	 * If set to true, routers that both have the setting enabled exchange
+	 * the IDs of the messages they already have when a connection comes
+	 * up and don't offer the peer messages it already has. The exchanged
+	 * vectors are recorded as control traffic of type
+	 * {@value #SUMMARY_VECTOR_TRAFFIC}. Default=false. */
+	public static final String SUMMARY_VECTOR_S = "summaryVector";
+	/** Control traffic type of the summary vectors ({@value}) */
+	public static final String SUMMARY_VECTOR_TRAFFIC = "summaryVector";
+	/** size of one message ID in a summary vector (bytes) */
+	private static final int SUMMARY_ID_SIZE = 4;
 		
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	
-	/** how often TTL check (discarding old messages) is performed */
-	private static int ttlCheckInterval = 60;
+	/** tick length (seconds) of the message expiry timer wheel */
+	private static final double TTL_TIMER_TICK = 1.0;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** expiry timers of the buffered messages */
+	private TimerWheel<Message> expiryTimers;
+	/** the live expiry timers by the message IDs; timers of messages that
+	 * leave the buffer before expiry are cancelled */
+	private HashMap<String, TimerWheel.Timer<Message>> expiryTimerOf;
 	
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** transfer planner (null if transfers aren't planned) */
+	private TransferPlanner planner;
+	/** number of transfers this router has started */
+	private int nrofTransfersStarted;
+	/** number of this router's transfers aborted by a broken connection */
+	private int nrofTransfersAborted;
+	/** bytes sent in the aborted transfers before they were aborted */
+	private long abortedBytes;
+	/** eviction policy (and drop order index) of the message buffer */
+	private EvictionPolicy evictionPolicy;
+	/** was the eviction policy explicitly defined in the settings */
+	private boolean dropPolicySet;
+	/** are summary vectors exchanged with peers */
+	private boolean summaryVector;
+	/** ID indices of the messages the connected peers have according to
+	 * their summary vectors (and transfers done after the exchange) */
+	private HashMap<DTNHost, BitSet> peerSummaries;
+	/** the buffered messages in the order of the sending queue mode */
+	private TreeSet<Message> sendQueue;
+	/** the buffered messages by their final recipient (in sending order) */
+	private HashMap<DTNHost, TreeSet<Message>> destinationQueues;
+	/** per connection send queues: the buffered messages the other end
+	 * hasn't refused as old during the connection (in sending order) */
+	private HashMap<Connection, TreeSet<Message>> connectionQueues;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -60,6 +111,12 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 		
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.summaryVector = s.getBoolean(SUMMARY_VECTOR_S, false);
+		
+		this.dropPolicySet = s.contains(DROP_POLICY_S);
+		this.evictionPolicy = (EvictionPolicy)s.createIntializedObject(
+				EvictionPolicy.EVICTION_PACKAGE + s.getSetting(DROP_POLICY_S, 
+						EvictionPolicy.DEFAULT_POLICY));
 		
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -67,9 +124,11 @@ public abstract class ActiveRouter extends MessageRouter {
 			this.energy = null; /* no energy model */
 		}
 		
-		ttlCheckInterval = 
-				(new Settings().getBoolean(Message.TTL_SECONDS_S, false) 
-						? 1 : 60);
+		if (s.getBoolean(TransferPlanner.TRANSFER_PLANNING_S, false)) {
+			this.planner = new TransferPlanner(s);
+		} else {
+			this.planner = null;
+		}
 	}
 	
 	/**
@@ -79,15 +138,27 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.summaryVector = r.summaryVector;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.planner = (r.planner != null ? r.planner.replicate() : null);
+		this.dropPolicySet = r.dropPolicySet;
+		this.evictionPolicy = r.evictionPolicy.replicate();
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiryTimers = new TimerWheel<Message>(TTL_TIMER_TICK);
+		this.expiryTimerOf = new HashMap<String, TimerWheel.Timer<Message>>();
+		this.evictionPolicy.init(this);
+		this.sendQueue = new TreeSet<Message>(getQueueModeComparator());
+		this.destinationQueues = new HashMap<DTNHost, TreeSet<Message>>();
+		this.connectionQueues = new HashMap<Connection, TreeSet<Message>>();
+		if (this.summaryVector) {
+			this.peerSummaries = new HashMap<DTNHost, BitSet>();
+		}
 	}
 	
 	/**
@@ -101,6 +172,84 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+		if (con.isUp()) {
+			/* new contact may change the routing utilities of messages */
+			invalidateEvictionOrder();
+		} else {
+			this.connectionQueues.remove(con);
+			if (this.planner != null) {
+				this.planner.connectionDown(con);
+			}
+		}
+		if (this.summaryVector) {
+			if (con.isUp()) {
+				sendSummaryVector(con);
+			} else {
+				this.peerSummaries.remove(con.getOtherNode(getHost()));
+			}
+		}
+	}
+	
+	/**
+	 * Sends the summary vector of this router's messages to the other end
+	 * of the connection if the other router uses summary vectors too
+	 * @param con The connection that came up
+	 */
+	private void sendSummaryVector(Connection con) {
+		DTNHost other = con.getOtherNode(getHost());
+		MessageRouter otherRouter = other.getRouter();
+		if (!(otherRouter instanceof ActiveRouter) ||
+				!((ActiveRouter)otherRouter).summaryVector) {
+			return; /* peer doesn't understand summary vectors */
+		}
+		
+		int[] ids = getKnownMessageIds();
+		addControlTraffic(SUMMARY_VECTOR_TRAFFIC, ids.length * SUMMARY_ID_SIZE);
+		((ActiveRouter)otherRouter).summaryVectorReceived(getHost(), ids);
+	}
+	
+	/**
+	 * Stores a summary vector received from a peer
+	 * @param from The peer
+	 * @param ids The ID indices of the messages the peer has
+	 */
+	private void summaryVectorReceived(DTNHost from, int[] ids) {
+		BitSet summary = new BitSet();
+		for (int id : ids) {
+			summary.set(id);
+		}
+		this.peerSummaries.put(from, summary);
+	}
+	
+	/**
+	 * Returns true if the given peer is known to have the message based on
+	 * its summary vector
+	 * @param m The message
+	 * @param peer The peer
+	 * @return true if the peer is known to have the message
+	 */
+	private boolean isKnownByPeer(Message m, DTNHost peer) {
+		if (this.peerSummaries == null) {
+			return false;
+		}
+		BitSet summary = this.peerSummaries.get(peer);
+		return summary != null && summary.get(m.getIdIndex());
+	}
+	
+	/**
+	 * Marks the message known by the peer in the peer's summary vector
+	 * (if summary vectors are used with the peer)
+	 * @param m The message
+	 * @param peer The peer
+	 */
+	private void setKnownByPeer(Message m, DTNHost peer) {
+		if (this.peerSummaries == null) {
+			return;
+		}
+		BitSet summary = this.peerSummaries.get(peer);
+		if (summary != null) {
+			summary.set(m.getIdIndex());
+		}
 	}
 	
 	@Override
@@ -109,33 +258,151 @@ public abstract class ActiveRouter extends MessageRouter {
 			return false;
 		}
 		
-		DTNHost other = con.getOtherNode(getHost());
+		TreeSet<Message> q = 
+			this.destinationQueues.get(con.getOtherNode(getHost()));
+		if (q == null) {
+			return false; /* nothing for the other host */
+		}
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
+		ArrayList<Message> temp = new ArrayList<Message>(q);
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			this.evictionPolicy.messageRemoved(old);
+			removeFromQueues(old);
+		}
+		super.addToMessages(m, newMessage);
+		this.evictionPolicy.messageAdded(m);
+		addToQueues(m);
+		cancelExpiryTimer(m.getId());
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			scheduleExpiry(m, m.getExpiryTime());
+		}
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.evictionPolicy.messageRemoved(m);
+			removeFromQueues(m);
+			cancelExpiryTimer(id);
+		}
+		return m;
+	}
+	
+	/**
+	 * Schedules a buffered message to expire at the given time
+	 * @param m The message
+	 * @param time The expiry time
+	 */
+	private void scheduleExpiry(Message m, double time) {
+		this.expiryTimerOf.put(m.getId(), this.expiryTimers.schedule(m, time));
+	}
+	
+	/**
+	 * Cancels the expiry timer of a message (if it has one)
+	 * @param id ID of the message
+	 */
+	private void cancelExpiryTimer(String id) {
+		TimerWheel.Timer<Message> t = this.expiryTimerOf.remove(id);
+		if (t != null) {
+			this.expiryTimers.cancel(t);
+		}
+	}
+	
+	/**
+	 * Adds a message to the send queues
+	 * @param m The message to add
+	 */
+	private void addToQueues(Message m) {
+		this.sendQueue.add(m);
+		if (m.getTo() != null) {
+			TreeSet<Message> q = this.destinationQueues.get(m.getTo());
+			if (q == null) {
+				q = new TreeSet<Message>(this.sendQueue.comparator());
+				this.destinationQueues.put(m.getTo(), q);
+			}
+			q.add(m);
+		}
+		for (TreeSet<Message> q : this.connectionQueues.values()) {
+			q.add(m);
+		}
+		if (this.planner != null) {
+			this.planner.messageAdded(m);
+		}
+	}
+	
+	/**
+	 * Removes a message from the send queues
+	 * @param m The message to remove
+	 */
+	private void removeFromQueues(Message m) {
+		this.sendQueue.remove(m);
+		if (m.getTo() != null) {
+			TreeSet<Message> q = this.destinationQueues.get(m.getTo());
+			if (q != null) {
+				q.remove(m);
+				if (q.isEmpty()) {
+					this.destinationQueues.remove(m.getTo());
+				}
+			}
+		}
+		for (TreeSet<Message> q : this.connectionQueues.values()) {
+			q.remove(m);
+		}
+		if (this.planner != null) {
+			this.planner.messageRemoved(m);
+		}
+	}
+	
+	/**
+	 * Returns the send queue of a connection. The queue is created (with
+	 * all the buffered messages) the first time it's asked for.
+	 * @param con The connection
+	 * @return The send queue of the connection
+	 */
+	private TreeSet<Message> getConnectionQueue(Connection con) {
+		TreeSet<Message> q = this.connectionQueues.get(con);
+		if (q == null) {
+			q = new TreeSet<Message>(this.sendQueue);
+			this.connectionQueues.put(con, q);
+		}
+		return q;
+	}
+	
 	@Override 
 	public boolean createNewMessage(Message m) {
 		makeRoomForNewMessage(m.getSize());
 		return super.createNewMessage(m);	
 	}
 	
+	@Override
+	public int offerMessage(Message m, DTNHost from) {
+		return checkReceiving(m, from);
+	}
+	
 	@Override
 	public int receiveMessage(Message m, DTNHost from) {
 		int recvCheck = checkReceiving(m, from); 
 		if (recvCheck != RCV_OK) {
 			return recvCheck;
 		}
+		
+		/* remove oldest messages but not the ones being sent */
+		if (!makeRoomForMessage(m.getSize())) {
+			return DENIED_NO_SPACE; // couldn't fit into buffer -> reject
+		}
 
 		// seems OK, start receiving the message
 		return super.receiveMessage(m, from);
@@ -190,9 +457,24 @@ public abstract class ActiveRouter extends MessageRouter {
 			return MessageRouter.DENIED_POLICY;
 		}
 		
-		retVal = con.startTransfer(getHost(), m);
+		if (planner != null && !planner.fits(getHost(), con, m)) {
+			/* the connection would break before the transfer is done */
+			return MessageRouter.DENIED_POLICY;
+		}
+		
+		DTNHost other = con.getOtherNode(getHost());
+		if (isKnownByPeer(m, other)) {
+			retVal = DENIED_OLD; /* don't offer what the peer already has */
+		} else {
+			retVal = con.startTransfer(getHost(), m);
+			if (retVal == DENIED_OLD) {
+				setKnownByPeer(m, other);
+			}
+		}
+		
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
+			this.nrofTransfersStarted++;
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD && 
 				m.getTo() == con.getOtherNode(this.getHost())) {
@@ -221,7 +503,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Checks if router "wants" to start receiving message (i.e. router 
-	 * isn't transferring, doesn't have the message and has room for it).
+	 * isn't transferring, doesn't have the message and the message fits in
+	 * the buffer). Doesn't modify the buffer, so this is used both for the
+	 * offers and the actual receiving; room for the message is made only
+	 * when it is received (see {@link #receiveMessage(Message, DTNHost)}).
 	 * @param m The message to check
 	 * @return A return code similar to 
 	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}, i.e. 
@@ -229,7 +514,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * TRY_LATER_BUSY if router is transferring, DENIED_OLD if the router
 	 * is already carrying the message or it has been delivered to
 	 * this router (as final recipient), or DENIED_NO_SPACE if the message
-	 * does not fit into buffer
+	 * is larger than the whole buffer
 	 */
 	protected int checkReceiving(Message m, DTNHost from) {
 		if (isTransferring()) {
@@ -254,9 +539,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return MessageRouter.DENIED_POLICY;
 		}
 		
-		/* remove oldest messages but not the ones being sent */
-		if (!makeRoomForMessage(m.getSize())) {
-			return DENIED_NO_SPACE; // couldn't fit into buffer -> reject
+		if (m.getSize() > this.getBufferSize()) {
+			return DENIED_NO_SPACE; // can never fit into buffer -> reject
 		}
 		
 		return RCV_OK;
@@ -292,15 +576,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL has expired. Messages that are being sent
+	 * are dropped after the transfer (their expiry is re-checked on the
+	 * next tick of the expiry timer wheel).
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		double now = SimClock.getTime();
+		for (Message m : this.expiryTimers.advance(now)) {
+			if (getMessage(m.getId()) != m) {
+				continue; // message isn't in the buffer anymore
+			}
+			if (isSending(m.getId())) {
+				scheduleExpiry(m, now + TTL_TIMER_TICK);
+				continue;
 			}
+			deleteMessage(m.getId(), true);
 		}
 	}
 	
@@ -317,33 +607,66 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the first message in the drop order of the buffer's eviction
+	 * policy (that is not being sent if excludeMsgBeingSent is true). With
+	 * the default policy, this is the oldest (by receive time) message.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
-	 * (no messages in buffer or all messages in buffer are being sent and
-	 * exludeMsgBeingSent is true)
+	 * being sent from the check (i.e. if the first message is
+	 * being sent, the second one is returned)
+	 * @return The next message to drop or null if no message could be 
+	 * returned (no messages in buffer or all messages in buffer are being 
+	 * sent and exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
+		for (Message m : this.evictionPolicy) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
+	}
+	
+	/**
+	 * Returns the messages in the buffer in the order they should be 
+	 * dropped according to the eviction policy. The buffer must not be
+	 * modified while iterating.
+	 * @return The messages in drop order
+	 */
+	protected Iterable<Message> getMessagesInDropOrder() {
+		return this.evictionPolicy;
+	}
+	
+	/**
+	 * Returns true if the eviction policy was explicitly set for this
+	 * router's group (using {@link #DROP_POLICY_S}). Routers with a
+	 * protocol-specific drop order use it only when no policy is set.
+	 * @return true if the eviction policy was set in the settings
+	 */
+	protected boolean isDropPolicySet() {
+		return this.dropPolicySet;
+	}
+	
+	/**
+	 * Informs the eviction policy that the routing utilities of the
+	 * messages (see {@link #getMessageUtility(Message)}) may have changed.
+	 */
+	protected void invalidateEvictionOrder() {
+		this.evictionPolicy.invalidate();
+	}
+	
+	/**
+	 * Returns the routing utility of a buffered message for this router. 
+	 * Used by utility based eviction policies: messages with the smallest 
+	 * utility are dropped first. Subclasses with routing metrics should 
+	 * override this; the default implementation returns the receive time of
+	 * the message (i.e. oldest messages have the smallest utility).
+	 * @param m The message
+	 * @return The utility of the message
+	 */
+	public double getMessageUtility(Message m) {
+		return m.getReceiveTime();
 	}
 	
 	/**
@@ -359,10 +682,11 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
+		for (Connection con : getConnections()) {
+			TreeSet<Message> q = 
+				this.destinationQueues.get(con.getOtherNode(getHost()));
+			if (q != null) {
+				for (Message m : q) {
 					forTuples.add(new Tuple<Message, Connection>(m,con));
 				}
 			}
@@ -445,9 +769,13 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
-	 * {@link #tryMessagesToConnections(List, List)} for sending details.
+	 * connections this node has. Connections are tried in the order they
+	 * are in the list and for every connection, the messages are tried in the
+	 * order of the connection's send queue (see 
+	 * {@link MessageRouter#getQueueModeComparator()}) until one is accepted
+	 * or the other end asks to try later. Messages that the other end 
+	 * refuses as old (or expired) are removed from the connection's queue
+	 * and not tried again during the connection.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
@@ -456,12 +784,93 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (connections.size() == 0 || this.getNrofMessages() == 0) {
 			return null;
 		}
+		
+		if (this.connectionQueues.size() > connections.size()) {
+			/* some connection went down without us being told */
+			this.connectionQueues.keySet().retainAll(connections);
+			if (this.planner != null) {
+				this.planner.retainConnections(connections);
+			}
+		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (tryQueuedMessages(con, getConnectionQueue(con)) != null) {
+				return con;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Goes trough a send queue until the other node accepts one message
+	 * for receiving, or asks to try later. Messages that are denied as old
+	 * or expired are removed from the queue.
+	 * @param con Connection trough which the messages are sent
+	 * @param queue The send queue of the connection
+	 * @return The message whose transfer was started or null if no 
+	 * transfer was started. 
+	 */
+	private Message tryQueuedMessages(Connection con, TreeSet<Message> queue) {
+		if (this.planner != null) {
+			return tryPlannedMessages(con, queue);
+		}
+		
+		/* startTransfer may remove messages, so the queue is navigated
+		 * instead of iterated */
+		Message m = (queue.isEmpty() ? null : queue.first());
+		while (m != null) {
+			int retVal = startTransfer(m, con); 
+			if (retVal == RCV_OK) {
+				return m;	// accepted a message, don't try others
+			}
+			else if (retVal > 0) { 
+				return null; // should try later -> don't bother trying others
+			}
+			else if (retVal == DENIED_OLD || retVal == DENIED_TTL) {
+				queue.remove(m);
+			}
+			m = queue.higher(m);
+		}
+		
+		return null; // no message was accepted		
+	}
+	
+	/**
+	 * Goes trough the messages of a send queue that the transfer planner
+	 * chose to fit in the remaining contact with the other node, like
+	 * {@link #tryQueuedMessages(Connection, TreeSet)} goes through the whole
+	 * queue. Messages that are sent are removed from the plan and the
+	 * denied ones are refused for the rest of the contact. If all of the
+	 * plan is denied, a new plan is made from the rest of the queue.
+	 * @param con Connection trough which the messages are sent
+	 * @param queue The send queue of the connection
+	 * @return The message whose transfer was started or null if no 
+	 * transfer was started. 
+	 */
+	private Message tryPlannedMessages(Connection con, TreeSet<Message> queue) {
+		List<Message> plan;
+		while (!(plan = this.planner.getPlan(this, getHost(), con, 
+				queue)).isEmpty()) {
+			/* startTransfer may change the plan, so a copy is iterated */
+			for (Message m : new ArrayList<Message>(plan)) {
+				int retVal = startTransfer(m, con); 
+				if (retVal == RCV_OK) {
+					plan.remove(m);
+					return m;
+				}
+				else if (retVal > 0) { 
+					return null;
+				}
+				else if (retVal == DENIED_OLD || retVal == DENIED_TTL) {
+					queue.remove(m);
+				}
+				this.planner.refused(con, m);
+			}
+		}
+		
+		return null;
 	}
 		
 	/**
@@ -582,7 +991,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL has expired.
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
@@ -598,6 +1007,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					setKnownByPeer(con.getMessage(), 
+							con.getOtherNode(getHost()));
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
@@ -606,6 +1017,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* remove connections that have gone down */
 			else if (!con.isUp()) {
 				if (con.getMessage() != null) {
+					this.nrofTransfersAborted++;
+					this.abortedBytes += con.getMessage().getSize() - 
+						con.getRemainingByteCount();
 					transferAborted(con);
 					con.abortTransfer();
 				}
@@ -625,12 +1039,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval && 
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		/* drop the messages whose expiry timers have run out */
+		dropExpiredMessages();
 		
 		if (energy != null) {
 			/* TODO: add support for other interfaces */
@@ -639,6 +1049,32 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns the number of message transfers this router has started
+	 * @return The number of started transfers
+	 */
+	public int getNrofTransfersStarted() {
+		return this.nrofTransfersStarted;
+	}
+	
+	/**
+	 * Returns the number of this router's transfers that were aborted
+	 * because the connection went down
+	 * @return The number of aborted transfers
+	 */
+	public int getNrofTransfersAborted() {
+		return this.nrofTransfersAborted;
+	}
+	
+	/**
+	 * Returns the number of bytes that were sent in the aborted transfers
+	 * before they were aborted (i.e., wasted transmission)
+	 * @return The number of wasted bytes
+	 */
+	public long getAbortedBytes() {
+		return this.abortedBytes;
+	}
+	
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -658,6 +1094,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
+		top.addMoreInfo(new RoutingInfo("Drop policy: " + evictionPolicy));
 		if (energy != null) {
 			top.addMoreInfo(new RoutingInfo("Energy level: " + 
 					String.format("%.2f mAh", energy.getEnergy() / 3600)));
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import routing.schedule.ContactGraphRoutes;
+import routing.schedule.ContactPlan;
+import util.Tuple;
+import core.Connection;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Contact graph router. Uses a contact plan, read from a connection trace
+ * (e.g., the same {@link input.StandardEventsReader} trace that drives the
+ * connections of the simulation), to forward every message along the route
+ * that delivers it to its destination at the earliest possible time. Only a
+ * single copy of each message is kept.
+ * <P>
+ * The contact plan of a trace file is read only once and shared by all the
+ * routers. The routes of every router are calculated with a time-dependent
+ * Dijkstra's algorithm and cached; see {@link ContactGraphRoutes}.
+ * </P>
+ */
+public class ContactGraphRouter extends ActiveRouter {
+	/** Contact graph router's settings namespace ({@value}) */
+	public static final String CGR_NS = "ContactGraphRouter";
+	/**
+	 * Contact plan file -setting id ({@value}). Path to a connection trace
+	 * file the contact plan is read from.
+	 */
+	public static final String CONTACT_PLAN_FILE_S = "contactPlanFile";
+
+	/** contact plans mapped by the trace file paths */
+	private static Map<String, ContactPlan> plans;
+
+	static {
+		DTNSim.registerForReset(ContactGraphRouter.class.getCanonicalName());
+		reset();
+	}
+
+	/** path of the contact plan file */
+	private String planFile;
+	/** earliest arrival routes from this router's host */
+	private ContactGraphRoutes routes;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public ContactGraphRouter(Settings s) {
+		super(s);
+		Settings cgrSettings = new Settings(CGR_NS);
+		this.planFile = cgrSettings.getSetting(CONTACT_PLAN_FILE_S);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ContactGraphRouter(ContactGraphRouter r) {
+		super(r);
+		this.planFile = r.planFile;
+	}
+
+	/**
+	 * Returns the contact plan read from a trace file. The file is read
+	 * only once per simulation run.
+	 * @param filePath Path to the trace file
+	 * @return The contact plan
+	 */
+	private static ContactPlan getPlan(String filePath) {
+		ContactPlan plan = plans.get(filePath);
+		if (plan == null) {
+			plan = ContactPlan.readTrace(filePath);
+			plans.put(filePath, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the routes of this router's host (creates them if needed)
+	 * @return the routes
+	 */
+	private ContactGraphRoutes getRoutes() {
+		if (this.routes == null) {
+			this.routes = new ContactGraphRoutes(getPlan(this.planFile),
+					getHost().getAddress());
+		}
+		return this.routes;
+	}
+
+	@Override
+	protected int checkReceiving(Message m, DTNHost from) {
+		int recvCheck = super.checkReceiving(m, from);
+
+		if (recvCheck == RCV_OK) {
+			/* don't accept a message that has already traversed this node */
+			if (m.getHops().contains(getHost())) {
+				recvCheck = DENIED_OLD;
+			}
+		}
+
+		return recvCheck;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return;
+		}
+
+		if (exchangeDeliverableMessages() != null) {
+			return;
+		}
+
+		tryMessagesForConnected(getMessagesForNextHops());
+	}
+
+	/**
+	 * Returns the messages whose next hop on the earliest arrival route is
+	 * currently connected, paired with the connection to the next hop
+	 * @return A list of (message, connection) tuples
+	 */
+	private List<Tuple<Message, Connection>> getMessagesForNextHops() {
+		List<Tuple<Message, Connection>> forTuples =
+			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		if (connections.size() == 0 || getNrofMessages() == 0) {
+			return forTuples;
+		}
+
+		ContactGraphRoutes r = getRoutes();
+		double now = SimClock.getTime();
+		for (Message m : getMessageCollection()) {
+			int nextHop = r.getNextHop(m.getTo().getAddress(), now);
+			if (nextHop == -1) {
+				continue;
+			}
+			for (Connection con : connections) {
+				if (con.getOtherNode(getHost()).getAddress() == nextHop) {
+					forTuples.add(new Tuple<Message, Connection>(m, con));
+					break;
+				}
+			}
+		}
+
+		@SuppressWarnings(value = "unchecked")
+		List<Tuple<Message, Connection>> sorted = sortByQueueMode(forTuples);
+		return sorted;
+	}
+
+	@Override
+	protected void transferDone(Connection con) {
+		/* don't leave a copy for the sender */
+		this.deleteMessage(con.getMessage().getId(), false);
+	}
+
+	@Override
+	public ContactGraphRouter replicate() {
+		return new ContactGraphRouter(this);
+	}
+
+	/**
+	 * Resets the shared contact plans (for a new simulation run)
+	 */
+	public static void reset() {
+		plans = new HashMap<String, ContactPlan>();
+	}
+}
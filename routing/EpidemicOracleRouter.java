@@ -5,7 +5,11 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import routing.util.ConnectivityOracle;
 
 import core.*;
 
@@ -16,11 +20,21 @@ import core.*;
  * This router also <B>ignores message size and all messages are delivered 
  * immediately</B>.</P><P>
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
+ * <P>
+ * The router keeps the {@link ConnectivityOracle} up to date. When a new
+ * connection joins two components, the messages that the other end doesn't
+ * have yet are passed over the connection and spread inside the other
+ * component, and new messages are spread to all the hosts in the component
+ * at once. The messages are spread
+ * hop by hop over the connections (breadth first) and every transfer is
+ * finalized right away.</P>
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 	
 	/** List of all routers in this node group */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** Is a message being spread to a component (no nested spreading) */
+	private static boolean spreading;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -48,33 +62,129 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	@Override
 	public void changedConnection(Connection con) {
 		super.changedConnection(con);
+		ConnectivityOracle oracle = ConnectivityOracle.getInstance();
 		
 		if (con.isUp()) {
 			DTNHost peer = con.getOtherNode(getHost());
-			List<Message> newMessages = new ArrayList<Message>();
+			oracle.connectionUp(getHost(), con);
 			
-			for (Message m : peer.getMessageCollection()) {
-				if (!this.hasMessage(m.getId())) {
-					newMessages.add(m);
-				}
+			boolean nested = spreading;
+			spreading = true;
+			spreadMissing(con, peer);
+			spreadMissing(con, getHost());
+			spreading = nested;
+		}
+		else {
+			oracle.connectionDown(getHost(), con);
+		}
+	}
+	
+	/**
+	 * Spreads the messages that the other end of a new connection doesn't
+	 * have yet. The messages are given to the other end and spread from
+	 * there (but not back through the sending host), so when the connection
+	 * joins two components, only the messages missing from the other
+	 * component are spread and only inside that component.
+	 * @param con The new connection
+	 * @param from The host whose messages are spread over the connection
+	 */
+	private static void spreadMissing(Connection con, DTNHost from) {
+		DTNHost to = con.getOtherNode(from);
+		List<Message> missing = new ArrayList<Message>();
+		
+		for (Message m : from.getMessageCollection()) {
+			if (!to.getRouter().hasMessage(m.getId())) {
+				missing.add(m);
 			}
-			for (Message m : newMessages) {
-				/* try to start transfer from peer */
-				if (con.startTransfer(peer, m) == RCV_OK) {
-					con.finalizeTransfer(); /* and finalize it right away */
-				}
+		}
+		
+		for (Message m : missing) {
+			if (!from.getRouter().hasMessage(m.getId())) {
+				continue; // delivered meanwhile
+			}
+			if (transfer(con, from, m) && m.getTo() != to) {
+				spreadMessage(m, to, from);
 			}
 		}
 	}
-
-	private void sendMessageToConnected(Message m) {
-		DTNHost host = getHost();
+	
+	/**
+	 * Transfers a message over a connection and finalizes the transfer
+	 * right away
+	 * @param con The connection
+	 * @param from The sending host
+	 * @param m The message
+	 * @return True if the receiving host accepted the message
+	 */
+	private static boolean transfer(Connection con, DTNHost from, Message m) {
+		if (con.isReadyForTransfer() && con.startTransfer(from, m) == RCV_OK) {
+			con.finalizeTransfer();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Spreads a message over the connections (breadth first) to all the
+	 * connected hosts that don't have it yet. A host that doesn't accept the
+	 * message doesn't forward it either. Stops when the message reaches its
+	 * final recipient.
+	 * @param m The message
+	 * @param from The host that has the message
+	 * @param excluded The host where the message is not spread to (and 
+	 * through), or null
+	 */
+	private static void spreadMessage(Message m, DTNHost from, 
+			DTNHost excluded) {
+		boolean nested = spreading;
+		spreading = true;
+		
+		List<DTNHost> queue = new ArrayList<DTNHost>();
+		Set<DTNHost> visited = new HashSet<DTNHost>();
+		queue.add(from);
+		visited.add(from);
+		if (excluded != null) {
+			visited.add(excluded);
+		}
+		boolean delivered = false;
+		
+		for (int i = 0; i < queue.size() && !delivered; i++) {
+			DTNHost holder = queue.get(i);
+			Message msg = holder.getRouter().getMessage(m.getId());
+			if (msg == null) {
+				continue; // dropped by the host meanwhile
+			}
+			for (Connection con : holder.getConnections()) {
+				DTNHost to = con.getOtherNode(holder);
+				if (!visited.add(to)) {
+					continue;
+				}
+				if (to.getRouter().hasMessage(m.getId())) {
+					queue.add(to);
+				}
+				else if (transfer(con, holder, msg)) {
+					if (m.getTo() == to) {
+						delivered = true; // the oracle removed the copies
+						break;
+					}
+					queue.add(to);
+				}
+			}
+		}
 		
-		for (Connection c : getConnections()) {
-			if (c.isReadyForTransfer() && c.startTransfer(host, m) == RCV_OK) {
-				c.finalizeTransfer(); /* and finalize it right away */
-			}			
+		spreading = nested;
+	}
+	
+	/**
+	 * Gives a message to all the hosts in this host's component (unless
+	 * the message is already being spread)
+	 * @param m The message
+	 */
+	private void spreadToComponent(Message m) {
+		if (spreading) {
+			return; // the spreading host takes care of this host's component
 		}
+		spreadMessage(m, getHost(), null);
 	}
 		
 	public boolean createNewMessage(Message m) {
@@ -84,7 +194,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 			throw new SimError("Can't create message " + m);
 		}
 
-		sendMessageToConnected(m);
+		spreadToComponent(m);
 		
 		return true;
 	}
@@ -118,7 +228,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 				}
 			}
 		} else {
-			sendMessageToConnected(m);
+			spreadToComponent(m);
 		}
 		
 		return m;
@@ -176,6 +286,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		spreading = false;
 	}
 
 }
\ No newline at end of file
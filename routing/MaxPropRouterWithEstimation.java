@@ -14,7 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.HopCountHistogram;
+import routing.maxprop.MaxPropCostGraph;
 import routing.maxprop.MeetingProbabilitySet;
 import routing.util.RoutingInfo;
 import util.Tuple;
@@ -47,18 +48,15 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view 
-	 * mapped using host's network address */
+	 * mapped using host's network address (shared snapshots of the other
+	 * hosts' sets and this host's own set) */
 	private Map<Integer, MeetingProbabilitySet> allProbs;
-	/** the cost-to-node calculator */
-	private MaxPropDijkstra dijkstra;	
+	/** the cost-to-node calculator (graph of the allProbs' sets) */
+	private MaxPropCostGraph costGraph;
+	/** hop counts of the messages in the buffer */
+	private HopCountHistogram hopCounts;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -121,7 +119,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(
 				MeetingProbabilitySet.INFINITE_SET_SIZE, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
-		this.dijkstra = new MaxPropDijkstra(this.allProbs);
+		this.costGraph = new MaxPropCostGraph();
+		this.hopCounts = new HopCountHistogram();
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 		initMeetings();
@@ -145,8 +144,6 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		super.changedConnection(con);
 		
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
-			
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
 				 * other node too (so that the meeting probs are updated
@@ -173,16 +170,16 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				otherRouter.deleteAckedMessages();
 				
 				/* update both meeting probabilities */
-				probs.updateMeetingProbFor(otherHost.getAddress());
-				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
+				this.updateMeetingProbFor(otherHost);
+				otherRouter.updateMeetingProbFor(getHost());
 				
 				/* exchange the transitive probabilities */
 				this.updateTransitiveProbs(otherRouter.allProbs);
 				otherRouter.updateTransitiveProbs(this.allProbs);
-				this.allProbs.put(otherHost.getAddress(),
-						otherRouter.probs.replicate());
-				otherRouter.allProbs.put(getHost().getAddress(),
-						this.probs.replicate());
+				this.setProbsFor(otherHost.getAddress(),
+						otherRouter.probs.getSnapshot());
+				otherRouter.setProbsFor(getHost().getAddress(),
+						this.probs.getSnapshot());
 			}
 		}
 		else {
@@ -193,20 +190,43 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 
 	/**
 	 * Updates transitive probability values by replacing the current 
-	 * MeetingProbabilitySets with the values from the given mapping
-	 * if the given sets have more recent updates.
+	 * MeetingProbabilitySets with the snapshots of the sets in the given
+	 * mapping if the given sets have a more recent version. The snapshots
+	 * are immutable, so they are shared instead of copied.
 	 * @param p Mapping of the values of the other host
 	 */
 	private void updateTransitiveProbs(Map<Integer, MeetingProbabilitySet> p) {
 		for (Map.Entry<Integer, MeetingProbabilitySet> e : p.entrySet()) {
 			MeetingProbabilitySet myMps = this.allProbs.get(e.getKey()); 
 			if (myMps == null || 
-				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
-				this.allProbs.put(e.getKey(), e.getValue().replicate());
+				e.getValue().getVersion() > myMps.getVersion() ) {
+				this.setProbsFor(e.getKey(), e.getValue().getSnapshot());
 			}
 		}
 	}
 	
+	/**
+	 * Updates this host's meeting probability for the given host
+	 * @param host The host that was met
+	 */
+	private void updateMeetingProbFor(DTNHost host) {
+		this.probs.updateMeetingProbFor(host.getAddress());
+		this.allProbs.put(getHost().getAddress(), this.probs);
+		this.costGraph.setProbs(getHost().getAddress(), this.probs);
+	}
+	
+	/**
+	 * Sets the meeting probabilities of another host and updates the cost
+	 * graph (unless the same snapshot was already set)
+	 * @param address Address of the host
+	 * @param mps Snapshot of the meeting probabilities of the host
+	 */
+	private void setProbsFor(int address, MeetingProbabilitySet mps) {
+		if (this.allProbs.put(address, mps) != mps) {
+			this.costGraph.setProbs(address, mps);
+		}
+	}
+	
 	/**
 	 * Updates the MaxPROP estimators
 	 * @param host
@@ -332,7 +352,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
+		invalidateEvictionOrder();
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -341,6 +361,25 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		return m;
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			this.hopCounts.remove(old.getHopCount(), old.getSize());
+		}
+		super.addToMessages(m, newMessage);
+		this.hopCounts.add(m.getHopCount(), m.getSize());
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.hopCounts.remove(m.getHopCount(), m.getSize());
+		}
+		return m;
+	}
+	
 	/**
 	 * Method is called just before a transfer is finalized 
 	 * at {@link ActiveRouter#update()}. MaxProp makes book keeping of the
@@ -397,6 +436,11 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
+		if (isDropPolicySet()) {
+			/* group defines its own drop policy */
+			return super.getNextMessageToRemove(excludeMsgBeingSent);
+		}
+		
 		Collection<Message> messages = this.getMessageCollection();
 		List<Message> validMessages = new ArrayList<Message>();
 
@@ -431,38 +475,16 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host, 
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The shortest path trees are maintained
+	 * incrementally by {@link MaxPropCostGraph}, so repeated queries are
+	 * cheap.
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or 
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
-		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-			
-			/* calculate paths only to nodes we have messages to 
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-						
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
-		}
-		
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		return this.costGraph.getCost(from.getAddress(), to.getAddress());
 	}
 	
 	/**
@@ -510,7 +532,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	/**
 	 * Calculates and returns the current threshold value for the buffer's split
 	 * based on the average number of bytes transferred per transfer opportunity
-	 * and the hop counts of the messages in the buffer. Method is public only
+	 * and the hop counts of the messages in the buffer (kept up to date in a
+	 * {@link HopCountHistogram}). Method is public only
 	 * to make testing easier.  
 	 * @return current threshold value (hop count) for the buffer's split
 	 */
@@ -536,32 +559,16 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 			return 0; // no need for the threshold 
 		}
 		
-		/* creates a copy of the messages list, sorted by hop count */
-		ArrayList<Message> msgs = new ArrayList<Message>();
-		msgs.addAll(getMessageCollection());
-		if (msgs.size() == 0) {
+		/* finds the hop count of the first message (in hop count order)
+		 * that exceeds the portion p */
+		int hopCount = this.hopCounts.getHopCountFor(p);
+		if (hopCount < 0) {
 			return 0; // no messages -> no need for threshold
 		}
-		/* anonymous comparator class for hop count comparison */
-		Comparator<Message> hopCountComparator = new Comparator<Message>() {
-			public int compare(Message m1, Message m2) {
-				return m1.getHopCount() - m2.getHopCount();
-			}
-		};
-		Collections.sort(msgs, hopCountComparator);
-
-		/* finds the first message that is beyond the calculated portion */
-		int i=0;
-		for (int n=msgs.size(); i<n && p>0; i++) {
-			p -= msgs.get(i).getSize();
-		}
 		
-		i--; // the last round moved i one index too far 
-		
-		/* now i points to the first packet that exceeds portion p; 
-		 * the threshold is that packet's hop count + 1 (so that packet and
+		/* the threshold is that packet's hop count + 1 (so that packet and
 		 * perhaps some more are included in the priority part) */
-		return msgs.get(i).getHopCount() + 1;
+		return hopCount + 1;
 	}
 	
 	/**
@@ -689,6 +696,17 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	}
 	
 	
+	/**
+	 * Returns the utility of a message for utility based eviction policies. 
+	 * The utility is the negated delivery cost from this host to the 
+	 * message's destination, i.e., the most expensive messages are dropped
+	 * first.
+	 */
+	@Override
+	public double getMessageUtility(Message m) {
+		return -getCost(getHost(), m.getTo());
+	}
+	
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
@@ -4,12 +4,15 @@
  */
 package routing;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import routing.util.RoutingInfo;
@@ -83,14 +86,28 @@ public abstract class MessageRouter {
 	private HashMap<String, Message> incomingMessages;
 	/** The messages this router is carrying */
 	private HashMap<String, Message> messages; 
-	/** The messages this router has received as the final recipient */
+	/** ID indices of the messages this router has received as the final
+	 * recipient */
+	private BitSet deliveredIds;
+	/** number of different messages delivered to this router */
+	private int nrofDelivered;
+	/** The messages this router has received as the final recipient (only
+	 * stored if {@link #keepDeliveredMessages} is set) */
 	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	/** ID indices of the messages that Applications on this router have
+	 * blacklisted */
+	private BitSet blacklistedIds;
+	/** Bytes of control traffic (e.g., summary vectors) sent by this router
+	 * per traffic type */
+	private HashMap<String, Long> controlTraffic;
+	/** Should the delivered message objects be kept for inspection */
+	private static boolean keepDeliveredMessages = false;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
 	private int bufferSize;
+	/** sum of the sizes of the messages in the buffer */
+	private int bufferOccupancy;
 	/** TTL for all messages */
 	protected int msgTtl;
 	/** Queue mode for sending messages */
@@ -98,6 +115,13 @@ public abstract class MessageRouter {
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
+	/** applications that receive the messages of an application ID (in the
+	 * order they get the messages) by the ID */
+	private HashMap<String, List<Application>> dispatchTable = null;
+	/** applications that receive all messages */
+	private List<Application> anyAppIdApps = null;
+	/** all the applications (in update order) */
+	private Application[] updatedApps = null;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -108,7 +132,7 @@ public abstract class MessageRouter {
 	public MessageRouter(Settings s) {
 		this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer	
 		this.msgTtl = Message.INFINITE_TTL;
-		this.applications = new HashMap<String, Collection<Application>>();
+		initApplications();
 		
 		if (s.contains(B_SIZE_S)) {
 			this.bufferSize = s.getInt(B_SIZE_S);
@@ -139,8 +163,12 @@ public abstract class MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		this.incomingMessages = new HashMap<String, Message>();
 		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.deliveredIds = new BitSet();
+		this.nrofDelivered = 0;
+		this.deliveredMessages = null;
+		this.blacklistedIds = new BitSet();
+		this.controlTraffic = new HashMap<String, Long>();
+		this.bufferOccupancy = 0;
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -154,7 +182,7 @@ public abstract class MessageRouter {
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
 
-		this.applications = new HashMap<String, Collection<Application>>();
+		initApplications();
 		for (Collection<Application> apps : r.applications.values()) {
 			for (Application app : apps) {
 				addApplication(app.replicate());
@@ -168,8 +196,12 @@ public abstract class MessageRouter {
 	 * interval to update the status of transfer(s). 
 	 */
 	public void update(){
-		for (Collection<Application> apps : this.applications.values()) {
-			for (Application app : apps) {
+		if (this.updatedApps.length == 0) {
+			return;
+		}
+		double now = SimClock.getTime();
+		for (Application app : this.updatedApps) {
+			if (app.getNextUpdate() <= now) {
 				app.update(this.host);
 			}
 		}
@@ -208,7 +240,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return this.deliveredIds.get(m.getIdIndex());
 	}
 	
 	/** 
@@ -221,7 +253,63 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		if (this.blacklistedIds.isEmpty()) {
+			return false;
+		}
+		int index = Message.findIdIndex(id);
+		return index >= 0 && this.blacklistedIds.get(index);
+	}
+	
+	/**
+	 * Returns the ID indices (see {@link Message#getIdIndex()}) of the
+	 * messages this router would reject as already seen, i.e., the messages
+	 * in the buffer and the delivered and blacklisted messages.
+	 * @return The ID indices in ascending order
+	 */
+	protected int[] getKnownMessageIds() {
+		BitSet known = (BitSet)this.deliveredIds.clone();
+		known.or(this.blacklistedIds);
+		for (Message m : this.messages.values()) {
+			known.set(m.getIdIndex());
+		}
+		
+		int[] ids = new int[known.cardinality()];
+		for (int i = 0, id = known.nextSetBit(0); id >= 0; 
+				id = known.nextSetBit(id + 1)) {
+			ids[i++] = id;
+		}
+		return ids;
+	}
+	
+	/**
+	 * Records control traffic (routing signaling that isn't carried in
+	 * messages) sent by this router
+	 * @param type Type of the traffic (e.g., name of the routing protocol
+	 * feature)
+	 * @param bytes The amount of bytes sent
+	 */
+	protected void addControlTraffic(String type, int bytes) {
+		Long old = this.controlTraffic.get(type);
+		this.controlTraffic.put(type, (old == null ? 0 : old) + bytes);
+	}
+	
+	/**
+	 * Returns the amount of control traffic this router has sent
+	 * @return Bytes of control traffic sent per traffic type
+	 */
+	public Map<String, Long> getControlTraffic() {
+		return this.controlTraffic;
+	}
+	
+	/**
+	 * Sets whether the routers should keep the delivered message objects
+	 * (with their paths) for inspection, e.g., in the GUI's routing info.
+	 * By default only the IDs of the delivered messages are remembered.
+	 * Affects the messages delivered after the call.
+	 * @param keep true if the delivered messages should be kept
+	 */
+	public static void setKeepDeliveredMessages(boolean keep) {
+		keepDeliveredMessages = keep;
 	}
 	
 	/**
@@ -264,17 +352,11 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-		
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.bufferOccupancy;
 	}
 	
 	/**
@@ -310,6 +392,22 @@ public abstract class MessageRouter {
 		return false; // default behavior is to not start -- subclasses override
 	}
 	
+	/**
+	 * Checks whether this router would start receiving the given message
+	 * from another host. The message is not copied nor stored and no
+	 * listeners are informed, so this can be used for cheaply asking the
+	 * receiver before replicating the message for the actual transfer
+	 * (see {@link #receiveMessage(Message, DTNHost)}).
+	 * @param m The offered message (the sender's own instance that must
+	 * not be modified)
+	 * @param from Who the message is from
+	 * @return Same return values as for
+	 * {@link #receiveMessage(Message, DTNHost)}
+	 */
+	public int offerMessage(Message m, DTNHost from) {
+		return RCV_OK; // superclass always accepts messages
+	}
+	
 	/**
 	 * Try to start receiving a message from another host.
 	 * @param m Message to put in the receiving buffer
@@ -357,6 +455,9 @@ public abstract class MessageRouter {
 		for (Application app : getApplications(incoming.getAppID())) {
 			// Note that the order of applications is significant
 			// since the next one gets the output of the previous.
+			if (!app.isSubscribed(outgoing)) {
+				continue;
+			}
 			outgoing = app.handle(outgoing, this.host);
 			if (outgoing == null) break; // Some app wanted to drop the message
 		}
@@ -373,11 +474,18 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredIds.set(aMessage.getIdIndex());
+			this.nrofDelivered++;
+			if (keepDeliveredMessages) {
+				if (this.deliveredMessages == null) {
+					this.deliveredMessages = new HashMap<String, Message>();
+				}
+				this.deliveredMessages.put(id, aMessage);
+			}
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedIds.set(Message.getIdIndex(id));
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -427,7 +535,11 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getId(), m);
+		if (old != null) {
+			this.bufferOccupancy -= old.getSize();
+		}
+		this.bufferOccupancy += m.getSize();
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -443,6 +555,9 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		if (m != null) {
+			this.bufferOccupancy -= m.getSize();
+		}
 		return m;
 	}
 	
@@ -553,6 +668,52 @@ public abstract class MessageRouter {
 		return list;
 	}
 
+	/**
+	 * Returns a comparator that defines a total order of messages according
+	 * to the current sending queue mode. Unlike 
+	 * {@link #sortByQueueMode(List)}, the random queue mode gives every
+	 * message instance a fixed (pseudo random) position, so the comparator
+	 * can be used for keeping messages in a sorted send queue.
+	 * @return The comparator
+	 */
+	protected Comparator<Message> getQueueModeComparator() {
+		switch (sendQueueMode) {
+		case Q_MODE_RANDOM:
+			final long seed = this.host.getAddress();
+			return new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					int c = Long.compare(randomKey(m1), randomKey(m2));
+					if (c == 0) {
+						c = m1.getUniqueId() - m2.getUniqueId();
+					}
+					return c;
+				}
+				
+				/** Scrambles the unique ID with the seed (murmur3 mix) */
+				private long randomKey(Message m) {
+					long z = (m.getUniqueId() + seed * 0x9e3779b97f4a7c15L);
+					z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+					z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+					return z ^ (z >>> 33);
+				}
+			};
+		case Q_MODE_FIFO:
+			return new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					int c = Double.compare(m1.getReceiveTime(), 
+							m2.getReceiveTime());
+					if (c == 0) {
+						c = m1.getUniqueId() - m2.getUniqueId();
+					}
+					return c;
+				}
+			};
+		/* add more queue modes here */
+		default:
+			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+	}
+
 	/**
 	 * Gives the order of the two given messages as defined by the current
 	 * queue mode 
@@ -586,7 +747,7 @@ public abstract class MessageRouter {
 		RoutingInfo ri = new RoutingInfo(this);
 		RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size() + 
 				" incoming message(s)");
-		RoutingInfo delivered = new RoutingInfo(this.deliveredMessages.size() +
+		RoutingInfo delivered = new RoutingInfo(this.nrofDelivered +
 				" delivered message(s)");
 		
 		RoutingInfo cons = new RoutingInfo(host.getConnections().size() + 
@@ -600,8 +761,11 @@ public abstract class MessageRouter {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 		
-		for (Message m : this.deliveredMessages.values()) {
-			delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
+		if (this.deliveredMessages != null) {
+			for (Message m : this.deliveredMessages.values()) {
+				delivered.addMoreInfo(new RoutingInfo(m + " path:" +
+						m.getHops()));
+			}
 		}
 		
 		for (Connection c : host.getConnections()) {
@@ -622,6 +786,44 @@ public abstract class MessageRouter {
 					new LinkedList<Application>());
 		}
 		this.applications.get(app.getAppID()).add(app);
+		buildDispatchTable();
+	}
+	
+	/**
+	 * Initializes the (empty) application collections
+	 */
+	private void initApplications() {
+		this.applications = new HashMap<String, Collection<Application>>();
+		this.dispatchTable = new HashMap<String, List<Application>>();
+		this.anyAppIdApps = Collections.emptyList();
+		this.updatedApps = new Application[0];
+	}
+	
+	/**
+	 * Rebuilds the per application ID dispatch table and the update list
+	 * from the attached applications
+	 */
+	private void buildDispatchTable() {
+		Collection<Application> any = this.applications.get(null);
+		this.anyAppIdApps = (any == null ? 
+				Collections.<Application>emptyList() : 
+				Collections.unmodifiableList(new ArrayList<Application>(any)));
+		
+		this.dispatchTable.clear();
+		List<Application> all = new ArrayList<Application>();
+		for (Map.Entry<String, Collection<Application>> e : 
+				this.applications.entrySet()) {
+			all.addAll(e.getValue());
+			if (e.getKey() == null) {
+				continue;
+			}
+			// Applications that match and the ones that look at all messages
+			List<Application> apps = new ArrayList<Application>(e.getValue());
+			apps.addAll(this.anyAppIdApps);
+			this.dispatchTable.put(e.getKey(), 
+					Collections.unmodifiableList(apps));
+		}
+		this.updatedApps = all.toArray(new Application[all.size()]);
 	}
 	
 	/** 
@@ -629,23 +831,12 @@ public abstract class MessageRouter {
 	 * application ID.
 	 * 
 	 * @param ID	The application ID or <code>null</code> for all apps.
-	 * @return		A list of all applications that want to receive the message.
+	 * @return		An unmodifiable list of all applications that want to 
+	 * receive the message.
 	 */
 	public Collection<Application> getApplications(String ID) {
-		LinkedList<Application>	apps = new LinkedList<Application>();
-		// Applications that match
-		Collection<Application> tmp = this.applications.get(ID);
-		if (tmp != null) {
-			apps.addAll(tmp);
-		}
-		// Applications that want to look at all messages
-		if (ID != null) {
-			tmp = this.applications.get(null);
-			if (tmp != null) {
-				apps.addAll(tmp);
-			}
-		}
-		return apps;
+		List<Application> apps = (ID == null ? null : this.dispatchTable.get(ID));
+		return (apps != null ? apps : this.anyAppIdApps);
 	}
 
 	/**
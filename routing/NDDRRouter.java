@@ -5,16 +5,27 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 
-import util.Tuple;
+import routing.nddr.CachingStrategy;
+import routing.nddr.ChunkRetrieval;
+import routing.nddr.ContentCatalog;
+import routing.nddr.ContentStore;
+import routing.nddr.DistanceTable;
+import routing.nddr.PendingInterestTable;
+import util.BloomFilter;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
 import core.Settings;
+import core.SettingsError;
+import core.SimClock;
 
 /**
  * Implementation of NDDR 
@@ -26,20 +37,103 @@ public class NDDRRouter extends ActiveRouter {
 	//----------------- Configuration ------------------
 	public static final boolean isDistanceEnabled = true; // if true, NDDR; if false, NDN
 	
-	public static final int Nr_OF_DATA_NAMES = 10; // Configurable, [1,26], must be the same with the number of "toHosts" in settings.txt
-	public static final int Nr_OF_HOSTS = 100; // Configurable, must be the same with "Group.nrofHosts" in settings.txt
 	public static final int DEFAULT_DEST_DIST = 999;
+	// data names and their producers are configured in the ContentCatalog
 	//--------------------------------------------------
 
-	public static final String NDDR_NS = "NDDRRouter";
+	public static final String NDDR_NS = ContentCatalog.NDDR_NS;
 
-	public static Random rd = new Random();
-
-	protected static String[] dataNameList = { "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N",
-			"O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z" };
-	
-	public static int dataNameIndex = 0;
-	public static int hostIndex = 0;
+	/** Content store policy -setting id ({@value}). Name of the
+	 * {@link ContentStore} class (from package
+	 * {@value ContentStore#CS_PACKAGE}) that caches the Data content.
+	 * Default={@value ContentStore#DEFAULT_CS}. The size of the store is set
+	 * with the {@value ContentStore#CS_SIZE_S} setting. */
+	public static final String CS_POLICY_S = "csPolicy";
+	/** Content store buffer mode -setting id ({@value}). How the cached
+	 * content relates to the message buffer: {@value #CS_BUFFER_SEPARATE}
+	 * (the content store has its own space), {@value #CS_BUFFER_SHARED}
+	 * (cached content uses the message buffer but gives way to messages) or
+	 * {@value #CS_BUFFER_COMPETE} (cached content uses the message buffer
+	 * and messages and content can displace each other).
+	 * Default={@value #CS_BUFFER_SEPARATE} */
+	public static final String CS_BUFFER_S = "csBuffer";
+	/** Content store buffer mode value for a separate store */
+	public static final String CS_BUFFER_SEPARATE = "separate";
+	/** Content store buffer mode value for a store in the message buffer */
+	public static final String CS_BUFFER_SHARED = "shared";
+	/** Content store buffer mode value for a store competing with messages */
+	public static final String CS_BUFFER_COMPETE = "compete";
+	/** Caching strategy -setting id ({@value}). Name of the
+	 * {@link CachingStrategy} class (from package
+	 * {@value CachingStrategy#CACHING_PACKAGE}) that decides which received
+	 * Data are cached. Default={@value CachingStrategy#DEFAULT_CACHING} */
+	public static final String CACHING_S = "cachingStrategy";
+	/** Distance Table entry maximum age -setting id ({@value}). How long
+	 * (seconds) the distance to a host is trusted after it was last
+	 * updated. Default = forever. */
+	public static final String DISTANCE_MAX_AGE_S = "distanceMaxAge";
+	/** Gradient forwarding -setting id ({@value}). Boolean valued. If set
+	 * to true, routers that both have the setting enabled exchange their
+	 * distance vectors and the IDs of the data they can provide when a
+	 * connection comes up, and forward Data only to peers that are closer
+	 * to the destination and Interests only to peers that have the data or
+	 * are closer to its producers. Messages with no known gradient are
+	 * flooded up to {@link #MAX_FLOOD_HOPS_S} hops. Data, and Interests sent
+	 * to a peer that has the data, are handed over (the sender doesn't keep
+	 * a copy). The exchanged vectors
+	 * are recorded as control traffic of type
+	 * {@value #DISTANCE_VECTOR_TRAFFIC}. Default=false. */
+	public static final String GRADIENT_S = "gradientForwarding";
+	/** Maximum flooding hops -setting id ({@value}). How many hops messages
+	 * with no known gradient are flooded in gradient forwarding.
+	 * Default={@value #DEFAULT_MAX_FLOOD_HOPS}. */
+	public static final String MAX_FLOOD_HOPS_S = "maxFloodHops";
+	/** Default value for the maximum flooding hops */
+	public static final int DEFAULT_MAX_FLOOD_HOPS = 3;
+	/** Control traffic type of the distance vectors ({@value}) */
+	public static final String DISTANCE_VECTOR_TRAFFIC = "distanceVector";
+	/** Interest suppression -setting id ({@value}). Boolean valued. If set
+	 * to true, routers that both have the setting enabled exchange Bloom
+	 * filter digests of the (data ID, requester) pairs in their Pending
+	 * Interest Table when a connection comes up, and don't send the peer
+	 * the Interests in its digest, i.e., Interests the peer has already
+	 * aggregated. The digests are recorded as control traffic of type
+	 * {@value #INTEREST_DIGEST_TRAFFIC}. Default=false. */
+	public static final String SUPPRESSION_S = "interestSuppression";
+	/** Digest false positive rate -setting id ({@value}). The false positive
+	 * probability the interest digests are sized for.
+	 * Default={@value #DEFAULT_DIGEST_FP_RATE}. */
+	public static final String DIGEST_FP_RATE_S = "digestFpRate";
+	/** Default value for the digest false positive rate */
+	public static final double DEFAULT_DIGEST_FP_RATE = 0.01;
+	/** Control traffic type of the interest digests ({@value}) */
+	public static final String INTEREST_DIGEST_TRAFFIC = "interestDigest";
+	/** Chunk size -setting id ({@value}). If set to a positive value, data
+	 * objects are retrieved in chunks of this size (bytes): a requested
+	 * object (whose size is the size of the created message) is split into
+	 * chunks that have their own Interests and Data, the consumer keeps up
+	 * to {@link #CHUNK_WINDOW_S} chunk Interests outstanding, and a
+	 * partially received object continues from the missing chunks when
+	 * new contacts come up or the Interests expire. Default=0 (whole
+	 * objects). */
+	public static final String CHUNK_SIZE_S = "chunkSize";
+	/** Chunk window -setting id ({@value}). How many chunk Interests a
+	 * consumer keeps outstanding per object.
+	 * Default={@value #DEFAULT_CHUNK_WINDOW}. */
+	public static final String CHUNK_WINDOW_S = "chunkWindow";
+	/** Default value for the chunk window */
+	public static final int DEFAULT_CHUNK_WINDOW = 16;
+	/** Chunk Interest size -setting id ({@value}). Size (bytes) of the
+	 * chunk Interests. Default={@value #DEFAULT_CHUNK_INTEREST_SIZE}. */
+	public static final String CHUNK_INTEREST_SIZE_S = "chunkInterestSize";
+	/** Default value for the chunk Interest size */
+	public static final int DEFAULT_CHUNK_INTEREST_SIZE = 100;
+	/** size of one (address, distance, seqnum) entry in a distance vector
+	 * (bytes) */
+	private static final int DV_ENTRY_SIZE = 8;
+	/** size of one data ID or name prefix ID in a distance vector's content
+	 * digest (bytes) */
+	private static final int DIGEST_ID_SIZE = 4;
 
 	// NDDR-specific fields
 	public static final String TYPE = "type";
@@ -48,6 +142,8 @@ public class NDDRRouter extends ActiveRouter {
 	public static final String DEST_DIST = "destDist";
 	public static final String SEQ_NUM = "seqnum";
 	public static final String CONTENT = "dataContent";
+	/** size of the Data an Interest asks for, if not the Interest's size */
+	public static final String DATA_SIZE = "dataSize";
 	public static final String E_MARK = "isEligible"; 
 	public static final String DATA_CONTENT_FOR_TEST = "data content for test";
 	
@@ -57,22 +153,120 @@ public class NDDRRouter extends ActiveRouter {
 	public int seqnum = 0; // sequence number to mark the sequence of messages created on this router
 
 	/** Distance Table, an entry is like: < host, distance - seqnum > */
-	private Map<DTNHost, Tuple<Integer, Integer>> distance_table; 
+	private DistanceTable distance_table; 
+	
+	/** maximum age of the Distance Table entries (seconds) */
+	private double distanceMaxAge;
+	
+	/** Content Storage, caches the content of Data: < dataId, dataContent > */
+	private ContentStore content_storage;
+	
+	/** decides which received Data are cached */
+	private CachingStrategy caching;
+	
+	/** name prefixes (name tree nodes) this host produces all the data of
+	 * (always available, not cached) */
+	private BitSet producedPrefixes;
+	
+	/** content store buffer mode (one of the CS_BUFFER_ values) */
+	private String csBufferMode;
+	
+	/** is gradient forwarding used */
+	private boolean gradient;
+	/** how many hops messages with no known gradient are flooded */
+	private int maxFloodHops;
+	/** distances of the connected peers (indexed by host address) */
+	private Map<DTNHost, int[]> peerDistances;
+	/** name prefixes the connected peers produce */
+	private Map<DTNHost, BitSet> peerPrefixes;
+	/** IDs of the data the connected peers have cached */
+	private Map<DTNHost, BitSet> peerContents;
+	
+	/** is Interest suppression used */
+	private boolean suppression;
+	/** false positive rate of the interest digests */
+	private double digestFpRate;
+	/** interest digests of the connected peers */
+	private Map<DTNHost, BloomFilter> peerDigests;
+	/** the exact keys of the peers' digests (only for counting the false
+	 * positives; not part of the exchanged digest) */
+	private Map<DTNHost, Set<Long>> peerDigestKeys;
+	/** number of Interest transfers started */
+	private int nrofInterestsSent;
+	/** number of Interest transfers suppressed */
+	private int nrofInterestsSuppressed;
+	/** number of suppressions caused by a false positive of a digest */
+	private int nrofFalseSuppressions;
 	
-	/** Content Storage, an entry is like: < dataName, dataContent >  */
-	private Map<String, String> content_storage;  
+	/** ID indexes of the messages that have finished their tasks at this
+	 * router (answered Interests and removed Data) */
+	private BitSet finishedMessages;
 	
-	/** Pending Interest Table, an entry is like: < dataName, requester collection >  */
-	private Map<String, ArrayList<DTNHost>> pending_interest_table; 
+	/** chunk size (bytes; 0 for whole objects) */
+	private int chunkSize;
+	/** how many chunk Interests are kept outstanding per object */
+	private int chunkWindow;
+	/** size of the chunk Interests */
+	private int chunkInterestSize;
+	/** the unfinished chunked retrievals of this host by the object IDs */
+	private Map<Integer, ChunkRetrieval> activeRetrievals;
+	/** all the chunked retrievals of this host */
+	private List<ChunkRetrieval> retrievals;
+	/** bytes of the Data chunks sent on the connections, by the (object,
+	 * destination) key, during the current contacts */
+	private Map<Connection, Map<Long, Integer>> contactProgress;
+	/** bytes that would have been resent with whole object transfers */
+	private long chunkBytesSaved;
+	
+	/** Pending Interest Table, an entry is like: < dataId, requester collection >  */
+	private PendingInterestTable pending_interest_table; 
 
 
 	public NDDRRouter(Settings s) {
 		super(s);
-		initDataStructures();
+		this.content_storage = (ContentStore)s.createIntializedObject(
+				ContentStore.CS_PACKAGE + s.getSetting(CS_POLICY_S,
+						ContentStore.DEFAULT_CS));
+		this.caching = (CachingStrategy)s.createIntializedObject(
+				CachingStrategy.CACHING_PACKAGE + s.getSetting(CACHING_S,
+						CachingStrategy.DEFAULT_CACHING));
+		this.csBufferMode = s.getSetting(CS_BUFFER_S, CS_BUFFER_SEPARATE);
+		this.distanceMaxAge = s.getDouble(DISTANCE_MAX_AGE_S, Double.MAX_VALUE);
+		this.gradient = s.getBoolean(GRADIENT_S, false);
+		this.maxFloodHops = s.getInt(MAX_FLOOD_HOPS_S, DEFAULT_MAX_FLOOD_HOPS);
+		this.suppression = s.getBoolean(SUPPRESSION_S, false);
+		this.digestFpRate = s.getDouble(DIGEST_FP_RATE_S, 
+				DEFAULT_DIGEST_FP_RATE);
+		this.chunkSize = s.getInt(CHUNK_SIZE_S, 0);
+		this.chunkWindow = s.getInt(CHUNK_WINDOW_S, DEFAULT_CHUNK_WINDOW);
+		s.ensurePositiveValue(this.chunkWindow, CHUNK_WINDOW_S);
+		this.chunkInterestSize = s.getInt(CHUNK_INTEREST_SIZE_S,
+				DEFAULT_CHUNK_INTEREST_SIZE);
+		if (this.digestFpRate <= 0 || this.digestFpRate >= 1) {
+			throw new SettingsError(s.getFullPropertyName(DIGEST_FP_RATE_S) +
+					" must be in range (0, 1)");
+		}
+		if (!this.csBufferMode.equals(CS_BUFFER_SEPARATE) &&
+				!this.csBufferMode.equals(CS_BUFFER_SHARED) &&
+				!this.csBufferMode.equals(CS_BUFFER_COMPETE)) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(CS_BUFFER_S));
+		}
 	}
 
 	protected NDDRRouter(NDDRRouter r) {
 		super(r);
+		this.content_storage = r.content_storage.replicate();
+		this.caching = r.caching.replicate();
+		this.csBufferMode = r.csBufferMode;
+		this.distanceMaxAge = r.distanceMaxAge;
+		this.gradient = r.gradient;
+		this.maxFloodHops = r.maxFloodHops;
+		this.suppression = r.suppression;
+		this.digestFpRate = r.digestFpRate;
+		this.chunkSize = r.chunkSize;
+		this.chunkWindow = r.chunkWindow;
+		this.chunkInterestSize = r.chunkInterestSize;
 		initDataStructures();
 	}
 	
@@ -82,22 +276,145 @@ public class NDDRRouter extends ActiveRouter {
 	private void initDataStructures() {
 				
 		// create the three components in NDDR router
-		this.distance_table = new HashMap<DTNHost, Tuple<Integer, Integer>>();
-		this.content_storage = new HashMap<String, String>();
-		this.pending_interest_table = new HashMap<String, ArrayList<DTNHost>>();
-
-		// prepared some data in some nodes which are different from the requester nodes
-		if (( hostIndex >= (Nr_OF_HOSTS - Nr_OF_DATA_NAMES) && hostIndex < Nr_OF_HOSTS ) 
-				&& (dataNameIndex < Nr_OF_DATA_NAMES)
-				&& (rd.nextInt(Nr_OF_DATA_NAMES) < Nr_OF_DATA_NAMES) ) {
-			
-			String pickedDataName = dataNameList[dataNameIndex];
-			this.content_storage.put(pickedDataName, DATA_CONTENT_FOR_TEST);
-			dataNameIndex++;
-		}
+		this.distance_table = new DistanceTable(this.distanceMaxAge);
+		this.producedPrefixes = new BitSet();
+		this.pending_interest_table = new PendingInterestTable();
+		this.peerDistances = new HashMap<DTNHost, int[]>();
+		this.peerPrefixes = new HashMap<DTNHost, BitSet>();
+		this.peerContents = new HashMap<DTNHost, BitSet>();
+		this.peerDigests = new HashMap<DTNHost, BloomFilter>();
+		this.peerDigestKeys = new HashMap<DTNHost, Set<Long>>();
+		this.finishedMessages = new BitSet();
+		this.activeRetrievals = new HashMap<Integer, ChunkRetrieval>();
+		this.retrievals = new ArrayList<ChunkRetrieval>();
+		this.contactProgress = new HashMap<Connection, Map<Long, Integer>>();
+	}
+	
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		this.caching.init(host);
 		
-		hostIndex ++;
-
+		// prepare the data this host produces (see ContentCatalog)
+		for (int prefix : ContentCatalog.getInstance().getProducedPrefixes(
+				host.getAddress())) {
+			this.producedPrefixes.set(prefix);
+		}
+	}
+	
+	/**
+	 * Returns true if a set of name prefixes covers a data ID, i.e., has a
+	 * prefix of the data's name (longest prefix match in the name tree)
+	 * @param prefixes The name prefixes
+	 * @param dataId ID of the data
+	 * @return true if the data is under one of the prefixes
+	 */
+	private static boolean covers(BitSet prefixes, int dataId) {
+		ContentCatalog catalog = ContentCatalog.getInstance();
+		return !prefixes.isEmpty() && catalog.getNameTree().longestPrefixMatch(
+				catalog.getNode(catalog.getObjectId(dataId)), prefixes) >= 0;
+	}
+	
+	/**
+	 * Returns true if this host produces a data ID
+	 * @param dataId ID of the data
+	 * @return true if this host produces the data
+	 */
+	private boolean isProduced(int dataId) {
+		return covers(this.producedPrefixes, dataId);
+	}
+	
+	/**
+	 * Returns the content store of this router
+	 * @return The content store
+	 */
+	public ContentStore getContentStore() {
+		return this.content_storage;
+	}
+	
+	/**
+	 * Returns the caching strategy of this router
+	 * @return The caching strategy
+	 */
+	public CachingStrategy getCachingStrategy() {
+		return this.caching;
+	}
+	
+	/**
+	 * Returns the Pending Interest Table of this router
+	 * @return The Pending Interest Table
+	 */
+	public PendingInterestTable getPendingInterestTable() {
+		return this.pending_interest_table;
+	}
+	
+	/**
+	 * Looks up data from the data this host produces and the content store
+	 * @param dataId ID of the data
+	 * @return The content or null if this host doesn't have the data
+	 */
+	private String lookupData(int dataId) {
+		if (isProduced(dataId)) {
+			return DATA_CONTENT_FOR_TEST;
+		}
+		return this.content_storage.lookup(dataId);
+	}
+	
+	/**
+	 * Caches the content of a received Data message if the caching strategy
+	 * admits it (unless this host produces the data or already has it). If
+	 * the content store uses the message buffer, room is made for the
+	 * content according to the buffer mode.
+	 * @param m The Data message
+	 * @param hopsToDestination Distance of this host to the destination of
+	 * the Data or {@link CachingStrategy#UNKNOWN}
+	 */
+	private void cacheData(Message m, int hopsToDestination) {
+		int dataId = m.getDataId();
+		int size = m.getSize();
+		if (isProduced(dataId) || this.content_storage.contains(dataId) ||
+				!this.caching.shouldCache(m, hopsToDestination)) {
+			return;
+		}
+		if (!this.csBufferMode.equals(CS_BUFFER_SEPARATE) && 
+				this.getBufferSize() != Integer.MAX_VALUE) {
+			/* evict cached content first, then (if competing) messages */
+			while (this.getFreeBufferSize() < size &&
+					this.content_storage.evict() >= 0) { }
+			if (this.getFreeBufferSize() < size && 
+					!(this.csBufferMode.equals(CS_BUFFER_COMPETE) &&
+					  super.makeRoomForMessage(size))) {
+				this.content_storage.countRejection();
+				return;
+			}
+		}
+		this.content_storage.add(dataId, (String)m.getProperty(CONTENT), size);
+	}
+	
+	@Override
+	public int getFreeBufferSize() {
+		int free = super.getFreeBufferSize();
+		if (free == Integer.MAX_VALUE || 
+				this.csBufferMode.equals(CS_BUFFER_SEPARATE)) {
+			return free;
+		}
+		return (int)(free - this.content_storage.getUsed());
+	}
+	
+	@Override
+	protected boolean makeRoomForMessage(int size) {
+		if (this.csBufferMode.equals(CS_BUFFER_SEPARATE) || 
+				size > this.getBufferSize()) {
+			return super.makeRoomForMessage(size);
+		}
+		if (this.csBufferMode.equals(CS_BUFFER_COMPETE) &&
+				super.makeRoomForMessage(size)) {
+			return true; // room was made by dropping messages
+		}
+		/* cached content gives way to messages */
+		while (this.getFreeBufferSize() < size && 
+				this.content_storage.evict() >= 0) { }
+		return super.makeRoomForMessage(size);
 	}
 	
 	/**
@@ -109,24 +426,38 @@ public class NDDRRouter extends ActiveRouter {
 	 */
 	private void updateDistanceInformation(Message m, int m_seqnum, DTNHost m_srcID, int m_srcDist) {
 
-		if (this.distance_table.containsKey(m_srcID)) { // Distance Table contains a m_srcID-related entry
-			if (m_seqnum > (int) this.distance_table.get(m_srcID).getValue()) { // the distance information carried by this message is fresher 
-				this.distance_table.put(m_srcID, new Tuple<Integer, Integer>(m_srcDist, m_seqnum));
-			} else if (m_seqnum == (int) this.distance_table.get(m_srcID).getValue()) {
-				if (m_srcDist < (int) this.distance_table.get(m_srcID).getKey())
-					this.distance_table.put(m_srcID, new Tuple<Integer, Integer>(m_srcDist, m_seqnum));
-				else if (m_srcDist > (int) this.distance_table.get(m_srcID).getKey()) {
-					m.updateProperty(SRC_DIST, this.distance_table.get(m_srcID).getKey());
+		int address = m_srcID.getAddress();
+		if (this.distance_table.isKnown(address)) { // Distance Table contains a m_srcID-related entry
+			int dist = this.distance_table.getDistance(address);
+			int seqnum = this.distance_table.getSeqnum(address);
+			if (m_seqnum > seqnum) { // the distance information carried by this message is fresher 
+				this.distance_table.update(address, m_srcDist, m_seqnum);
+			} else if (m_seqnum == seqnum) {
+				if (m_srcDist < dist)
+					this.distance_table.update(address, m_srcDist, m_seqnum);
+				else if (m_srcDist > dist) {
+					m.updateProperty(SRC_DIST, dist);
 				}
-			} else { // m_seqnum < (int) this.distance_table.get(m_srcID).getValue()  // the distance information in Distance Table is fresher 
-				m.updateProperty(SRC_DIST, this.distance_table.get(m_srcID).getKey());
-				m.updateProperty(SEQ_NUM, this.distance_table.get(m_srcID).getValue());
+			} else { // m_seqnum < seqnum  // the distance information in Distance Table is fresher 
+				m.updateProperty(SRC_DIST, dist);
+				m.updateProperty(SEQ_NUM, seqnum);
 			}
 		} else{ // Distance Table doesn't contain a m_srcID-related entry 
-			this.distance_table.put(m_srcID, new Tuple<Integer, Integer>(m_srcDist, m_seqnum)); 
+			this.distance_table.update(address, m_srcDist, m_seqnum); 
 		}
 
 	}
+	
+	/**
+	 * Returns the distance to a host from the Distance Table
+	 * @param host The host
+	 * @return The distance or {@link #DEFAULT_DEST_DIST} if the distance
+	 * isn't known
+	 */
+	private int getDestDist(DTNHost host) {
+		int dist = this.distance_table.getDistance(host.getAddress());
+		return dist == DistanceTable.UNKNOWN ? DEFAULT_DEST_DIST : dist;
+	}
 
 	/**
 	 * Process a received message inside the NDDR router 
@@ -139,7 +470,7 @@ public class NDDRRouter extends ActiveRouter {
 		DTNHost m_srcID = m.getFrom();
 		int m_srcDist = (int) m.getProperty(SRC_DIST);
 		int m_seqnum = (int) m.getProperty(SEQ_NUM);
-		String m_dataName = m.getDataName();
+		int m_dataId = m.getDataId();
 		String m_type = (String) m.getProperty(TYPE);
 		int m_size = m.getSize();
 		
@@ -159,10 +490,11 @@ public class NDDRRouter extends ActiveRouter {
 			boolean isEligible = true;
 			
 			// process in DT
-			if (this.distance_table.containsKey(m_destID)) {
-				if ((int) this.distance_table.get(m_destID).getKey() < m_destDist ) {
+			int destDistInDT = this.distance_table.getDistance(m_destID.getAddress());
+			if (destDistInDT != DistanceTable.UNKNOWN) {
+				if (destDistInDT < m_destDist ) {
 					isEligible = true;
-					m.updateProperty(DEST_DIST, this.distance_table.get(m_destID).getKey()); //XXX the only step to update a message's destDist		
+					m.updateProperty(DEST_DIST, destDistInDT); //XXX the only step to update a message's destDist		
 				} else 
 					isEligible = false;
 			} else{ 
@@ -170,35 +502,32 @@ public class NDDRRouter extends ActiveRouter {
 			}
 
 			// process in CS for Data
-			if (!this.content_storage.containsKey(m_dataName)) {
-				this.content_storage.put(m_dataName, m_data);
-			} 
+			cacheData(m, destDistInDT == DistanceTable.UNKNOWN ?
+					CachingStrategy.UNKNOWN : destDistInDT);
 			
 			// process DATA in Pending Interest Table
-			if (this.pending_interest_table.containsKey(m_dataName)) { // hit the dataName !
-				ArrayList<DTNHost> requesters = this.pending_interest_table.get(m_dataName);
+			if (this.pending_interest_table.contains(m_dataId)) { // hit the dataName !
 				if(isEligible) { // already has a DATA for m_destID
-					requesters.remove(m_destID); // no need to create a new DATA message for m_destID
-					for(DTNHost toHost:requesters){
-						int destDist = this.distance_table.containsKey(toHost)? this.distance_table.get(toHost).getKey():DEFAULT_DEST_DIST;
-						createNewDataMessage(m_dataName, content_storage.get(m_dataName), toHost, destDist, m_size); 
+					this.pending_interest_table.removeRequester(m_dataId, m_destID); // no need to create a new DATA message for m_destID
+					for(DTNHost toHost:this.pending_interest_table.getRequesters(m_dataId)){
+						int destDist = getDestDist(toHost);
+						createNewDataMessage(m_dataId, m_data, toHost, destDist, m_size); 
 					}
-					this.pending_interest_table.remove(m_dataName);
+					this.pending_interest_table.satisfy(m_dataId);
 				}else{
-					boolean is_m_destIDARequester = requesters.remove(m_destID);
-					for(DTNHost toHost:requesters){
-						int destDist = this.distance_table.containsKey(toHost)? this.distance_table.get(toHost).getKey():DEFAULT_DEST_DIST;
-						createNewDataMessage(m_dataName, content_storage.get(m_dataName), toHost, destDist, m_size); 
+					boolean is_m_destIDARequester = this.pending_interest_table.removeRequester(m_dataId, m_destID);
+					for(DTNHost toHost:this.pending_interest_table.getRequesters(m_dataId)){
+						int destDist = getDestDist(toHost);
+						createNewDataMessage(m_dataId, m_data, toHost, destDist, m_size); 
 					}
 					if(is_m_destIDARequester){ // m_destID has already exists in the requesters
-						requesters.clear();
-						requesters.add(m_destID);
+						this.pending_interest_table.retainOnly(m_dataId, m_destID);
 					}else{
-						this.pending_interest_table.remove(m_dataName);
+						this.pending_interest_table.satisfy(m_dataId);
 					}
 					removeFinishedMessage(m.getId()); // the DATA message finished its tasks, remove it 
 				}
-			}else{ // could not hit the m_dataName in PIT 
+			}else{ // could not hit the m_dataId in PIT 
 				if(!isEligible){
 					removeFinishedMessage(m.getId()); // the DATA message finished its tasks, remove it 
 				}
@@ -211,29 +540,27 @@ public class NDDRRouter extends ActiveRouter {
 			boolean hitInCS = false;
 			
 			// process INTEREST in Content Storage
-			if (this.content_storage.containsKey(m_dataName)) { // hit the dataName !
+			String content = lookupData(m_dataId);
+			if (content != null) { // hit the dataName !
 				hitInCS = true;
-				int destDist = this.distance_table.containsKey(m_srcID)? this.distance_table.get(m_srcID).getKey():DEFAULT_DEST_DIST;
-				createNewDataMessage(m, destDist, content_storage.get(m_dataName));  // create a DATA  
+				int destDist = getDestDist(m_srcID);
+				createNewDataMessage(m, destDist, content);  // create a DATA  
 				deleteMessage(m.getId(), false);  // remove the INTEREST
+				this.finishedMessages.set(m.getIdIndex());
 			}
 
 			// process INTEREST in Pending Interest Table
-			if (this.pending_interest_table.containsKey(m_dataName)) { // hit the dataName !
-				ArrayList<DTNHost> requesters = this.pending_interest_table.get(m_dataName);
-				if(hitInCS){
-					requesters.remove(m_srcID); 
-					for(DTNHost toHost:requesters){
-						int destDist = this.distance_table.containsKey(toHost)? this.distance_table.get(toHost).getKey():DEFAULT_DEST_DIST;
-						createNewDataMessage(m_dataName, content_storage.get(m_dataName), toHost, destDist, m_size); 
+			if (hitInCS) {
+				if (this.pending_interest_table.contains(m_dataId)) { // hit the dataName !
+					this.pending_interest_table.removeRequester(m_dataId, m_srcID); 
+					for(DTNHost toHost:this.pending_interest_table.getRequesters(m_dataId)){
+						int destDist = getDestDist(toHost);
+						createNewDataMessage(m_dataId, content, toHost, destDist, getDataSize(m)); 
 					}
-					this.pending_interest_table.remove(m_dataName);
-				} else if (!requesters.contains(m_srcID))
-					requesters.add(m_srcID); 
-			} else if(!hitInCS){
-				ArrayList<DTNHost> tmp_reqList = new ArrayList<DTNHost>();
-				tmp_reqList.add(m_srcID);
-				this.pending_interest_table.put(m_dataName, tmp_reqList);
+					this.pending_interest_table.satisfy(m_dataId);
+				}
+			} else { // a new entry or aggregated to an existing one; lives as long as the INTEREST
+				this.pending_interest_table.add(m_dataId, m_srcID, m.getExpiryTime());
 			}
 
 		} // -------------- end if(INTEREST) --------------
@@ -250,7 +577,7 @@ public class NDDRRouter extends ActiveRouter {
 		// read common fields of the message, both INTEREST and DATA have these fields
 		DTNHost m_srcID = m.getFrom();
 		int m_seqnum = (int) m.getProperty(SEQ_NUM);
-		String m_dataName = m.getDataName();
+		int m_dataId = m.getDataId();
 		String m_type = (String) m.getProperty(TYPE);
 		int m_size = m.getSize();
 		
@@ -262,20 +589,17 @@ public class NDDRRouter extends ActiveRouter {
 			int m_destDist = (int) m.getProperty(DEST_DIST);	
 
 			// process in CS for Data
-			if (!this.content_storage.containsKey(m_dataName)) {
-				this.content_storage.put(m_dataName, m_data);
-			} 
+			cacheData(m, CachingStrategy.UNKNOWN);
 			
 			// process DATA in Pending Interest Table
-			if (this.pending_interest_table.containsKey(m_dataName)) { // hit the dataName !
-				ArrayList<DTNHost> requesters = this.pending_interest_table.get(m_dataName);
-				requesters.remove(m_destID); // no need to create a new DATA message for m_destID
-				for(DTNHost toHost:requesters){
+			if (this.pending_interest_table.contains(m_dataId)) { // hit the dataName !
+				this.pending_interest_table.removeRequester(m_dataId, m_destID); // no need to create a new DATA message for m_destID
+				for(DTNHost toHost:this.pending_interest_table.getRequesters(m_dataId)){
 					int destDist = DEFAULT_DEST_DIST;
-					createNewDataMessage(m_dataName, content_storage.get(m_dataName), toHost, destDist, m_size); 
+					createNewDataMessage(m_dataId, m_data, toHost, destDist, m_size); 
 				}
-				this.pending_interest_table.remove(m_dataName);
-			}else{ // could not hit the m_dataName in PIT 
+				this.pending_interest_table.satisfy(m_dataId);
+			}else{ // could not hit the m_dataId in PIT 
 					removeFinishedMessage(m.getId()); // the DATA message finished its tasks, remove it 
 			}
 		} // -------------- end if(DATA) ---------------
@@ -286,29 +610,27 @@ public class NDDRRouter extends ActiveRouter {
 			boolean hitInCS = false;
 			
 			// process INTEREST in Content Storage
-			if (this.content_storage.containsKey(m_dataName)) { // hit the dataName !
+			String content = lookupData(m_dataId);
+			if (content != null) { // hit the dataName !
 				hitInCS = true;
 				int destDist = DEFAULT_DEST_DIST;
-				createNewDataMessage(m, destDist, content_storage.get(m_dataName));  // create a DATA  
+				createNewDataMessage(m, destDist, content);  // create a DATA  
 				deleteMessage(m.getId(), false);  // remove the INTEREST
+				this.finishedMessages.set(m.getIdIndex());
 			}
 
 			// process INTEREST in Pending Interest Table
-			if (this.pending_interest_table.containsKey(m_dataName)) { // hit the dataName !
-				ArrayList<DTNHost> requesters = this.pending_interest_table.get(m_dataName);
-				if(hitInCS){
-					requesters.remove(m_srcID); 
-					for(DTNHost toHost:requesters){
+			if (hitInCS) {
+				if (this.pending_interest_table.contains(m_dataId)) { // hit the dataName !
+					this.pending_interest_table.removeRequester(m_dataId, m_srcID); 
+					for(DTNHost toHost:this.pending_interest_table.getRequesters(m_dataId)){
 						int destDist = DEFAULT_DEST_DIST;
-						createNewDataMessage(m_dataName, content_storage.get(m_dataName), toHost, destDist, m_size); 
+						createNewDataMessage(m_dataId, content, toHost, destDist, getDataSize(m)); 
 					}
-					this.pending_interest_table.remove(m_dataName);
-				} else if (!requesters.contains(m_srcID))
-					requesters.add(m_srcID); 
-			} else if(!hitInCS){
-				ArrayList<DTNHost> tmp_reqList = new ArrayList<DTNHost>();
-				tmp_reqList.add(m_srcID);
-				this.pending_interest_table.put(m_dataName, tmp_reqList);
+					this.pending_interest_table.satisfy(m_dataId);
+				}
+			} else { // a new entry or aggregated to an existing one; lives as long as the INTEREST
+				this.pending_interest_table.add(m_dataId, m_srcID, m.getExpiryTime());
 			}
 
 		} // -------------- end if(INTEREST) --------------
@@ -322,9 +644,17 @@ public class NDDRRouter extends ActiveRouter {
 	@Override
 	public boolean createNewMessage(Message msg) {
 		
+		ContentCatalog catalog = ContentCatalog.getInstance();
+		int dataId = catalog.drawName();
+		if (this.chunkSize > 0) {
+			startRetrieval(dataId, msg.getSize());
+			return true;
+		}
+		
 		msg.setTo(null); //XXX an interest message has no destination
 		msg.setTtl(this.msgTtl);
-		msg.setDataName(drawDataName());
+		msg.setDataName(catalog.getName(dataId));
+		msg.setDataId(dataId);
 		msg.addProperty(TYPE, TYPE_INTEREST);
 		msg.addProperty(SRC_DIST, new Integer(0));
 		msg.addProperty(DEST_DIST, null);
@@ -338,6 +668,166 @@ public class NDDRRouter extends ActiveRouter {
 		return true;
 	}
 
+	/**
+	 * Starts a chunked retrieval of a data object (unless the object is
+	 * already being retrieved) and requests its first chunks
+	 * @param objectId ID of the object
+	 * @param size Size of the object
+	 */
+	private void startRetrieval(int objectId, int size) {
+		if (this.activeRetrievals.containsKey(objectId)) {
+			return; /* the earlier request covers this one */
+		}
+		int nrofChunks = Math.max(1, (size + this.chunkSize - 1) / 
+				this.chunkSize);
+		ChunkRetrieval r = new ChunkRetrieval(objectId, nrofChunks, size,
+				SimClock.getTime());
+		this.retrievals.add(r);
+		this.activeRetrievals.put(objectId, r);
+		requestChunks(r);
+	}
+	
+	/**
+	 * Fills the Interest window of a chunked retrieval: creates Interests
+	 * for the next missing chunks that have no live Interest. Chunks this
+	 * host already has are received without Interests. If that completes
+	 * the object, the retrieval is finished.
+	 * @param r The retrieval
+	 */
+	private void requestChunks(ChunkRetrieval r) {
+		ContentCatalog catalog = ContentCatalog.getInstance();
+		double now = SimClock.getTime();
+		int[] chunks;
+		while ((chunks = r.getNextRequests(this.chunkWindow, now)).length > 0) {
+			boolean local = false;
+			for (int chunk : chunks) {
+				int chunkId = catalog.getChunkId(r.getObjectId(), chunk);
+				if (isProduced(chunkId) || 
+						this.content_storage.contains(chunkId)) {
+					local = true;
+					r.received(chunk, now);
+				} else {
+					Message interest = createChunkInterest(chunkId,
+							getChunkDataSize(r, chunk));
+					r.requested(chunk, interest.getExpiryTime());
+				}
+			}
+			if (r.isComplete()) {
+				this.activeRetrievals.remove(r.getObjectId());
+				return;
+			}
+			if (!local) {
+				return; /* else the window has room for more chunks */
+			}
+		}
+	}
+	
+	/**
+	 * Returns the size of a chunk's Data: the chunk size, or the rest of
+	 * the object for the last chunk
+	 * @param r The retrieval
+	 * @param chunk Index of the chunk
+	 * @return The size of the chunk (bytes)
+	 */
+	private int getChunkDataSize(ChunkRetrieval r, int chunk) {
+		if (chunk < r.getNrofChunks() - 1) {
+			return this.chunkSize;
+		}
+		return r.getSize() - (r.getNrofChunks() - 1) * this.chunkSize;
+	}
+	
+	/**
+	 * Creates a new Interest for a chunk
+	 * @param chunkId ID of the chunk
+	 * @param dataSize Size of the chunk's Data
+	 * @return The new Interest
+	 */
+	private Message createChunkInterest(int chunkId, int dataSize) {
+		String id = "I_" + this.getHost() + "_" + this.seqnum;
+		Message msg = new Message(this.getHost(), null, id, 
+				this.chunkInterestSize);
+		msg.setTtl(this.msgTtl);
+		msg.setDataName(getDataName(chunkId));
+		msg.setDataId(chunkId);
+		msg.addProperty(TYPE, TYPE_INTEREST);
+		msg.addProperty(SRC_DIST, 0);
+		msg.addProperty(DEST_DIST, null);
+		msg.addProperty(SEQ_NUM, this.seqnum);
+		msg.addProperty(CONTENT, null);
+		msg.addProperty(DATA_SIZE, dataSize);
+		
+		makeRoomForNewMessage(msg.getSize());
+		addToMessages(msg, true);
+		this.seqnum++;
+		return msg;
+	}
+	
+	/**
+	 * Records a received chunk of a retrieval and requests more chunks or,
+	 * if the object is complete, finishes the retrieval
+	 * @param r The retrieval
+	 * @param chunk Index of the received chunk
+	 */
+	private void chunkReceived(ChunkRetrieval r, int chunk) {
+		if (!r.received(chunk, SimClock.getTime())) {
+			return;
+		}
+		if (r.isComplete()) {
+			this.activeRetrievals.remove(r.getObjectId());
+		} else {
+			requestChunks(r);
+		}
+	}
+	
+	/**
+	 * Returns the size of the Data an Interest asks for
+	 * @param interest The Interest
+	 * @return The Data size
+	 */
+	private static int getDataSize(Message interest) {
+		Object size = interest.getProperty(DATA_SIZE);
+		return size != null ? (Integer)size : interest.getSize();
+	}
+	
+	/**
+	 * Returns the name of a data ID (a chunk name if chunks are used)
+	 * @param dataId The data ID
+	 * @return The name
+	 */
+	private String getDataName(int dataId) {
+		ContentCatalog catalog = ContentCatalog.getInstance();
+		return this.chunkSize > 0 ? catalog.getChunkName(dataId) : 
+			catalog.getName(dataId);
+	}
+	
+	/**
+	 * Returns the chunked retrievals of this host
+	 * @return The retrievals in the order they were started
+	 */
+	public List<ChunkRetrieval> getRetrievals() {
+		return this.retrievals;
+	}
+	
+	/**
+	 * Returns the number of bytes chunking has saved from being resent:
+	 * the bytes of an object's chunks that were sent on a connection during
+	 * a contact that broke while another chunk of the object was being
+	 * sent, i.e., bytes that a whole object transfer would have lost
+	 * @return The number of saved bytes
+	 */
+	public long getChunkBytesSaved() {
+		return this.chunkBytesSaved;
+	}
+	
+	/**
+	 * Returns the (object, destination) key of a Data chunk for the
+	 * contact progress
+	 */
+	private static long progressKey(Message m) {
+		int objectId = ContentCatalog.getInstance().getObjectId(m.getDataId());
+		return ((long)objectId << 32) | m.getTo().getAddress();
+	}
+	
 	/**
 	 * Create a new DATA message
 	 * @param interestMsg
@@ -349,17 +839,19 @@ public class NDDRRouter extends ActiveRouter {
 		DTNHost newTo = interestMsg.getFrom(); 
 		DTNHost newFrom = this.getHost(); 
 		String id = "D_" + this.getHost() + "_" + this.seqnum; 
-		int size = interestMsg.getSize();
+		int size = getDataSize(interestMsg);
 		String dataName = interestMsg.getDataName();
 		
 		Message dataMsg = new Message(newFrom, newTo, id, size);
 		dataMsg.setTtl(this.msgTtl);
 		dataMsg.setDataName(dataName);
+		dataMsg.setDataId(interestMsg.getDataId());
 		dataMsg.addProperty(TYPE, TYPE_DATA); 
 		dataMsg.addProperty(SRC_DIST, new Integer(0));
 		dataMsg.addProperty(DEST_DIST, destDist);
 		dataMsg.addProperty(SEQ_NUM, this.seqnum);
 		dataMsg.addProperty(CONTENT, dataContent);
+		this.caching.dataCreated(dataMsg);
 		
 		makeRoomForNewMessage(dataMsg.getSize());
 		addToMessages(dataMsg, true); 
@@ -368,24 +860,26 @@ public class NDDRRouter extends ActiveRouter {
 	
 	/**
 	 * Create a new DATA message
-	 * @param dataName
+	 * @param dataId
 	 * @param dataContent
 	 * @param dest
 	 * @param destDist
 	 * @param size
 	 */
-	public void createNewDataMessage(String dataName, String dataContent, DTNHost dest, int destDist, int size) {
+	public void createNewDataMessage(int dataId, String dataContent, DTNHost dest, int destDist, int size) {
 
 		String id = "D_" + this.getHost() + "_" + this.seqnum;
 		
 		Message dataMsg = new Message(this.getHost(), dest, id, size);
 		dataMsg.setTtl(this.msgTtl);
-		dataMsg.setDataName(dataName);
+		dataMsg.setDataName(getDataName(dataId));
+		dataMsg.setDataId(dataId);
 		dataMsg.addProperty(TYPE, TYPE_DATA); 
 		dataMsg.addProperty(SRC_DIST, new Integer(0));
 		dataMsg.addProperty(DEST_DIST, destDist);
 		dataMsg.addProperty(SEQ_NUM, this.seqnum);
 		dataMsg.addProperty(CONTENT, dataContent);
+		this.caching.dataCreated(dataMsg);
 		
 		makeRoomForNewMessage(dataMsg.getSize());
 		addToMessages(dataMsg, true); 
@@ -393,26 +887,17 @@ public class NDDRRouter extends ActiveRouter {
 
 	}
 
-	/**
-	 * Draws a random data name from the data name list
-	 * 
-	 * @return A random data name
-	 */
-	protected static String drawDataName() {
-
-		Random r = new Random();
-		return dataNameList[r.nextInt(Nr_OF_DATA_NAMES)];
-
-	}
-
 	@Override
 	public void update() {
 		super.update();
+		this.pending_interest_table.expire(SimClock.getTime());
 		if (!canStartTransfer() || isTransferring()) {
 			return; // nothing to transfer or is currently transferring
 		}
 
-		// try messages that could be delivered to final recipient
+		// try messages that could be delivered to final recipient; only Data
+		// have a destination (Interests are flooded), so the destination
+		// queues of ActiveRouter hold exactly the Data for each peer
 		if (exchangeDeliverableMessages() != null) {
 			return;
 		}
@@ -422,98 +907,393 @@ public class NDDRRouter extends ActiveRouter {
 	}
 	
 	@Override
-	public NDDRRouter replicate() {
-		return new NDDRRouter(this);
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+		DTNHost other = con.getOtherNode(getHost());
+		if (con.isUp()) {
+			this.caching.contactUp(other);
+			if (this.gradient) {
+				sendDistanceVector(other);
+			}
+			if (this.suppression) {
+				sendInterestDigest(other);
+			}
+			/* resume the unfinished retrievals whose Interests expired */
+			for (ChunkRetrieval r : new ArrayList<ChunkRetrieval>(
+					this.activeRetrievals.values())) {
+				requestChunks(r);
+			}
+		} else {
+			if (!this.sendingConnections.contains(con)) {
+				this.contactProgress.remove(con);
+			} /* else: removed when the transfer is aborted */
+			this.peerDistances.remove(other);
+			this.peerPrefixes.remove(other);
+			this.peerContents.remove(other);
+			this.peerDigests.remove(other);
+			this.peerDigestKeys.remove(other);
+		}
 	}
+	
+	/**
+	 * Sends a Bloom filter digest of the pending Interests (data ID and
+	 * requester pairs) of this host to a peer if the peer uses Interest
+	 * suppression too
+	 * @param other The peer
+	 */
+	private void sendInterestDigest(DTNHost other) {
+		MessageRouter otherRouter = other.getRouter();
+		if (!(otherRouter instanceof NDDRRouter) || 
+				!((NDDRRouter)otherRouter).suppression) {
+			return; /* peer doesn't understand interest digests */
+		}
 		
-	@Override
-	public int receiveMessage(Message m, DTNHost from) {
-		return super.receiveMessage(m, from);
+		Set<Long> keys = new HashSet<Long>();
+		BitSet ids = this.pending_interest_table.getPendingIds();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id+1)) {
+			BitSet requesters = 
+				this.pending_interest_table.getRequesterAddresses(id);
+			for (int a = requesters.nextSetBit(0); a >= 0; 
+					a = requesters.nextSetBit(a+1)) {
+				keys.add(digestKey(id, a));
+			}
+		}
+		
+		BloomFilter digest = new BloomFilter(keys.size(), this.digestFpRate);
+		for (long key : keys) {
+			digest.add(key);
+		}
+		addControlTraffic(INTEREST_DIGEST_TRAFFIC, digest.getSizeInBytes());
+		NDDRRouter peer = (NDDRRouter)otherRouter;
+		peer.peerDigests.put(getHost(), digest);
+		peer.peerDigestKeys.put(getHost(), keys);
 	}
 	
-	@Override
-	public Message messageTransferred(String id, DTNHost from) {
+	/**
+	 * Returns the interest digest key of a data ID and requester pair
+	 */
+	private static long digestKey(int dataId, int address) {
+		return ((long)dataId << 32) | address;
+	}
+	
+	/**
+	 * Returns true if an Interest should not be sent to a peer because the
+	 * peer's digest says it has already aggregated the Interest.
+	 * Counts the suppression and whether it was caused by a false positive.
+	 * @param m The Interest
+	 * @param peer The peer
+	 * @return true if the Interest is suppressed
+	 */
+	private boolean isSuppressed(Message m, DTNHost peer) {
+		BloomFilter digest = this.peerDigests.get(peer);
+		if (digest == null) {
+			return false;
+		}
+		long key = digestKey(m.getDataId(), m.getFrom().getAddress());
+		if (!digest.mightContain(key)) {
+			return false;
+		}
+		this.nrofInterestsSuppressed++;
+		if (!this.peerDigestKeys.get(peer).contains(key)) {
+			this.nrofFalseSuppressions++;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of Interest transfers this router has started
+	 * @return the number of Interest transfers started
+	 */
+	public int getNrofInterestsSent() {
+		return this.nrofInterestsSent;
+	}
+	
+	/**
+	 * Returns the number of Interest transfers this router has suppressed
+	 * @return the number of suppressed Interest transfers
+	 */
+	public int getNrofInterestsSuppressed() {
+		return this.nrofInterestsSuppressed;
+	}
+	
+	/**
+	 * Returns the number of Interest transfers this router has suppressed
+	 * because of a false positive in a peer's digest
+	 * @return the number of falsely suppressed Interest transfers
+	 */
+	public int getNrofFalseSuppressions() {
+		return this.nrofFalseSuppressions;
+	}
+	
+	/**
+	 * Sends the distance vector, the name prefixes this host produces and
+	 * the IDs of the data it has cached to a peer if the peer uses gradient
+	 * forwarding too
+	 * @param other The peer
+	 */
+	private void sendDistanceVector(DTNHost other) {
+		MessageRouter otherRouter = other.getRouter();
+		if (!(otherRouter instanceof NDDRRouter) || 
+				!((NDDRRouter)otherRouter).gradient) {
+			return; /* peer doesn't understand distance vectors */
+		}
 		
-		Message msg = super.messageTransferred(id, from); //the msg recevied ... it might be an Interest or Data
+		int[] distances = this.distance_table.getDistances();
+		BitSet content = new BitSet();
+		this.content_storage.addCachedIds(content);
+		int nrofEntries = 1; // this host itself
+		for (int d : distances) {
+			if (d != DistanceTable.UNKNOWN) {
+				nrofEntries++;
+			}
+		}
+		addControlTraffic(DISTANCE_VECTOR_TRAFFIC, nrofEntries * DV_ENTRY_SIZE
+				+ (this.producedPrefixes.cardinality() + content.cardinality())
+				* DIGEST_ID_SIZE);
+		((NDDRRouter)otherRouter).distanceVectorReceived(getHost(),
+				this.seqnum, distances, this.distance_table.getSeqnums(),
+				this.producedPrefixes, content);
+	}
+	
+	/**
+	 * Merges a distance vector received from a peer to the Distance Table
+	 * and stores it for the forwarding decisions
+	 * @param from The peer
+	 * @param fromSeqnum Current sequence number of the peer
+	 * @param distances The peer's distances (indexed by host address)
+	 * @param seqnums Sequence numbers of the peer's distances
+	 * @param prefixes Name prefixes the peer produces
+	 * @param content IDs of the data the peer has cached
+	 */
+	private void distanceVectorReceived(DTNHost from, int fromSeqnum, 
+			int[] distances, int[] seqnums, BitSet prefixes, BitSet content) {
+		int me = getHost().getAddress();
+		for (int a = 0; a < distances.length; a++) {
+			if (distances[a] != DistanceTable.UNKNOWN && a != me) {
+				this.distance_table.merge(a, distances[a] + 1, seqnums[a]);
+			}
+		}
+		this.distance_table.merge(from.getAddress(), 1, fromSeqnum);
+		this.peerDistances.put(from, distances);
+		this.peerPrefixes.put(from, prefixes);
+		this.peerContents.put(from, content);
+	}
+	
+	/**
+	 * Returns true if a connected peer has advertised that it can provide
+	 * a data ID, i.e., it has the data cached or produces a prefix of it
+	 * @param peer The peer
+	 * @param dataId ID of the data
+	 * @return true if the peer can provide the data
+	 */
+	private boolean canProvide(DTNHost peer, int dataId) {
+		BitSet content = this.peerContents.get(peer);
+		if (content == null) {
+			return false;
+		}
+		return content.get(dataId) || covers(this.peerPrefixes.get(peer), 
+				dataId);
+	}
+	
+	/**
+	 * Returns a connected peer's distance to a host according to the
+	 * peer's distance vector
+	 * @param peer The peer
+	 * @param address Address of the host
+	 * @return The distance or {@link DistanceTable#UNKNOWN}
+	 */
+	private int getPeerDistance(DTNHost peer, int address) {
+		if (peer.getAddress() == address) {
+			return 0;
+		}
+		int[] distances = this.peerDistances.get(peer);
+		if (distances == null || address >= distances.length) {
+			return DistanceTable.UNKNOWN;
+		}
+		return distances[address];
+	}
+	
+	/**
+	 * Returns true if a peer's distance to a host is shorter than ours
+	 */
+	private static boolean improves(int ours, int theirs) {
+		return theirs != DistanceTable.UNKNOWN && 
+			(ours == DistanceTable.UNKNOWN || theirs < ours);
+	}
+	
+	/**
+	 * Returns true if a message should be forwarded to a peer in gradient
+	 * forwarding: Data if the peer is closer to the destination, Interests
+	 * if the peer has the data or is closer to a producer of it. If neither
+	 * this host nor the peer knows a gradient, the message is flooded until
+	 * it has travelled the maximum flooding hops.
+	 * @param m The message
+	 * @param peer The peer
+	 * @return true if the message should be forwarded to the peer
+	 */
+	private boolean isOnGradient(Message m, DTNHost peer) {
+		boolean known = false;
 		
-		if(isDistanceEnabled)
-			this.processReceivedMessage(msg); 
-		else 
-			this.processReceivedMessageWithDistanceDisabled(msg);
+		if (m.getTo() == peer) {
+			return true; // final recipient
+		} else if (m.getTo() != null) { // Data: towards the requester
+			int dest = m.getTo().getAddress();
+			int ours = this.distance_table.getDistance(dest);
+			int theirs = getPeerDistance(peer, dest);
+			if (improves(ours, theirs)) {
+				return true;
+			}
+			known = (ours != DistanceTable.UNKNOWN);
+		} else { // Interest: towards the caches and producers
+			if (canProvide(peer, m.getDataId())) {
+				return true;
+			}
+			ContentCatalog catalog = ContentCatalog.getInstance();
+			for (int producer : catalog.getProducers(
+					catalog.getObjectId(m.getDataId()))) {
+				int ours = this.distance_table.getDistance(producer);
+				if (improves(ours, getPeerDistance(peer, producer))) {
+					return true;
+				}
+				known |= (ours != DistanceTable.UNKNOWN);
+			}
+		}
 		
-		return msg; 
+		return !known && m.getHopCount() < this.maxFloodHops;
 	}
 	
 	@Override
-	public Connection exchangeDeliverableMessages() {
-		List<Connection> connections = getConnections();
-
-		if (connections.size() == 0) {
-			return null;
+	protected int startTransfer(Message m, Connection con) {
+		DTNHost other = con.getOtherNode(getHost());
+		if (this.gradient && !isOnGradient(m, other)) {
+			return DENIED_POLICY;
 		}
-		
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
-			//call ---> startTransfer
-
-		if (t != null) {
-			return t.getValue(); // started transfer
+		boolean isInterest = (m.getTo() == null);
+		if (this.suppression && isInterest && isSuppressed(m, other)) {
+			return DENIED_OLD; /* not offered again during this contact */
 		}
 		
-		for (Connection con : connections) {
-			if (con.getOtherNode(getHost()).requestDeliverableMessages(con)) {
-				return con;
+		int retVal = super.startTransfer(m, con);
+		if (retVal == RCV_OK && isInterest) {
+			this.nrofInterestsSent++;
+		}
+		return retVal;
+	}
+	
+	/**
+	 * In gradient forwarding, Data is handed over to the requester or a peer
+	 * closer to it and Interests are handed over to peers that can provide
+	 * the data, i.e., the sender doesn't keep a copy to send to other peers.
+	 * Messages that were flooded because no gradient was known are kept.
+	 */
+	@Override
+	protected void transferDone(Connection con) {
+		Message m = con.getMessage();
+		if (this.chunkSize > 0 && m.getTo() != null) {
+			if (con.isUp()) {
+				Map<Long, Integer> progress = this.contactProgress.get(con);
+				if (progress == null) {
+					progress = new HashMap<Long, Integer>();
+					this.contactProgress.put(con, progress);
+				}
+				Integer bytes = progress.get(progressKey(m));
+				progress.put(progressKey(m), 
+						(bytes == null ? 0 : bytes) + m.getSize());
+			} else {
+				this.contactProgress.remove(con);
 			}
 		}
 		
-		return null;
+		if (!this.gradient) {
+			return;
+		}
+		DTNHost other = con.getOtherNode(getHost());
+		if (isHandover(m, other) && this.hasMessage(m.getId())) {
+			this.deleteMessage(m.getId(), false);
+		}
+	}
+	
+	/**
+	 * Returns true if sending a message to a peer hands the message over:
+	 * the peer is the requester of the Data or closer to it, or the peer
+	 * can provide the data of the Interest
+	 * @param m The message
+	 * @param peer The peer
+	 * @return true if this host doesn't need to keep its copy
+	 */
+	private boolean isHandover(Message m, DTNHost peer) {
+		if (m.getTo() == null) {
+			return canProvide(peer, m.getDataId());
+		}
+		if (m.getTo() == peer) {
+			return true;
+		}
+		int dest = m.getTo().getAddress();
+		return improves(this.distance_table.getDistance(dest),
+				getPeerDistance(peer, dest));
 	}
 	
+	/**
+	 * Counts the bytes chunking saved when a transfer of a Data chunk is
+	 * aborted because the connection broke
+	 */
 	@Override
-	public List<Tuple<Message, Connection>> getMessagesForConnected() {
-		if (getNrofMessages() == 0 || getConnections().size() == 0) {
-			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0); 
-		}
-		List<Tuple<Message, Connection>> forTuples = 
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());		
-				String m_type = (String) m.getProperty(TYPE);
-				if(m_type.equals(TYPE_DATA)){ // only Data message has a destination, no need to handle Interest since it's flooded.
-					if (m.getTo() == to) {
-						forTuples.add(new Tuple<Message, Connection>(m,con));
-					}
-				}
+	protected void transferAborted(Connection con) {
+		Map<Long, Integer> progress = this.contactProgress.remove(con);
+		Message m = con.getMessage();
+		if (progress != null && m.getTo() != null) {
+			Integer bytes = progress.get(progressKey(m));
+			if (bytes != null) {
+				this.chunkBytesSaved += bytes;
 			}
 		}
-		return forTuples;
 	}
 	
 	@Override
-	public boolean requestDeliverableMessages(Connection con) {
-		if (isTransferring()) {
-			return false;
+	public NDDRRouter replicate() {
+		return new NDDRRouter(this);
+	}
+		
+	@Override
+	public int receiveMessage(Message m, DTNHost from) {
+		return super.receiveMessage(m, from);
+	}
+	
+	/**
+	 * Refuses the messages that have already finished their tasks at this
+	 * router, both when they are offered and when they are received
+	 */
+	@Override
+	protected int checkReceiving(Message m, DTNHost from) {
+		int recvCheck = super.checkReceiving(m, from);
+		
+		if (recvCheck == RCV_OK && this.finishedMessages.get(m.getIdIndex())) {
+			recvCheck = DENIED_OLD; // already finished here
 		}
 		
-		DTNHost other = con.getOtherNode(getHost());
-		/* do a copy to avoid concurrent modification exceptions 
-		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
-		for (Message m : temp) {
-			String m_type = (String) m.getProperty(TYPE);
-			if(m_type.equals(TYPE_DATA)){ // only Data message has a destination, no need to handle Interest since it's flooded.
-				if (other == m.getTo()) {
-					if (startTransfer(m, con) == RCV_OK) {
-						return true;
-					}
-				}
+		return recvCheck;
+	}
+	
+	@Override
+	public Message messageTransferred(String id, DTNHost from) {
+		
+		Message msg = super.messageTransferred(id, from); //the msg recevied ... it might be an Interest or Data
+		
+		if (this.chunkSize > 0 && msg.getTo() != null) { // a Data chunk
+			ContentCatalog catalog = ContentCatalog.getInstance();
+			ChunkRetrieval r = this.activeRetrievals.get(
+					catalog.getObjectId(msg.getDataId()));
+			if (r != null) {
+				chunkReceived(r, catalog.getChunkIndex(msg.getDataId()));
 			}
 		}
-		return false;
+		
+		if(isDistanceEnabled)
+			this.processReceivedMessage(msg); 
+		else 
+			this.processReceivedMessageWithDistanceDisabled(msg);
+		
+		return msg; 
 	}
 	
 	/**
@@ -523,6 +1303,7 @@ public class NDDRRouter extends ActiveRouter {
 	 * @param id ID of the message to be removed
 	 */
 	public void removeFinishedMessage(String id) {
+		this.finishedMessages.set(Message.getIdIndex(id));
 		if (this.hasMessage(id)) {
 			for (Connection c : this.sendingConnections) {
 				/* if sending the message-to-be-removed, cancel transfer */
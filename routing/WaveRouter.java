@@ -4,7 +4,6 @@
  */
 package routing;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -80,14 +79,12 @@ public class WaveRouter extends ActiveRouter {
 	}
 	
 	/**
-	 * Returns the oldest message that has been already sent forward 
+	 * Returns the first message (in the eviction policy's drop order) 
+	 * that this host doesn't have custody for anymore
 	 */
 	@Override
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		
-		for (Message m : messages) {
+		for (Message m : getMessagesInDropOrder()) {
 			Double custodyStartTime = this.custodyMessages.get(m.getId());
 			if (custodyStartTime != null) {
 				if (SimClock.getTime() > 
@@ -97,21 +94,15 @@ public class WaveRouter extends ActiveRouter {
 					continue; /* skip messages that still have custody */					
 				}
 			}
-				
 			
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; /* skip the message(s) that router is sending */
 			}
 			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	@Override
@@ -0,0 +1,36 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Eviction policy that drops the largest message first. Messages of the
+ * same size are dropped oldest first.
+ */
+public class DropLargestPolicy extends EvictionPolicy {
+
+	public DropLargestPolicy(Settings s) {
+		super(s);
+	}
+
+	protected DropLargestPolicy(DropLargestPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected int compareMessages(Message m1, Message m2) {
+		if (m1.getSize() != m2.getSize()) {
+			return (m1.getSize() > m2.getSize() ? -1 : 1);
+		}
+		return compareDoubles(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+
+	@Override
+	public DropLargestPolicy replicate() {
+		return new DropLargestPolicy(this);
+	}
+}
@@ -0,0 +1,38 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Eviction policy that drops the most replicated message first. The hop
+ * count of a message is used as the estimate of its replication: a message
+ * that has travelled many hops has most likely been copied to many nodes.
+ * Messages with the same hop count are dropped oldest first.
+ */
+public class DropMostReplicatedPolicy extends EvictionPolicy {
+
+	public DropMostReplicatedPolicy(Settings s) {
+		super(s);
+	}
+
+	protected DropMostReplicatedPolicy(DropMostReplicatedPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected int compareMessages(Message m1, Message m2) {
+		if (m1.getHopCount() != m2.getHopCount()) {
+			return (m1.getHopCount() > m2.getHopCount() ? -1 : 1);
+		}
+		return compareDoubles(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+
+	@Override
+	public DropMostReplicatedPolicy replicate() {
+		return new DropMostReplicatedPolicy(this);
+	}
+}
@@ -0,0 +1,37 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Eviction policy that drops the message whose TTL expires first. Messages
+ * with infinite TTL are dropped last (oldest first).
+ */
+public class DropNearestExpiryPolicy extends EvictionPolicy {
+
+	public DropNearestExpiryPolicy(Settings s) {
+		super(s);
+	}
+
+	protected DropNearestExpiryPolicy(DropNearestExpiryPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected int compareMessages(Message m1, Message m2) {
+		int c = compareDoubles(m1.getExpiryTime(), m2.getExpiryTime());
+		if (c != 0) {
+			return c;
+		}
+		return compareDoubles(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+
+	@Override
+	public DropNearestExpiryPolicy replicate() {
+		return new DropNearestExpiryPolicy(this);
+	}
+}
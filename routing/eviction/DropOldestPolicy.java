@@ -0,0 +1,33 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Eviction policy that drops the oldest (by receive time) message first.
+ * This is the default policy of all active routers.
+ */
+public class DropOldestPolicy extends EvictionPolicy {
+
+	public DropOldestPolicy(Settings s) {
+		super(s);
+	}
+
+	protected DropOldestPolicy(DropOldestPolicy proto) {
+		super(proto);
+	}
+
+	@Override
+	protected int compareMessages(Message m1, Message m2) {
+		return compareDoubles(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+
+	@Override
+	public DropOldestPolicy replicate() {
+		return new DropOldestPolicy(this);
+	}
+}
@@ -0,0 +1,172 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import routing.ActiveRouter;
+import core.Message;
+import core.Settings;
+
+/**
+ * Superclass of message buffer eviction policies. A policy keeps its own
+ * ordered index of the messages in a router's buffer so that the next
+ * message to drop is found in O(log n) time instead of scanning the whole
+ * buffer. Iterating over a policy returns the messages in the order they
+ * should be dropped (first message first).
+ * <P>
+ * Subclasses define the drop order in {@link #compareMessages(Message, 
+ * Message)}. The values used for the ordering must not change while the
+ * message is in the buffer; policies with changing orderings should override
+ * {@link #invalidate()} and rebuild their index lazily.
+ * </P>
+ */
+public abstract class EvictionPolicy implements Iterable<Message> {
+	/** Package of the eviction policy classes ({@value}) */
+	public static final String EVICTION_PACKAGE = "routing.eviction.";
+	/** Name of the default eviction policy class ({@value}) */
+	public static final String DEFAULT_POLICY = "DropOldestPolicy";
+
+	/** the router whose buffer this policy is indexing */
+	private ActiveRouter router;
+	/** buffered messages in the drop order */
+	private TreeSet<Message> index;
+
+	/**
+	 * Constructor. Creates a new prototype policy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public EvictionPolicy(Settings s) {
+		this.index = null; // prototypes don't index anything
+	}
+
+	/**
+	 * Copy constructor. Creates a new policy with an empty index.
+	 * @param proto The prototype policy
+	 */
+	protected EvictionPolicy(EvictionPolicy proto) {
+		this.index = new TreeSet<Message>(new DropOrderComparator());
+	}
+
+	/**
+	 * Initializes the policy for the router whose buffer it indexes.
+	 * @param router The router
+	 */
+	public void init(ActiveRouter router) {
+		this.router = router;
+	}
+
+	/**
+	 * Returns the router this policy was initialized for
+	 * @return The router
+	 */
+	protected ActiveRouter getRouter() {
+		return this.router;
+	}
+
+	/**
+	 * Informs the policy that a message was added to the buffer
+	 * @param m The added message
+	 */
+	public void messageAdded(Message m) {
+		this.index.add(m);
+	}
+
+	/**
+	 * Informs the policy that a message was removed from the buffer
+	 * @param m The removed message
+	 */
+	public void messageRemoved(Message m) {
+		this.index.remove(m);
+	}
+
+	/**
+	 * Informs the policy that the values its ordering is based on may have
+	 * changed. Policies with a static ordering ignore this.
+	 */
+	public void invalidate() { }
+
+	/**
+	 * Removes and re-adds all indexed messages to the index. Subclasses
+	 * whose ordering changes can call this after updating their keys.
+	 */
+	protected void rebuildIndex() {
+		TreeSet<Message> old = this.index;
+		this.index = new TreeSet<Message>(new DropOrderComparator());
+		this.index.addAll(old);
+	}
+
+	/**
+	 * Returns the number of indexed messages
+	 * @return the number of indexed messages
+	 */
+	public int size() {
+		return this.index.size();
+	}
+
+	/**
+	 * Returns an iterator over the buffered messages in the drop order
+	 * (the message that should be dropped first is returned first).
+	 * The buffer must not be modified while iterating.
+	 */
+	public Iterator<Message> iterator() {
+		return this.index.iterator();
+	}
+
+	/**
+	 * Compares two messages by the drop order of this policy.
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return negative value if m1 should be dropped before m2, positive
+	 * value if m2 should be dropped first, or 0 if the order isn't defined
+	 */
+	protected abstract int compareMessages(Message m1, Message m2);
+
+	/**
+	 * Creates a replicate of this policy. The replicate has the same
+	 * settings as this policy but an empty index.
+	 * @return The replicate
+	 */
+	public abstract EvictionPolicy replicate();
+
+	/**
+	 * Compares doubles so that the smaller value comes first
+	 * @param d1 The first value
+	 * @param d2 The second value
+	 * @return -1, 0 or 1 if the first value is smaller, equal or bigger
+	 */
+	protected static int compareDoubles(double d1, double d2) {
+		if (d1 == d2) {
+			return 0;
+		}
+		return (d1 < d2 ? -1 : 1);
+	}
+
+	/**
+	 * Total ordering for the index. Ties of the policy ordering are broken
+	 * by the messages' unique IDs so that no two buffered messages are
+	 * considered equal.
+	 */
+	private class DropOrderComparator implements Comparator<Message> {
+		public int compare(Message m1, Message m2) {
+			if (m1 == m2) {
+				return 0;
+			}
+			int c = compareMessages(m1, m2);
+			if (c != 0) {
+				return c;
+			}
+			return (m1.getUniqueId() < m2.getUniqueId() ? -1 :
+				(m1.getUniqueId() == m2.getUniqueId() ? 0 : 1));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
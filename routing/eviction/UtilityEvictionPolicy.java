@@ -0,0 +1,112 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.eviction;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import routing.ActiveRouter;
+import core.Message;
+import core.Settings;
+
+/**
+ * Eviction policy that drops the message with the smallest router-specific
+ * utility first. The utility values are given by
+ * {@link ActiveRouter#getMessageUtility(Message)} (e.g., delivery
+ * predictability for PRoPHET and negated path cost for MaxProp).
+ * <P>
+ * Since the utilities change when the router's state changes, the router
+ * invalidates the policy (e.g., when a new connection comes up) and the
+ * utilities of all buffered messages are re-evaluated lazily the next time
+ * a message needs to be dropped. Between invalidations, new messages are
+ * inserted into the index in O(log n) time.
+ * </P>
+ */
+public class UtilityEvictionPolicy extends EvictionPolicy {
+	/** utility values of the indexed messages */
+	private Map<Message, Double> utilities;
+	/** messages added after the last invalidation (not indexed yet) */
+	private Set<Message> pending;
+	/** are the utility values outdated */
+	private boolean invalid;
+
+	public UtilityEvictionPolicy(Settings s) {
+		super(s);
+	}
+
+	protected UtilityEvictionPolicy(UtilityEvictionPolicy proto) {
+		super(proto);
+		this.utilities = new HashMap<Message, Double>();
+		this.pending = new HashSet<Message>();
+		this.invalid = false;
+	}
+
+	@Override
+	public void messageAdded(Message m) {
+		if (this.invalid) {
+			this.pending.add(m); // evaluated when the index is refreshed
+			return;
+		}
+		this.utilities.put(m, getRouter().getMessageUtility(m));
+		super.messageAdded(m);
+	}
+
+	@Override
+	public void messageRemoved(Message m) {
+		if (!this.pending.remove(m)) {
+			super.messageRemoved(m);
+		}
+		this.utilities.remove(m);
+	}
+
+	@Override
+	public void invalidate() {
+		this.invalid = true;
+	}
+
+	@Override
+	public int size() {
+		return super.size() + this.pending.size();
+	}
+
+	@Override
+	public Iterator<Message> iterator() {
+		if (this.invalid) {
+			refresh();
+		}
+		return super.iterator();
+	}
+
+	/**
+	 * Re-evaluates the utilities of all buffered messages and rebuilds
+	 * the index
+	 */
+	private void refresh() {
+		ActiveRouter router = getRouter();
+		for (Message m : this.utilities.keySet()) {
+			this.utilities.put(m, router.getMessageUtility(m));
+		}
+		this.invalid = false;
+		rebuildIndex();
+
+		for (Message m : this.pending) {
+			messageAdded(m);
+		}
+		this.pending.clear();
+	}
+
+	@Override
+	protected int compareMessages(Message m1, Message m2) {
+		return compareDoubles(this.utilities.get(m1), this.utilities.get(m2));
+	}
+
+	@Override
+	public UtilityEvictionPolicy replicate() {
+		return new UtilityEvictionPolicy(this);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of the hop counts of the messages in a MaxProp router's buffer.
+ * Keeps the number of messages and their total size per hop count so that
+ * the hop count threshold of the buffer split can be calculated with a
+ * prefix sum over the (small) range of hop counts instead of sorting the
+ * buffer.
+ */
+public class HopCountHistogram {
+	/** initial capacity (number of hop counts) of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** number of messages per hop count */
+	private int[] counts;
+	/** total size of the messages per hop count */
+	private long[] bytes;
+	/** the biggest hop count that has messages (-1 if none) */
+	private int maxHopCount;
+
+	/**
+	 * Constructor. Creates an empty histogram.
+	 */
+	public HopCountHistogram() {
+		this.counts = new int[INITIAL_CAPACITY];
+		this.bytes = new long[INITIAL_CAPACITY];
+		this.maxHopCount = -1;
+	}
+
+	/**
+	 * Adds a message to the histogram
+	 * @param hopCount Hop count of the message
+	 * @param size Size of the message
+	 */
+	public void add(int hopCount, int size) {
+		if (hopCount >= counts.length) {
+			int capacity = Math.max(hopCount + 1, counts.length * 2);
+			counts = Arrays.copyOf(counts, capacity);
+			bytes = Arrays.copyOf(bytes, capacity);
+		}
+		counts[hopCount]++;
+		bytes[hopCount] += size;
+		maxHopCount = Math.max(maxHopCount, hopCount);
+	}
+
+	/**
+	 * Removes a message from the histogram
+	 * @param hopCount Hop count of the message
+	 * @param size Size of the message
+	 */
+	public void remove(int hopCount, int size) {
+		assert hopCount < counts.length && counts[hopCount] > 0 :
+			"No messages with hop count " + hopCount;
+		counts[hopCount]--;
+		bytes[hopCount] -= size;
+		while (maxHopCount >= 0 && counts[maxHopCount] == 0) {
+			maxHopCount--;
+		}
+	}
+
+	/**
+	 * Returns the hop count of the message that fills the given portion when
+	 * messages are taken in hop count order, i.e., the smallest hop count
+	 * whose messages together with all the messages with smaller hop counts
+	 * are at least the given amount of bytes. If all the messages are less
+	 * than that, the biggest hop count is returned.
+	 * @param portion The portion (bytes)
+	 * @return The hop count or -1 if the histogram is empty
+	 */
+	public int getHopCountFor(long portion) {
+		long sum = 0;
+		for (int i = 0; i <= maxHopCount; i++) {
+			if (counts[i] == 0) {
+				continue;
+			}
+			sum += bytes[i];
+			if (sum >= portion) {
+				return i;
+			}
+		}
+		return maxHopCount;
+	}
+}
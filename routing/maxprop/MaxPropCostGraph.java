@@ -0,0 +1,527 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Meeting probability graph of the MaxProp router with incrementally
+ * maintained shortest path trees. The cost of an edge from node A to node B
+ * is the complement of the probability that the next node A meets is B
+ * (like in {@link MaxPropDijkstra}).
+ * <P>
+ * The edges of every node are stored in packed primitive arrays indexed by
+ * node address and the shortest path trees of the most recently queried
+ * source nodes are cached. When the meeting probabilities of a node change,
+ * the cached trees are not recalculated from scratch; instead, on the next
+ * query only the subtrees whose paths got more expensive are reset and they
+ * are reconnected, together with the nodes whose paths got cheaper, using
+ * Dijkstra's algorithm that is seeded from the intact part of the tree.
+ * Cost queries between two updates are array lookups.
+ * </P>
+ */
+public class MaxPropCostGraph {
+	/** Cost of a path to a node that can't be reached */
+	public static final double INFINITY = Double.MAX_VALUE;
+	/** Maximum number of source nodes whose shortest path trees are cached */
+	public static final int MAX_CACHED_TREES = 8;
+	/** initial capacity (number of node addresses) of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** number of node addresses the arrays have room for */
+	private int capacity;
+	/** destination nodes of every node's outgoing edges */
+	private int[][] outNodes;
+	/** costs of every node's outgoing edges (same order as outNodes) */
+	private double[][] outCosts;
+	/** source nodes of every node's incoming edges (in no specific order) */
+	private int[][] inNodes;
+	/** number of incoming edges of every node */
+	private int[] inSizes;
+	/** edge cost lookup table used when repairing trees (all INFINITY when
+	 * not in use) */
+	private double[] edgeCosts;
+	/** the cached shortest path trees mapped by their source nodes (in least
+	 * recently used order) */
+	private Map<Integer, CostTree> trees;
+
+	/**
+	 * Constructor. Creates an empty graph.
+	 */
+	public MaxPropCostGraph() {
+		this.capacity = 0;
+		this.outNodes = new int[0][];
+		this.outCosts = new double[0][];
+		this.inNodes = new int[0][];
+		this.inSizes = new int[0];
+		this.edgeCosts = new double[0];
+		this.trees = new LinkedHashMap<Integer, CostTree>(
+				MAX_CACHED_TREES * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, CostTree> eldest) {
+				return size() > MAX_CACHED_TREES;
+			}
+		};
+		ensureCapacity(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Sets the outgoing edges of a node from the node's meeting probability
+	 * set. The values of the set are copied, so the set must be given again
+	 * if it is modified later.
+	 * @param node Address of the node
+	 * @param mps The meeting probabilities of the node
+	 */
+	public void setProbs(int node, MeetingProbabilitySet mps) {
+		int size = mps.size();
+		int maxIndex = node;
+		for (int i = 0; i < size; i++) {
+			maxIndex = Math.max(maxIndex, mps.getIndex(i));
+		}
+		ensureCapacity(maxIndex + 1);
+
+		int[] nodes = outNodes[node];
+		boolean sameNodes = nodes != null && nodes.length == size;
+		for (int i = 0; sameNodes && i < size; i++) {
+			sameNodes = nodes[i] == mps.getIndex(i);
+		}
+
+		if (!sameNodes) { // the set of neighbors changed; update in-edges
+			if (nodes != null) {
+				for (int v : nodes) {
+					removeInEdge(v, node);
+				}
+			}
+			nodes = new int[size];
+			for (int i = 0; i < size; i++) {
+				nodes[i] = mps.getIndex(i);
+				addInEdge(nodes[i], node);
+			}
+			outNodes[node] = nodes;
+			outCosts[node] = new double[size];
+		}
+
+		double[] costs = outCosts[node];
+		for (int i = 0; i < size; i++) {
+			/* probabilities are at most 1 but the tree repair relies on
+			 * costs never being negative, so make sure of it */
+			costs[i] = Math.max(0, 1 - mps.getValue(i));
+		}
+
+		for (CostTree t : trees.values()) {
+			t.nodeChanged(node);
+		}
+	}
+
+	/**
+	 * Returns the cost of the cheapest path between two nodes
+	 * @param from Address of the node where the path starts
+	 * @param to Address of the node where the path ends
+	 * @return The cost of the cheapest path or {@link #INFINITY} if there's
+	 * no path between the nodes
+	 */
+	public double getCost(int from, int to) {
+		ensureCapacity(Math.max(from, to) + 1);
+		CostTree tree = trees.get(from);
+		if (tree == null) {
+			tree = new CostTree(from);
+			trees.put(from, tree);
+		}
+		tree.update();
+		return tree.dist[to];
+	}
+
+	/**
+	 * Makes sure that the arrays have room for the given number of node
+	 * addresses
+	 * @param size The number of node addresses
+	 */
+	private void ensureCapacity(int size) {
+		if (size <= this.capacity) {
+			return;
+		}
+		int newCapacity = Math.max(size, this.capacity * 2);
+		outNodes = Arrays.copyOf(outNodes, newCapacity);
+		outCosts = Arrays.copyOf(outCosts, newCapacity);
+		inNodes = Arrays.copyOf(inNodes, newCapacity);
+		inSizes = Arrays.copyOf(inSizes, newCapacity);
+		edgeCosts = Arrays.copyOf(edgeCosts, newCapacity);
+		Arrays.fill(edgeCosts, this.capacity, newCapacity, INFINITY);
+		for (CostTree t : trees.values()) {
+			t.grow(this.capacity, newCapacity);
+		}
+		this.capacity = newCapacity;
+	}
+
+	/**
+	 * Adds an incoming edge for a node
+	 * @param node The node the edge leads to
+	 * @param from The node the edge starts from
+	 */
+	private void addInEdge(int node, int from) {
+		int[] ins = inNodes[node];
+		if (ins == null) {
+			ins = inNodes[node] = new int[4];
+		}
+		else if (inSizes[node] == ins.length) {
+			ins = inNodes[node] = Arrays.copyOf(ins, ins.length * 2);
+		}
+		ins[inSizes[node]++] = from;
+	}
+
+	/**
+	 * Removes an incoming edge of a node
+	 * @param node The node the edge leads to
+	 * @param from The node the edge starts from
+	 */
+	private void removeInEdge(int node, int from) {
+		int[] ins = inNodes[node];
+		for (int i = 0; i < inSizes[node]; i++) {
+			if (ins[i] == from) {
+				ins[i] = ins[--inSizes[node]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the cost of an edge
+	 * @param from The node the edge starts from
+	 * @param to The node the edge leads to
+	 * @return The cost of the edge or {@link #INFINITY} if there's no edge
+	 */
+	private double getEdgeCost(int from, int to) {
+		int[] nodes = outNodes[from];
+		for (int i = 0; nodes != null && i < nodes.length; i++) {
+			if (nodes[i] == to) {
+				return outCosts[from][i];
+			}
+		}
+		return INFINITY;
+	}
+
+	/**
+	 * Shortest path tree from one source node. The tree is stored as parent
+	 * pointers and doubly linked child lists so that the subtree of a node
+	 * can be found without searching.
+	 */
+	private class CostTree {
+		private final int source;
+		/** costs of the cheapest paths from the source */
+		private double[] dist;
+		/** parents of the nodes in the tree (-1 for no parent) */
+		private int[] parent;
+		private int[] firstChild;
+		private int[] nextSibling;
+		private int[] prevSibling;
+		/** binary heap of the nodes whose paths are being resolved */
+		private int[] heap;
+		/** positions of the nodes in the heap (-1 if not in the heap) */
+		private int[] heapPos;
+		private int heapSize;
+		/** nodes whose edges have changed since the last update */
+		private int[] changed;
+		private boolean[] isChanged;
+		private int nrofChanged;
+		/** nodes whose paths got more expensive in the current update */
+		private int[] affected;
+		private boolean[] isAffected;
+		private int nrofAffected;
+		/** work stack for traversing subtrees */
+		private int[] stack;
+
+		/**
+		 * Creates and calculates a shortest path tree
+		 * @param source The source node of the tree
+		 */
+		public CostTree(int source) {
+			this.source = source;
+			this.dist = new double[0];
+			this.parent = new int[0];
+			this.firstChild = new int[0];
+			this.nextSibling = new int[0];
+			this.prevSibling = new int[0];
+			this.heap = new int[0];
+			this.heapPos = new int[0];
+			this.changed = new int[0];
+			this.isChanged = new boolean[0];
+			this.affected = new int[0];
+			this.isAffected = new boolean[0];
+			this.stack = new int[0];
+			grow(0, capacity);
+
+			dist[source] = 0;
+			heapUpdate(source);
+			runDijkstra();
+		}
+
+		/**
+		 * Grows the arrays of the tree; new nodes are unreachable
+		 * @param oldSize The old size of the arrays
+		 * @param newSize The new size of the arrays
+		 */
+		public void grow(int oldSize, int newSize) {
+			dist = Arrays.copyOf(dist, newSize);
+			parent = Arrays.copyOf(parent, newSize);
+			firstChild = Arrays.copyOf(firstChild, newSize);
+			nextSibling = Arrays.copyOf(nextSibling, newSize);
+			prevSibling = Arrays.copyOf(prevSibling, newSize);
+			heap = Arrays.copyOf(heap, newSize);
+			heapPos = Arrays.copyOf(heapPos, newSize);
+			changed = Arrays.copyOf(changed, newSize);
+			isChanged = Arrays.copyOf(isChanged, newSize);
+			affected = Arrays.copyOf(affected, newSize);
+			isAffected = Arrays.copyOf(isAffected, newSize);
+			stack = Arrays.copyOf(stack, newSize);
+			Arrays.fill(dist, oldSize, newSize, INFINITY);
+			Arrays.fill(parent, oldSize, newSize, -1);
+			Arrays.fill(firstChild, oldSize, newSize, -1);
+			Arrays.fill(nextSibling, oldSize, newSize, -1);
+			Arrays.fill(prevSibling, oldSize, newSize, -1);
+			Arrays.fill(heapPos, oldSize, newSize, -1);
+		}
+
+		/**
+		 * Marks a node's outgoing edges changed
+		 * @param node The node
+		 */
+		public void nodeChanged(int node) {
+			if (!isChanged[node]) {
+				isChanged[node] = true;
+				changed[nrofChanged++] = node;
+			}
+		}
+
+		/**
+		 * Repairs the tree after the edges of the changed nodes have changed
+		 */
+		public void update() {
+			if (nrofChanged == 0) {
+				return;
+			}
+
+			/* 1. find the subtrees whose tree edge got more expensive or
+			 * was removed */
+			nrofAffected = 0;
+			for (int k = 0; k < nrofChanged; k++) {
+				int u = changed[k];
+				if (dist[u] == INFINITY || firstChild[u] == -1) {
+					continue;
+				}
+				int[] nodes = outNodes[u];
+				double[] costs = outCosts[u];
+				for (int i = 0; i < nodes.length; i++) {
+					edgeCosts[nodes[i]] = costs[i];
+				}
+				for (int v = firstChild[u]; v != -1; v = nextSibling[v]) {
+					double cost = edgeCosts[v];
+					if (cost == INFINITY || dist[u] + cost > dist[v]) {
+						markSubtree(v);
+					}
+				}
+				for (int i = 0; i < nodes.length; i++) {
+					edgeCosts[nodes[i]] = INFINITY;
+				}
+			}
+
+			/* 2. cut the affected nodes off the tree */
+			for (int k = 0; k < nrofAffected; k++) {
+				int x = affected[k];
+				detach(x);
+				dist[x] = INFINITY;
+			}
+
+			/* 3. seed the affected nodes from the intact part of the tree */
+			for (int k = 0; k < nrofAffected; k++) {
+				int x = affected[k];
+				int[] ins = inNodes[x];
+				for (int i = 0; i < inSizes[x]; i++) {
+					int y = ins[i];
+					if (!isAffected[y] && dist[y] != INFINITY) {
+						relax(y, x, dist[y] + getEdgeCost(y, x));
+					}
+				}
+			}
+
+			/* 4. relax the (possibly cheaper) edges of the changed nodes
+			 * that kept their paths */
+			for (int k = 0; k < nrofChanged; k++) {
+				int u = changed[k];
+				if (!isAffected[u] && dist[u] != INFINITY) {
+					relaxEdgesOf(u);
+				}
+			}
+
+			/* 5. resolve the rest */
+			runDijkstra();
+
+			for (int k = 0; k < nrofAffected; k++) {
+				isAffected[affected[k]] = false;
+			}
+			for (int k = 0; k < nrofChanged; k++) {
+				isChanged[changed[k]] = false;
+			}
+			nrofAffected = 0;
+			nrofChanged = 0;
+		}
+
+		/**
+		 * Marks a node and all its descendants affected
+		 * @param root The root node of the subtree
+		 */
+		private void markSubtree(int root) {
+			if (isAffected[root]) {
+				return;
+			}
+			int top = 0;
+			isAffected[root] = true;
+			stack[top++] = root;
+			while (top > 0) {
+				int x = stack[--top];
+				affected[nrofAffected++] = x;
+				for (int c = firstChild[x]; c != -1; c = nextSibling[c]) {
+					if (!isAffected[c]) {
+						isAffected[c] = true;
+						stack[top++] = c;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Runs Dijkstra's algorithm until the heap is empty
+		 */
+		private void runDijkstra() {
+			while (heapSize > 0) {
+				relaxEdgesOf(heapPoll());
+			}
+		}
+
+		/**
+		 * Relaxes all outgoing edges of a node
+		 * @param u The node
+		 */
+		private void relaxEdgesOf(int u) {
+			int[] nodes = outNodes[u];
+			if (nodes == null) {
+				return; // node's neighbors are not known
+			}
+			double[] costs = outCosts[u];
+			double du = dist[u];
+			for (int i = 0; i < nodes.length; i++) {
+				relax(u, nodes[i], du + costs[i]);
+			}
+		}
+
+		/**
+		 * Updates the path of a node if the given path is cheaper
+		 * @param u The new parent of the node
+		 * @param v The node
+		 * @param d The cost of the path via the new parent
+		 */
+		private void relax(int u, int v, double d) {
+			if (d < dist[v]) {
+				dist[v] = d;
+				detach(v);
+				parent[v] = u;
+				prevSibling[v] = -1;
+				nextSibling[v] = firstChild[u];
+				if (firstChild[u] != -1) {
+					prevSibling[firstChild[u]] = v;
+				}
+				firstChild[u] = v;
+				heapUpdate(v);
+			}
+		}
+
+		/**
+		 * Removes a node from its parent's child list
+		 * @param v The node
+		 */
+		private void detach(int v) {
+			int p = parent[v];
+			if (p == -1) {
+				return;
+			}
+			if (prevSibling[v] != -1) {
+				nextSibling[prevSibling[v]] = nextSibling[v];
+			}
+			else {
+				firstChild[p] = nextSibling[v];
+			}
+			if (nextSibling[v] != -1) {
+				prevSibling[nextSibling[v]] = prevSibling[v];
+			}
+			parent[v] = -1;
+			prevSibling[v] = -1;
+			nextSibling[v] = -1;
+		}
+
+		/**
+		 * Adds a node to the heap or moves it up after its distance decreased
+		 * @param v The node
+		 */
+		private void heapUpdate(int v) {
+			int i = heapPos[v];
+			if (i == -1) {
+				i = heapSize++;
+			}
+			while (i > 0) {
+				int p = (i - 1) / 2;
+				if (!isBefore(v, heap[p])) {
+					break;
+				}
+				heap[i] = heap[p];
+				heapPos[heap[i]] = i;
+				i = p;
+			}
+			heap[i] = v;
+			heapPos[v] = i;
+		}
+
+		/**
+		 * Removes and returns the node with the smallest distance from the
+		 * heap
+		 * @return The node
+		 */
+		private int heapPoll() {
+			int top = heap[0];
+			heapPos[top] = -1;
+			int last = heap[--heapSize];
+			if (heapSize > 0) {
+				int i = 0;
+				while (true) {
+					int c = 2 * i + 1;
+					if (c >= heapSize) {
+						break;
+					}
+					if (c + 1 < heapSize && isBefore(heap[c + 1], heap[c])) {
+						c++;
+					}
+					if (!isBefore(heap[c], last)) {
+						break;
+					}
+					heap[i] = heap[c];
+					heapPos[heap[i]] = i;
+					i = c;
+				}
+				heap[i] = last;
+				heapPos[last] = i;
+			}
+			return top;
+		}
+
+		/**
+		 * Returns true if node a should be resolved before node b
+		 */
+		private boolean isBefore(int a, int b) {
+			return dist[a] < dist[b] || (dist[a] == dist[b] && a < b);
+		}
+	}
+}
@@ -4,7 +4,6 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -98,21 +97,20 @@ public class MaxPropDijkstra {
 	 */
 	private void relax(Integer node) {
 		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+		MeetingProbabilitySet mps = this.probs.get(node);
 		
-		if (!this.probs.containsKey(node)) {
+		if (mps == null) {
 			return; // node's neighbors are not known
 		}
 		
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-		
-		for (Integer n : neighbors) {
+		for (int i = 0, size = mps.size(); i < size; i++) {
+			Integer n = mps.getIndex(i);
 			if (visited.contains(n)) {
 				continue; // skip visited nodes
 			}
 						
 			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			double nDist = nodeDist + (1 - mps.getValue(i));
 			
 			if (distancesFromStart.get(n) > nDist) { 
 				// stored distance > found dist -> update
@@ -133,20 +131,6 @@ public class MaxPropDijkstra {
 		unvisited.add(n); // insert node to the new place in the queue
 	}
 	
-	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the 
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to". 
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
-	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
-	}
-	
 	/**
 	 * Comparator that compares two nodes by their distance from
 	 * the source node.
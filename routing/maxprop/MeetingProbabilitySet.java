@@ -4,22 +4,45 @@
  */
 package routing.maxprop;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import core.SimClock;
+import core.SimError;
 
 /**
  * Class for storing and manipulating the meeting probabilities for the MaxProp
- * router module.
+ * router module. The probabilities are stored in packed primitive arrays
+ * (node indexes and the corresponding values in the order the nodes were
+ * first met) so that they can be iterated without boxing.
+ * <P>
+ * Every modification increments the version number of the set. Other hosts
+ * are given immutable snapshots of the set ({@link #getSnapshot()}) that can
+ * be shared by reference: a new snapshot is created only when the set has
+ * changed since the previous one was requested.
+ * </P>
  */
 public class MeetingProbabilitySet {
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
-	/** meeting probabilities (probability that the next node one meets is X) */
-	private Map<Integer, Double> probs;
+	/** initial capacity of the arrays of an unbounded set */
+	private static final int INITIAL_CAPACITY = 8;
+	/** indexes of the nodes that have a meeting probability */
+	private int[] indexes;
+	/** meeting probabilities (probability that the next node one meets is X) 
+	 * of the nodes in {@link #indexes} */
+	private double[] values;
+	/** number of the nodes in the set */
+	private int size;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
+	/** number of modifications made to this MPS */
+	private int version;
+	/** is this an immutable snapshot */
+	private boolean immutable;
+	/** the latest snapshot of this MPS (or null if not created) */
+	private MeetingProbabilitySet snapshot;
 	/** the alpha parameter */
 	private double alpha;
     private int maxSetSize;
@@ -32,15 +55,18 @@ public class MeetingProbabilitySet {
 	 */
 	public MeetingProbabilitySet(int maxSetSize, double alpha) {
 		this.alpha = alpha;
-		this.probs = new HashMap<Integer, Double>();
         if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
-        	this.probs = new HashMap<Integer, Double>();
         	this.maxSetSize = INFINITE_SET_SIZE;
+        	this.indexes = new int[INITIAL_CAPACITY];
         } else {
-        	this.probs = new HashMap<Integer, Double>(maxSetSize);
             this.maxSetSize = maxSetSize;
+            this.indexes = new int[Math.min(maxSetSize, INITIAL_CAPACITY)];
         }
+        this.values = new double[this.indexes.length];
+        this.size = 0;
 		this.lastUpdateTime = 0;
+		this.version = 0;
+		this.immutable = false;
 	}
 	
 	/**
@@ -60,7 +86,7 @@ public class MeetingProbabilitySet {
 		this(INFINITE_SET_SIZE, alpha);
 		double prob = 1.0/initiallyKnownNodes.size();
 		for (Integer i : initiallyKnownNodes) {
-			this.probs.put(i, prob);
+			put(i, prob);
 		}
 	}
 	
@@ -73,38 +99,45 @@ public class MeetingProbabilitySet {
 	 * @param index The node index to update the probability for
 	 */
 	public void updateMeetingProbFor(Integer index) {
-        Map.Entry<Integer, Double> smallestEntry = null;
+        int smallest = -1;
         double smallestValue = Double.MAX_VALUE;
 
+		checkModifiable();
 		this.lastUpdateTime = SimClock.getTime();
+		this.version++;
 		
-		if (probs.size() == 0) { // first entry
-			probs.put(index, 1.0);
+		if (size == 0) { // first entry
+			put(index, 1.0);
 			return;
 		}
 		
-		double newValue = getProbFor(index) + alpha;
-		probs.put(index, newValue);
+		int i = indexOf(index);
+		if (i < 0) {
+			i = put(index, 0.0);
+		}
+		values[i] += alpha;
 
 		/* now the sum of all entries is 1+alpha;
 		 * normalize to one by dividing all the entries by 1+alpha */ 
-		for (Map.Entry<Integer, Double> entry : probs.entrySet()) {
-			entry.setValue(entry.getValue() / (1+alpha));
-            if (entry.getValue() < smallestValue) {
-                smallestEntry = entry;
-                smallestValue = entry.getValue();
+		for (int j = 0; j < size; j++) {
+			values[j] /= (1+alpha);
+            if (values[j] < smallestValue) {
+                smallest = j;
+                smallestValue = values[j];
             }
-
 		}
 
-        if (probs.size() >= maxSetSize) {
-            core.Debug.p("Probsize: " + probs.size() + " dropping " + 
-                    probs.remove(smallestEntry.getKey()));
+        if (size >= maxSetSize) {
+            core.Debug.p("Probsize: " + size + " dropping " + 
+                    values[smallest]);
+            remove(smallest);
         }
 	}
 	
 	public void updateMeetingProbFor(Integer index, double iet)	{
-		probs.put(index, iet);
+		checkModifiable();
+		this.version++;
+		put(index, iet);
 	}
 	
 	/**
@@ -113,8 +146,9 @@ public class MeetingProbabilitySet {
 	 * @return the current delivery probability value
 	 */
 	public double getProbFor(Integer index) {
-		if (probs.containsKey(index)) {
-			return probs.get(index);
+		int i = indexOf(index);
+		if (i >= 0) {
+			return values[i];
 		}
 		else {
 			/* the node with the given index has not been met */
@@ -123,11 +157,128 @@ public class MeetingProbabilitySet {
 	}
 	
 	/**
-	 * Returns a reference to the probability map of this probability set
-	 * @return a reference to the probability map of this probability set
+	 * Returns the number of nodes that have a meeting probability in this set
+	 * @return the number of nodes in the set
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Returns the node index of an entry of this set
+	 * @param i Index of the entry (0 ... {@link #size()}-1)
+	 * @return The node index
+	 */
+	public int getIndex(int i) {
+		return this.indexes[i];
+	}
+	
+	/**
+	 * Returns the meeting probability of an entry of this set
+	 * @param i Index of the entry (0 ... {@link #size()}-1)
+	 * @return The meeting probability
+	 */
+	public double getValue(int i) {
+		return this.values[i];
+	}
+	
+	/**
+	 * Returns a copy of the probabilities of this probability set as a map.
+	 * Use {@link #size()}, {@link #getIndex(int)} and {@link #getValue(int)}
+	 * for iterating the values without creating a copy.
+	 * @return node index to probability mapping of this probability set
 	 */
 	public Map<Integer, Double> getAllProbs() {
-		return this.probs;
+		Map<Integer, Double> map = new HashMap<Integer, Double>(size * 2);
+		for (int i = 0; i < size; i++) {
+			map.put(indexes[i], values[i]);
+		}
+		return map;
+	}
+	
+	/**
+	 * Returns the version number of this probability set. The version is
+	 * incremented every time the probabilities are updated, so of two sets 
+	 * of the same host the one with the bigger version is more recent.
+	 * @return the version number of this probability set
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+	
+	/**
+	 * Returns an immutable snapshot of the current state of this set. The
+	 * same snapshot object is returned until this set is modified, so the
+	 * snapshot can be shared between any number of hosts. Snapshots return
+	 * themselves.
+	 * @return an immutable snapshot of this probability set
+	 */
+	public MeetingProbabilitySet getSnapshot() {
+		if (this.immutable) {
+			return this;
+		}
+		if (this.snapshot == null || this.snapshot.version != this.version) {
+			this.snapshot = replicate();
+			this.snapshot.immutable = true;
+		}
+		return this.snapshot;
+	}
+	
+	/**
+	 * Throws an error if this set is an immutable snapshot
+	 */
+	private void checkModifiable() {
+		if (this.immutable) {
+			throw new SimError("Can't modify a shared meeting probability " +
+					"set snapshot");
+		}
+	}
+	
+	/**
+	 * Returns the position of a node index in the arrays
+	 * @param index The node index
+	 * @return The position or -1 if the node is not in the set
+	 */
+	private int indexOf(int index) {
+		for (int i = 0; i < size; i++) {
+			if (indexes[i] == index) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Sets the probability of a node index, adding it to the end of the set
+	 * if it's not in the set yet
+	 * @param index The node index
+	 * @param value The probability
+	 * @return The position of the node index in the arrays
+	 */
+	private int put(int index, double value) {
+		int i = indexOf(index);
+		if (i < 0) {
+			if (size == indexes.length) {
+				int capacity = size * 2;
+				indexes = Arrays.copyOf(indexes, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			i = size++;
+			indexes[i] = index;
+		}
+		values[i] = value;
+		return i;
+	}
+	
+	/**
+	 * Removes an entry from the set (retaining the order of other entries)
+	 * @param i The position of the entry to remove
+	 */
+	private void remove(int i) {
+		int nrofMoved = size - i - 1;
+		System.arraycopy(indexes, i + 1, indexes, i, nrofMoved);
+		System.arraycopy(values, i + 1, values, i, nrofMoved);
+		size--;
 	}
 	
 	/**
@@ -142,11 +293,12 @@ public class MeetingProbabilitySet {
 	 * Enables changing the alpha parameter dynamically
 	 */
 	public void setAlpha(double alpha) {
+		checkModifiable();
 		this.alpha = alpha;
 	}
 	
 	/**
-	 * Returns a deep copy of the probability set
+	 * Returns a deep (modifiable) copy of the probability set
 	 * @return a deep copy of the probability set
 	 */
 	public MeetingProbabilitySet replicate() {
@@ -154,11 +306,12 @@ public class MeetingProbabilitySet {
 				this.maxSetSize, alpha);
 		
 		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
-		}
+		replica.indexes = Arrays.copyOf(this.indexes, this.indexes.length);
+		replica.values = Arrays.copyOf(this.values, this.values.length);
+		replica.size = this.size;
 		
 		replica.lastUpdateTime = this.lastUpdateTime;
+		replica.version = this.version;
 		return replica;
 	}
 	
@@ -168,6 +321,6 @@ public class MeetingProbabilitySet {
 	 */
     @Override
 	public String toString() {
-		return "probs: " +	this.probs.toString();
+		return "probs: " +	getAllProbs().toString();
 	}
 }
\ No newline at end of file
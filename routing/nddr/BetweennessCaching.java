@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Caching strategy that caches Data at the hosts that are more central than
+ * the earlier hosts on the Data path. The betweenness of a host is
+ * approximated by the number of contacts it has had, which every host
+ * knows without any exchange. The Data carries the highest contact count
+ * of the hosts it has passed (its source included); a host caches the
+ * content if its own count is at least as high, so the copies go to the
+ * well connected hosts where they meet the most Interests.
+ */
+public class BetweennessCaching extends CachingStrategy {
+	/** Data message property key of the highest contact count on the
+	 * Data's path ({@value}) */
+	public static final String MAX_ENCOUNTERS = "maxEncounters";
+
+	private int nrofEncounters;
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public BetweennessCaching(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype strategy
+	 */
+	protected BetweennessCaching(BetweennessCaching proto) {
+		super(proto);
+	}
+
+	@Override
+	public void dataCreated(Message data) {
+		data.addProperty(MAX_ENCOUNTERS, this.nrofEncounters);
+	}
+
+	@Override
+	public void contactUp(DTNHost peer) {
+		this.nrofEncounters++;
+	}
+
+	@Override
+	protected boolean admit(Message data, int hopsToDestination) {
+		Integer max = (Integer)data.getProperty(MAX_ENCOUNTERS);
+		if (max != null && max > this.nrofEncounters) {
+			return false;
+		}
+		data.updateProperty(MAX_ENCOUNTERS, this.nrofEncounters);
+		return true;
+	}
+
+	/**
+	 * Returns the number of contacts of this host
+	 * @return the number of contacts
+	 */
+	public int getNrofEncounters() {
+		return this.nrofEncounters;
+	}
+
+	@Override
+	public BetweennessCaching replicate() {
+		return new BetweennessCaching(this);
+	}
+}
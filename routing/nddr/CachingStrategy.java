@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.Random;
+
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Superclass of the NDDR in-network caching strategies. A caching strategy
+ * decides, hop by hop on the Data path, whether a router caches the content
+ * of a Data message it received. The decision only uses the information the
+ * message carries (e.g., its hop count) and a few counters of the router, so
+ * it takes constant time; what happens to the cached content afterwards is
+ * up to the (possibly size-bounded) {@link ContentStore}.
+ * <P>
+ * The strategy counts the decisions and the admissions. Subclasses define
+ * the strategy by implementing {@link #admit(Message, int)}.
+ * </P>
+ */
+public abstract class CachingStrategy {
+	/** Package of the caching strategy classes ({@value}) */
+	public static final String CACHING_PACKAGE = "routing.nddr.";
+	/** Name of the default caching strategy class ({@value}) */
+	public static final String DEFAULT_CACHING = "LceCaching";
+	/** Caching random number generator seed -setting id ({@value}).
+	 * Integer valued. The generator of every router is seeded with the
+	 * seed and the router's address. Default = 0. */
+	public static final String CACHING_SEED_S = "cachingSeed";
+	/** Value of an unknown distance */
+	public static final int UNKNOWN = -1;
+
+	private final int seed;
+	/** random number generator for the probabilistic decisions */
+	protected Random rng;
+	/** the host this strategy decides for */
+	protected DTNHost host;
+
+	private int nrofDecisions;
+	private int nrofAdmissions;
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public CachingStrategy(Settings s) {
+		this.seed = s.getInt(CACHING_SEED_S, 0);
+	}
+
+	/**
+	 * Copy constructor. Creates a strategy with the same settings as the
+	 * prototype and no counted decisions.
+	 * @param proto The prototype strategy
+	 */
+	protected CachingStrategy(CachingStrategy proto) {
+		this.seed = proto.seed;
+	}
+
+	/**
+	 * Initializes the strategy for a host
+	 * @param host The host whose router uses this strategy
+	 */
+	public void init(DTNHost host) {
+		this.host = host;
+		this.rng = new Random(host.getAddress() * 1000L + this.seed);
+	}
+
+	/**
+	 * Decides whether the content of a received Data message is cached
+	 * @param data The Data message (its path includes this host)
+	 * @param hopsToDestination Known distance from this host to the
+	 * destination of the Data or {@link #UNKNOWN}
+	 * @return true if the content should be cached
+	 */
+	public boolean shouldCache(Message data, int hopsToDestination) {
+		this.nrofDecisions++;
+		if (admit(data, hopsToDestination)) {
+			this.nrofAdmissions++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the hop count of a Data message from its source (the producer
+	 * or the cache that answered the Interest)
+	 * @param data The Data message
+	 * @return The number of hops the Data has traveled
+	 */
+	protected static int getHopsFromSource(Message data) {
+		return Math.max(1, data.getHopCount());
+	}
+
+	/**
+	 * Returns true with the given probability
+	 * @param p The probability
+	 * @return true with probability p
+	 */
+	protected boolean draw(double p) {
+		return p >= 1 || (p > 0 && this.rng.nextDouble() < p);
+	}
+
+	/**
+	 * Does the caching decision of a Data message
+	 * @param data The Data message
+	 * @param hopsToDestination Known distance to the destination or
+	 * {@link #UNKNOWN}
+	 * @return true if the content should be cached
+	 */
+	protected abstract boolean admit(Message data, int hopsToDestination);
+
+	/**
+	 * Informs the strategy that this host created a Data message. Strategies
+	 * that carry state in the Data add their properties here.
+	 * @param data The new Data message
+	 */
+	public void dataCreated(Message data) { }
+
+	/**
+	 * Informs the strategy of a new contact of this host
+	 * @param peer The other host of the contact
+	 */
+	public void contactUp(DTNHost peer) { }
+
+	/**
+	 * Returns the number of caching decisions made
+	 * @return the number of decisions
+	 */
+	public int getNrofDecisions() {
+		return this.nrofDecisions;
+	}
+
+	/**
+	 * Returns the number of decisions that admitted the content to the
+	 * cache
+	 * @return the number of admissions
+	 */
+	public int getNrofAdmissions() {
+		return this.nrofAdmissions;
+	}
+
+	/**
+	 * Creates a replicate of this strategy. The replicate has the same
+	 * settings as this strategy but no counted decisions.
+	 * @return The replicate
+	 */
+	public abstract CachingStrategy replicate();
+}
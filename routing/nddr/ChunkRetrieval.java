@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Retrieval of a chunked data object by its consumer. The object is split
+ * into fixed size chunks that are requested with their own Interests. The
+ * retrieval keeps track of the received chunks and of the chunks that have
+ * an Interest on the way, so that the consumer can keep a window of
+ * Interests outstanding (pipelining) and continue a partially received
+ * object from the missing chunks (resume).
+ */
+public class ChunkRetrieval {
+	private final int objectId;
+	private final int nrofChunks;
+	private final int size;
+	private final double startTime;
+	private double completionTime;
+
+	/** the chunks that have been received */
+	private BitSet received;
+	/** expiry times of the chunks' latest Interests */
+	private double[] expiryTimes;
+
+	/**
+	 * Constructor.
+	 * @param objectId ID of the data object (see {@link ContentCatalog})
+	 * @param nrofChunks Number of chunks in the object
+	 * @param size Size of the object (bytes)
+	 * @param startTime Time when the object was requested
+	 */
+	public ChunkRetrieval(int objectId, int nrofChunks, int size,
+			double startTime) {
+		this.objectId = objectId;
+		this.nrofChunks = nrofChunks;
+		this.size = size;
+		this.startTime = startTime;
+		this.completionTime = -1;
+		this.received = new BitSet(nrofChunks);
+		this.expiryTimes = new double[nrofChunks];
+		Arrays.fill(this.expiryTimes, -1);
+	}
+
+	/**
+	 * Returns the chunks that should be requested next: the first missing
+	 * chunks that have no live Interest, so that at most the given number of
+	 * Interests is outstanding
+	 * @param window Maximum number of outstanding Interests
+	 * @param now The current time
+	 * @return Indexes of the chunks to request (a new array; empty if
+	 * the window is full or all chunks are requested)
+	 */
+	public int[] getNextRequests(int window, double now) {
+		int outstanding = 0;
+		for (int c = this.received.nextClearBit(0); c < this.nrofChunks;
+				c = this.received.nextClearBit(c + 1)) {
+			if (this.expiryTimes[c] > now) {
+				outstanding++;
+			}
+		}
+
+		int[] chunks = new int[Math.max(0, window - outstanding)];
+		int n = 0;
+		for (int c = this.received.nextClearBit(0); c < this.nrofChunks &&
+				n < chunks.length; c = this.received.nextClearBit(c + 1)) {
+			if (this.expiryTimes[c] <= now) {
+				chunks[n++] = c;
+			}
+		}
+		return Arrays.copyOf(chunks, n);
+	}
+
+	/**
+	 * Records that an Interest was sent for a chunk
+	 * @param chunk Index of the chunk
+	 * @param expiryTime Expiry time of the Interest
+	 */
+	public void requested(int chunk, double expiryTime) {
+		this.expiryTimes[chunk] = expiryTime;
+	}
+
+	/**
+	 * Records that a chunk was received
+	 * @param chunk Index of the chunk
+	 * @param now The current time
+	 * @return true if the chunk wasn't received before
+	 */
+	public boolean received(int chunk, double now) {
+		if (this.received.get(chunk)) {
+			return false;
+		}
+		this.received.set(chunk);
+		if (isComplete()) {
+			this.completionTime = now;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if all the chunks have been received
+	 * @return true if the retrieval is complete
+	 */
+	public boolean isComplete() {
+		return this.received.cardinality() == this.nrofChunks;
+	}
+
+	/**
+	 * Returns the ID of the data object
+	 * @return the object ID
+	 */
+	public int getObjectId() {
+		return this.objectId;
+	}
+
+	/**
+	 * Returns the number of chunks in the object
+	 * @return the number of chunks
+	 */
+	public int getNrofChunks() {
+		return this.nrofChunks;
+	}
+
+	/**
+	 * Returns the number of chunks received so far
+	 * @return the number of received chunks
+	 */
+	public int getNrofReceived() {
+		return this.received.cardinality();
+	}
+
+	/**
+	 * Returns the size of the object
+	 * @return the size (bytes)
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the time when the object was requested
+	 * @return the start time
+	 */
+	public double getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Returns the time when the last chunk was received
+	 * @return the completion time or -1 if the retrieval is not complete
+	 */
+	public double getCompletionTime() {
+		return this.completionTime;
+	}
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import core.DTNSim;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * Catalog of the named data of an NDDR scenario. Every data name is
+ * interned to a dense integer ID (0 ... number of names - 1), so routers
+ * and reports can index by the ID instead of hashing name strings. The
+ * names and their prefixes are kept in a {@link NameTree}, so converting
+ * between names and IDs takes time proportional to the depth of the name
+ * even with millions of names.
+ * <P>
+ * The names are hierarchical if name fan-outs are given: with fan-outs
+ * "3,2" there are 6 names /A/A, /A/B, /B/A, ..., /C/B. Every name
+ * component is generated from its index like spreadsheet column names
+ * ("A", "B", ..., "Z", "AA", "AB", ...). Without the fan-outs, the names
+ * are flat single component names written without the leading slash ("A",
+ * "B", ...).
+ * </P>
+ * <P>
+ * The catalog also decides which hosts produce (i.e., have in their content
+ * store from the beginning) which data. The data is placed by the top level
+ * prefixes, so that a producer can advertise its data by the prefixes: the
+ * i:th top level prefix (for flat names, the i:th name) is produced by the
+ * i:th producer host (cycling through the producer hosts if there are more
+ * prefixes than producers) and the additional replicas of every prefix are
+ * placed on producer hosts drawn with a seeded random number generator.
+ * Requested names are drawn with another generator using the same seed, so
+ * the catalog is deterministic. A new catalog is created for every
+ * simulation run.
+ * </P>
+ */
+public class ContentCatalog {
+	/** NDDR router's settings namespace ({@value}) */
+	public static final String NDDR_NS = "NDDRRouter";
+	/** Number of data names -setting id ({@value}). Default =
+	 * {@value #DEFAULT_NROF_NAMES}. */
+	public static final String NROF_NAMES_S = "nrofDataNames";
+	/** Name fan-outs -setting id ({@value}). Comma separated number of
+	 * children on every level of the name hierarchy, starting from the top
+	 * level. If set, the names are hierarchical and the number of names is
+	 * the product of the fan-outs ({@link #NROF_NAMES_S} is not used).
+	 * Default = flat names. */
+	public static final String NAME_FANOUTS_S = "nameFanouts";
+	/** Producer hosts -setting id ({@value}). Two comma separated values:
+	 * the smallest producer host address and the address after the biggest
+	 * one. The range must be within the hosts of the scenario. Default = the
+	 * last {@link #NROF_NAMES_S} hosts of the scenario. */
+	public static final String PRODUCERS_S = "producerHosts";
+	/** Number of replicas -setting id ({@value}). How many producer hosts
+	 * have each data name. Default = 1. */
+	public static final String NROF_REPLICAS_S = "nrofReplicas";
+	/** Catalog seed -setting id ({@value}). Seed for the replica placement
+	 * and for drawing requested names. Default = 0. */
+	public static final String SEED_S = "catalogSeed";
+
+	/** Default number of data names */
+	public static final int DEFAULT_NROF_NAMES = 10;
+	/** Number of letters used in the names */
+	private static final int NROF_LETTERS = 26;
+
+	private static ContentCatalog instance;
+
+	static {
+		DTNSim.registerForReset(ContentCatalog.class.getCanonicalName());
+		reset();
+	}
+
+	private final int nrofNames;
+	/** the first producer address and the address after the last one */
+	private final int firstProducer;
+	private final int endProducer;
+	/** the names and their prefixes */
+	private NameTree names;
+	/** name tree node of every data ID */
+	private int[] nodes;
+	/** data ID of every name tree node (-1 for prefixes) */
+	private int[] ids;
+	/** name tree nodes of the top level prefixes */
+	private int[] prefixNodes;
+	/** number of names under every top level prefix */
+	private int prefixSize;
+	/** is the catalog flat (names without the leading slash) */
+	private boolean flat;
+	/** produced top level prefixes of every producer: prefixes of producer
+	 * p are producedPrefixes[producedStart[p] ... producedStart[p+1]-1] */
+	private int[] producedStart;
+	private int[] producedPrefixes;
+	/** producers of every top level prefix: producers of prefix i are
+	 * producers[i*nrofReplicas ... (i+1)*nrofReplicas-1] */
+	private int[] producers;
+	private int nrofReplicas;
+	/** generator for requested names */
+	private final Random requestRng;
+
+	/**
+	 * Returns the catalog of the current simulation run. The catalog is
+	 * created from the {@value #NDDR_NS} namespace settings.
+	 * @return The catalog
+	 */
+	public static ContentCatalog getInstance() {
+		if (instance == null) {
+			instance = new ContentCatalog(new Settings(NDDR_NS),
+					getNrofHosts());
+		}
+		return instance;
+	}
+
+	/**
+	 * Resets the catalog (for a new simulation run)
+	 */
+	public static void reset() {
+		instance = null;
+	}
+
+	/**
+	 * Returns the total number of hosts in the scenario settings
+	 */
+	private static int getNrofHosts() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		int nrofGroups = s.getInt(SimScenario.NROF_GROUPS_S);
+		int nrofHosts = 0;
+		for (int i = 1; i <= nrofGroups; i++) {
+			Settings gs = new Settings(SimScenario.GROUP_NS + i);
+			gs.setSecondaryNamespace(SimScenario.GROUP_NS);
+			nrofHosts += gs.getInt(SimScenario.NROF_HOSTS_S);
+		}
+		return nrofHosts;
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The settings to read the catalog settings from
+	 * @param nrofHosts The number of hosts in the scenario
+	 */
+	public ContentCatalog(Settings s, int nrofHosts) {
+		int[] fanouts;
+		if (s.contains(NAME_FANOUTS_S)) {
+			fanouts = s.getCsvInts(NAME_FANOUTS_S);
+			long total = 1;
+			for (int f : fanouts) {
+				s.ensurePositiveValue(f, NAME_FANOUTS_S);
+				total *= f;
+				if (total > Integer.MAX_VALUE) {
+					throw new SettingsError("Too many names in " +
+							s.getFullPropertyName(NAME_FANOUTS_S));
+				}
+			}
+			this.nrofNames = (int)total;
+			this.flat = false;
+		} else {
+			this.nrofNames = s.getInt(NROF_NAMES_S, DEFAULT_NROF_NAMES);
+			s.ensurePositiveValue(this.nrofNames, NROF_NAMES_S);
+			fanouts = new int[] {this.nrofNames};
+			this.flat = true;
+		}
+		buildNames(fanouts);
+		int nrofPrefixes = fanouts[0];
+		int nrofReplicas = s.getInt(NROF_REPLICAS_S, 1);
+		long seed = s.getInt(SEED_S, 0);
+
+		if (s.contains(PRODUCERS_S)) {
+			int[] range = s.getCsvInts(PRODUCERS_S, 2);
+			this.firstProducer = range[0];
+			this.endProducer = range[1];
+		} else {
+			this.firstProducer = Math.max(0, nrofHosts - nrofPrefixes);
+			this.endProducer = nrofHosts;
+		}
+		if (this.firstProducer < 0 || this.endProducer <= this.firstProducer) {
+			throw new SettingsError("Invalid " +
+					s.getFullPropertyName(PRODUCERS_S) + " range");
+		}
+		if (this.endProducer > nrofHosts) {
+			throw new SettingsError(s.getFullPropertyName(PRODUCERS_S) +
+					" range exceeds the number of hosts (" + nrofHosts + ")");
+		}
+		int nrofProducers = this.endProducer - this.firstProducer;
+		if (nrofReplicas < 1 || nrofReplicas > nrofProducers) {
+			throw new SettingsError(s.getFullPropertyName(NROF_REPLICAS_S) +
+					" must be between 1 and the number of producers");
+		}
+
+		placeReplicas(nrofPrefixes, nrofProducers, nrofReplicas,
+				new Random(seed));
+		this.requestRng = new Random(seed);
+	}
+
+	/**
+	 * Creates the names of all the data IDs to the name tree
+	 * @param fanouts Number of children on every level of the hierarchy
+	 */
+	private void buildNames(int[] fanouts) {
+		this.names = new NameTree();
+		this.nodes = new int[this.nrofNames];
+		this.prefixNodes = new int[fanouts[0]];
+		this.prefixSize = this.nrofNames / fanouts[0];
+
+		int[] digits = new int[fanouts.length];
+		int[] path = new int[fanouts.length + 1]; // nodes of the prefixes
+		path[0] = NameTree.ROOT;
+		for (int id = 0, changed = 0; id < this.nrofNames; id++) {
+			for (int level = changed; level < fanouts.length; level++) {
+				path[level + 1] = this.names.addChild(path[level],
+						getComponent(digits[level]));
+			}
+			this.nodes[id] = path[fanouts.length];
+			if (changed == 0) {
+				this.prefixNodes[digits[0]] = path[1];
+			}
+			/* next ID: increment the mixed radix digits */
+			changed = fanouts.length - 1;
+			while (changed > 0 && ++digits[changed] == fanouts[changed]) {
+				digits[changed--] = 0;
+			}
+			if (changed == 0) {
+				digits[0]++;
+			}
+		}
+
+		this.ids = new int[this.names.size()];
+		Arrays.fill(this.ids, -1);
+		for (int id = 0; id < this.nrofNames; id++) {
+			this.ids[this.nodes[id]] = id;
+		}
+	}
+
+	/**
+	 * Returns the name component of an index
+	 * @param index The index (0, 1, ...)
+	 * @return The component ("A", "B", ..., "Z", "AA", ...)
+	 */
+	private static String getComponent(int index) {
+		char[] buf = new char[8];
+		int pos = buf.length;
+		for (int n = index + 1; n > 0; n = (n - 1) / NROF_LETTERS) {
+			buf[--pos] = (char)('A' + (n - 1) % NROF_LETTERS);
+		}
+		return new String(buf, pos, buf.length - pos);
+	}
+
+	/**
+	 * Places the replicas of every top level prefix on the producers
+	 * @param nrofPrefixes Number of top level prefixes
+	 * @param nrofProducers Number of producer hosts
+	 * @param nrofReplicas Number of replicas per prefix
+	 * @param rng Random number generator for the additional replicas
+	 */
+	private void placeReplicas(int nrofPrefixes, int nrofProducers, 
+			int nrofReplicas, Random rng) {
+		int total = nrofPrefixes * nrofReplicas;
+		int[] producerOf = new int[total]; // producer of each replica
+		this.producers = producerOf;
+		this.nrofReplicas = nrofReplicas;
+		int[] counts = new int[nrofProducers];
+
+		for (int prefix = 0, r = 0; prefix < nrofPrefixes; prefix++) {
+			int first = prefix % nrofProducers;
+			producerOf[r++] = first;
+			counts[first]++;
+			for (int i = 1; i < nrofReplicas; i++) {
+				/* draw a producer that doesn't have the name yet */
+				int p;
+				do {
+					p = rng.nextInt(nrofProducers);
+				} while (hasReplica(producerOf, r - i, r, p));
+				producerOf[r++] = p;
+				counts[p]++;
+			}
+		}
+
+		/* group the replicas by producer */
+		this.producedStart = new int[nrofProducers + 1];
+		for (int p = 0; p < nrofProducers; p++) {
+			this.producedStart[p + 1] = this.producedStart[p] + counts[p];
+		}
+		this.producedPrefixes = new int[total];
+		int[] next = new int[nrofProducers];
+		for (int r = 0; r < total; r++) {
+			int p = producerOf[r];
+			this.producedPrefixes[this.producedStart[p] + next[p]++] =
+				r / nrofReplicas;
+		}
+	}
+
+	/**
+	 * Returns true if any of the given replicas is at the given producer
+	 */
+	private static boolean hasReplica(int[] producerOf, int from, int to,
+			int producer) {
+		for (int i = from; i < to; i++) {
+			if (producerOf[i] == producer) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of names in the catalog
+	 * @return The number of names
+	 */
+	public int getNrofNames() {
+		return this.nrofNames;
+	}
+
+	/**
+	 * Returns the name of a data ID
+	 * @param id The ID
+	 * @return The name
+	 */
+	public String getName(int id) {
+		assert id >= 0 && id < this.nrofNames : "Invalid data ID " + id;
+		if (this.flat) {
+			return this.names.getComponent(this.nodes[id]);
+		}
+		return this.names.getName(this.nodes[id]);
+	}
+
+	/**
+	 * Returns the ID of a data name
+	 * @param name The name
+	 * @return The ID or -1 if the name is not in the catalog
+	 */
+	public int getId(String name) {
+		int node = this.names.find(name);
+		return node < 0 ? -1 : this.ids[node];
+	}
+
+	/**
+	 * Returns the ID of a chunk of a data object. The chunk IDs share the
+	 * ID space with the object IDs (chunk 0 has the object's ID), so the
+	 * content stores and Pending Interest Tables can use them as data IDs.
+	 * @param id ID of the object
+	 * @param chunk Index of the chunk
+	 * @return The chunk ID
+	 * @throws SimError if the chunk ID doesn't fit in an int
+	 */
+	public int getChunkId(int id, int chunk) {
+		long chunkId = (long)chunk * this.nrofNames + id;
+		if (chunkId > Integer.MAX_VALUE) {
+			throw new SimError("Too many chunks (" + chunk + ") for " +
+					this.nrofNames + " data names");
+		}
+		return (int)chunkId;
+	}
+
+	/**
+	 * Returns the ID of the object a chunk ID belongs to
+	 * @param chunkId The chunk ID (or an object ID)
+	 * @return The object ID
+	 */
+	public int getObjectId(int chunkId) {
+		return chunkId % this.nrofNames;
+	}
+
+	/**
+	 * Returns the index of a chunk in its object
+	 * @param chunkId The chunk ID
+	 * @return The chunk index
+	 */
+	public int getChunkIndex(int chunkId) {
+		return chunkId / this.nrofNames;
+	}
+
+	/**
+	 * Returns the name of a chunk: the object's name with the chunk index
+	 * as the last component
+	 * @param chunkId The chunk ID
+	 * @return The name, e.g., "/A/B/C/7"
+	 */
+	public String getChunkName(int chunkId) {
+		return getName(getObjectId(chunkId)) + NameTree.SEPARATOR + 
+			getChunkIndex(chunkId);
+	}
+
+	/**
+	 * Returns the tree of the names and their prefixes
+	 * @return The name tree
+	 */
+	public NameTree getNameTree() {
+		return this.names;
+	}
+
+	/**
+	 * Returns the name tree node of a data ID
+	 * @param id The data ID
+	 * @return ID of the node in the {@link #getNameTree() name tree}
+	 */
+	public int getNode(int id) {
+		return this.nodes[id];
+	}
+
+	/**
+	 * Returns the IDs of the data a host produces
+	 * @param address Address of the host
+	 * @return The data IDs (a new array; empty if the host is not a
+	 * producer)
+	 */
+	public int[] getProducedNames(int address) {
+		int[] prefixes = getProducedPrefixIndexes(address);
+		int[] ids = new int[prefixes.length * this.prefixSize];
+		for (int i = 0, n = 0; i < prefixes.length; i++) {
+			for (int j = 0; j < this.prefixSize; j++) {
+				ids[n++] = prefixes[i] * this.prefixSize + j;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the name prefixes a host produces all the data of, i.e., the
+	 * prefixes the host can advertise
+	 * @param address Address of the host
+	 * @return The name tree nodes of the prefixes (a new array; empty if
+	 * the host is not a producer)
+	 */
+	public int[] getProducedPrefixes(int address) {
+		int[] prefixes = getProducedPrefixIndexes(address);
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = this.prefixNodes[prefixes[i]];
+		}
+		return prefixes;
+	}
+
+	/**
+	 * Returns the indexes of the top level prefixes a host produces
+	 */
+	private int[] getProducedPrefixIndexes(int address) {
+		if (address < this.firstProducer || address >= this.endProducer) {
+			return new int[0];
+		}
+		int p = address - this.firstProducer;
+		int start = this.producedStart[p];
+		int[] prefixes = new int[this.producedStart[p + 1] - start];
+		System.arraycopy(this.producedPrefixes, start, prefixes, 0,
+				prefixes.length);
+		return prefixes;
+	}
+
+	/**
+	 * Returns the addresses of the hosts that produce a data ID
+	 * @param id The data ID
+	 * @return The producer addresses (a new array)
+	 */
+	public int[] getProducers(int id) {
+		int prefix = id / this.prefixSize;
+		int[] addresses = new int[this.nrofReplicas];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = this.firstProducer +
+				this.producers[prefix * this.nrofReplicas + i];
+		}
+		return addresses;
+	}
+
+	/**
+	 * Draws the ID of a requested name
+	 * @return A (uniformly) random data ID
+	 */
+	public int drawName() {
+		return this.requestRng.nextInt(this.nrofNames);
+	}
+}
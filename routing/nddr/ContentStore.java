@@ -0,0 +1,317 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import core.Settings;
+
+/**
+ * Superclass of the size-bounded NDDR Content Stores. A content store caches
+ * the content of data IDs (see {@link ContentCatalog}) up to a configurable
+ * number of bytes; when there's no room for new content, the store evicts
+ * entries in the order its replacement policy defines. The entries are kept
+ * in a hash map and the replacement policies keep their ordering in linked
+ * structures, so all operations take constant time.
+ * <P>
+ * The store counts hits, misses, insertions, evictions and rejections (content
+ * that didn't fit in the store). Subclasses define the replacement policy by
+ * implementing the entry event methods and {@link #getVictim()}.
+ * </P>
+ */
+public abstract class ContentStore {
+	/** Package of the content store classes ({@value}) */
+	public static final String CS_PACKAGE = "routing.nddr.";
+	/** Name of the default content store class ({@value}) */
+	public static final String DEFAULT_CS = "LruContentStore";
+	/** Content store size -setting id ({@value}). Integer valued (bytes; kB
+	 * and MB suffixes are accepted). Default = no limit. */
+	public static final String CS_SIZE_S = "csSize";
+
+	/** maximum number of cached bytes */
+	private final int capacity;
+	/** number of cached bytes */
+	private long used;
+	/** cached entries mapped by the data IDs */
+	private Map<Integer, Entry> entries;
+
+	private int nrofHits;
+	private int nrofMisses;
+	private int nrofInsertions;
+	private int nrofEvictions;
+	private int nrofRejections;
+
+	/**
+	 * Cached content of a data ID. Replacement policies link the entries to
+	 * their own lists through the prev and next fields.
+	 */
+	protected static class Entry {
+		/** ID of the data */
+		public final int id;
+		/** the content */
+		public final String content;
+		/** size of the content (bytes) */
+		public final int size;
+		/** previous and next entry in the policy's list */
+		protected Entry prev, next;
+
+		/**
+		 * Constructor. Creates an (unlinked) entry.
+		 * @param id ID of the data
+		 * @param content The content
+		 * @param size Size of the content
+		 */
+		protected Entry(int id, String content, int size) {
+			this.id = id;
+			this.content = content;
+			this.size = size;
+		}
+
+		/**
+		 * Links this entry before the given entry
+		 * @param e The entry that will follow this entry
+		 */
+		protected void linkBefore(Entry e) {
+			this.next = e;
+			this.prev = e.prev;
+			e.prev.next = this;
+			e.prev = this;
+		}
+
+		/**
+		 * Unlinks this entry from its list
+		 */
+		protected void unlink() {
+			this.prev.next = this.next;
+			this.next.prev = this.prev;
+			this.prev = this.next = null;
+		}
+	}
+
+	/**
+	 * Constructor. Creates a new prototype content store.
+	 * @param s The settings object of the router's namespace
+	 */
+	public ContentStore(Settings s) {
+		this.capacity = s.getInt(CS_SIZE_S, Integer.MAX_VALUE);
+		s.ensurePositiveValue(this.capacity, CS_SIZE_S);
+	}
+
+	/**
+	 * Copy constructor. Creates an empty store with the same settings as
+	 * the prototype.
+	 * @param proto The prototype store
+	 */
+	protected ContentStore(ContentStore proto) {
+		this.capacity = proto.capacity;
+		this.entries = new HashMap<Integer, Entry>();
+	}
+
+	/**
+	 * Returns true if the store has the content of a data ID. Doesn't count
+	 * as an access.
+	 * @param id The data ID
+	 * @return true if the content is cached
+	 */
+	public boolean contains(int id) {
+		return this.entries.containsKey(id);
+	}
+
+	/**
+	 * Looks up the content of a data ID. Counts a hit or a miss and informs
+	 * the replacement policy of the access.
+	 * @param id The data ID
+	 * @return The content or null if it isn't cached
+	 */
+	public String lookup(int id) {
+		Entry e = this.entries.get(id);
+		if (e == null) {
+			this.nrofMisses++;
+			return null;
+		}
+		this.nrofHits++;
+		entryAccessed(e);
+		return e.content;
+	}
+
+	/**
+	 * Caches the content of a data ID, evicting entries if there's no room
+	 * for it. Content that is already cached is not added again.
+	 * @param id The data ID
+	 * @param content The content
+	 * @param size Size of the content (bytes)
+	 * @return true if the content is cached after the call, false if it
+	 * doesn't fit in the store
+	 */
+	public boolean add(int id, String content, int size) {
+		if (this.entries.containsKey(id)) {
+			return true;
+		}
+		if (size > this.capacity) {
+			this.nrofRejections++;
+			return false;
+		}
+		while (this.used + size > this.capacity) {
+			evict();
+		}
+
+		Entry e = newEntry(id, content, size);
+		this.entries.put(id, e);
+		this.used += size;
+		this.nrofInsertions++;
+		entryAdded(e);
+		return true;
+	}
+
+	/**
+	 * Evicts the next entry in the replacement order
+	 * @return Size of the evicted entry or -1 if the store was empty
+	 */
+	public int evict() {
+		if (this.entries.isEmpty()) {
+			return -1;
+		}
+		Entry victim = getVictim();
+		entryRemoved(victim);
+		this.entries.remove(victim.id);
+		this.used -= victim.size;
+		this.nrofEvictions++;
+		return victim.size;
+	}
+
+	/**
+	 * Adds the IDs of the cached data to a set
+	 * @param ids The set to add the IDs to
+	 */
+	public void addCachedIds(BitSet ids) {
+		for (int id : this.entries.keySet()) {
+			ids.set(id);
+		}
+	}
+
+	/**
+	 * Counts content that wasn't cached because there was no room for it
+	 * outside the store (e.g., in a shared message buffer)
+	 */
+	public void countRejection() {
+		this.nrofRejections++;
+	}
+
+	/**
+	 * Returns the size of the store
+	 * @return The maximum number of cached bytes
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of cached bytes
+	 * @return the number of cached bytes
+	 */
+	public long getUsed() {
+		return this.used;
+	}
+
+	/**
+	 * Returns the number of cached entries
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups that found the content
+	 * @return the number of lookups that found the content
+	 */
+	public int getNrofHits() {
+		return this.nrofHits;
+	}
+
+	/**
+	 * Returns the number of lookups that didn't find the content
+	 * @return the number of lookups that didn't find the content
+	 */
+	public int getNrofMisses() {
+		return this.nrofMisses;
+	}
+
+	/**
+	 * Returns the number of cached contents
+	 * @return the number of cached contents
+	 */
+	public int getNrofInsertions() {
+		return this.nrofInsertions;
+	}
+
+	/**
+	 * Returns the number of evicted contents
+	 * @return the number of evicted contents
+	 */
+	public int getNrofEvictions() {
+		return this.nrofEvictions;
+	}
+
+	/**
+	 * Returns the number of contents that didn't fit in the store
+	 * @return the number of contents that didn't fit in the store
+	 */
+	public int getNrofRejections() {
+		return this.nrofRejections;
+	}
+
+	/**
+	 * Creates a new entry. Policies that need more information per entry
+	 * can override this to return a subclass of Entry.
+	 * @param id ID of the data
+	 * @param content The content
+	 * @param size Size of the content
+	 * @return The new entry
+	 */
+	protected Entry newEntry(int id, String content, int size) {
+		return new Entry(id, content, size);
+	}
+
+	/**
+	 * Informs the policy that an entry was added to the store
+	 * @param e The entry
+	 */
+	protected abstract void entryAdded(Entry e);
+
+	/**
+	 * Informs the policy that the content of an entry was looked up
+	 * @param e The entry
+	 */
+	protected abstract void entryAccessed(Entry e);
+
+	/**
+	 * Informs the policy that an entry is removed from the store
+	 * @param e The entry
+	 */
+	protected abstract void entryRemoved(Entry e);
+
+	/**
+	 * Returns the entry that should be evicted next. Called only when the
+	 * store is not empty.
+	 * @return The entry to evict
+	 */
+	protected abstract Entry getVictim();
+
+	/**
+	 * Creates a replicate of this store. The replicate has the same settings
+	 * as this store but no content.
+	 * @return The replicate
+	 */
+	public abstract ContentStore replicate();
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + this.used + "/" +
+			this.capacity + " bytes";
+	}
+}
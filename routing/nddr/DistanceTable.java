@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.Arrays;
+
+import core.SimClock;
+
+/**
+ * Distance Table of an NDDR router. For every known host the table has the
+ * hop distance to the host, the sequence number (version) of the distance
+ * information and the time the entry was last updated. The entries are kept
+ * in arrays indexed by the host addresses, so a lookup is a single array
+ * read.
+ * <P>
+ * Entries can optionally age: an entry that hasn't been updated for longer
+ * than the maximum age is treated as unknown. Stale entries are detected
+ * when they are read, so expiring them needs no scans.
+ * </P>
+ */
+public class DistanceTable {
+	/** Distance of an unknown (or stale) host */
+	public static final int UNKNOWN = -1;
+
+	/** initial capacity of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** maximum age of the entries (seconds) */
+	private final double maxAge;
+	private int[] distances;
+	private int[] seqnums;
+	private double[] updateTimes;
+
+	/**
+	 * Constructor. Creates an empty table.
+	 * @param maxAge How long (seconds) an entry stays valid after its last
+	 * update (Double.MAX_VALUE for entries that never age)
+	 */
+	public DistanceTable(double maxAge) {
+		this.maxAge = maxAge;
+		this.distances = new int[0];
+		this.seqnums = new int[0];
+		this.updateTimes = new double[0];
+	}
+
+	/**
+	 * Returns true if the table has a valid entry for a host
+	 * @param address Address of the host
+	 * @return true if the host is known and its entry hasn't aged
+	 */
+	public boolean isKnown(int address) {
+		if (address >= this.distances.length ||
+				this.distances[address] == UNKNOWN) {
+			return false;
+		}
+		if (SimClock.getTime() - this.updateTimes[address] > this.maxAge) {
+			this.distances[address] = UNKNOWN; // stale entry
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the distance to a host
+	 * @param address Address of the host
+	 * @return The distance (hops) or {@link #UNKNOWN} if the host isn't
+	 * known
+	 */
+	public int getDistance(int address) {
+		return isKnown(address) ? this.distances[address] : UNKNOWN;
+	}
+
+	/**
+	 * Returns the sequence number of the distance information of a host
+	 * @param address Address of the host
+	 * @return The sequence number (undefined if the host isn't known)
+	 */
+	public int getSeqnum(int address) {
+		return this.seqnums[address];
+	}
+
+	/**
+	 * Returns the time the entry of a host was last updated
+	 * @param address Address of the host
+	 * @return The update time or -1 if the host has never been known
+	 */
+	public double getUpdateTime(int address) {
+		if (address >= this.updateTimes.length) {
+			return -1;
+		}
+		return this.updateTimes[address];
+	}
+
+	/**
+	 * Sets the distance information of a host
+	 * @param address Address of the host
+	 * @param distance The distance (hops)
+	 * @param seqnum Sequence number of the information
+	 */
+	public void update(int address, int distance, int seqnum) {
+		if (address >= this.distances.length) {
+			grow(address + 1);
+		}
+		this.distances[address] = distance;
+		this.seqnums[address] = seqnum;
+		this.updateTimes[address] = SimClock.getTime();
+	}
+
+	/**
+	 * Merges distance information learned from a peer: the information is
+	 * taken if the host is not known, if the information is fresher (has a
+	 * bigger sequence number) or if it's equally fresh but shorter.
+	 * @param address Address of the host
+	 * @param distance The distance (hops) to the host through the peer
+	 * @param seqnum Sequence number of the information
+	 * @return true if the table was updated
+	 */
+	public boolean merge(int address, int distance, int seqnum) {
+		if (isKnown(address)) {
+			int oldSeqnum = this.seqnums[address];
+			if (seqnum < oldSeqnum || (seqnum == oldSeqnum &&
+					distance >= this.distances[address])) {
+				return false;
+			}
+		}
+		update(address, distance, seqnum);
+		return true;
+	}
+
+	/**
+	 * Returns the distances of all hosts (e.g., for a distance vector)
+	 * @return The distances indexed by host address ({@link #UNKNOWN} for
+	 * unknown and stale entries); a new array
+	 */
+	public int[] getDistances() {
+		int[] copy = new int[this.distances.length];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = getDistance(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the sequence numbers of all hosts
+	 * @return The sequence numbers indexed by host address (undefined for
+	 * unknown hosts); a new array
+	 */
+	public int[] getSeqnums() {
+		return Arrays.copyOf(this.seqnums, this.seqnums.length);
+	}
+
+	/**
+	 * Grows the arrays to fit at least the given number of hosts
+	 */
+	private void grow(int minCapacity) {
+		int oldCapacity = this.distances.length;
+		int capacity = Math.max(Math.max(INITIAL_CAPACITY, oldCapacity * 2),
+				minCapacity);
+		this.distances = Arrays.copyOf(this.distances, capacity);
+		this.seqnums = Arrays.copyOf(this.seqnums, capacity);
+		this.updateTimes = Arrays.copyOf(this.updateTimes, capacity);
+		Arrays.fill(this.distances, oldCapacity, capacity, UNKNOWN);
+		Arrays.fill(this.updateTimes, oldCapacity, capacity, -1);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Settings;
+
+/**
+ * Content store that evicts the content that was cached first (First In,
+ * First Out). The entries are kept in a doubly linked list in the
+ * insertion order.
+ */
+public class FifoContentStore extends ContentStore {
+	/** sentinel of the entry list; head.next is the next victim */
+	protected final Entry head;
+
+	/**
+	 * Constructor. Creates a new prototype store.
+	 * @param s The settings object of the router's namespace
+	 */
+	public FifoContentStore(Settings s) {
+		super(s);
+		this.head = null;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype store
+	 */
+	protected FifoContentStore(FifoContentStore proto) {
+		super(proto);
+		this.head = new Entry(-1, null, 0);
+		this.head.prev = this.head.next = this.head;
+	}
+
+	@Override
+	protected void entryAdded(Entry e) {
+		e.linkBefore(this.head); // to the end of the list
+	}
+
+	@Override
+	protected void entryAccessed(Entry e) { }
+
+	@Override
+	protected void entryRemoved(Entry e) {
+		e.unlink();
+	}
+
+	@Override
+	protected Entry getVictim() {
+		return this.head.next;
+	}
+
+	@Override
+	public FifoContentStore replicate() {
+		return new FifoContentStore(this);
+	}
+}
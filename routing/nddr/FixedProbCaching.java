@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Caching strategy that caches every received Data with a fixed
+ * probability.
+ */
+public class FixedProbCaching extends CachingStrategy {
+	/** Caching probability -setting id ({@value}). Double valued (0-1).
+	 * Default = {@value #DEFAULT_CACHING_PROB} */
+	public static final String CACHING_PROB_S = "cachingProb";
+	/** Default caching probability ({@value}) */
+	public static final double DEFAULT_CACHING_PROB = 0.5;
+
+	private final double prob;
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public FixedProbCaching(Settings s) {
+		super(s);
+		this.prob = s.getDouble(CACHING_PROB_S, DEFAULT_CACHING_PROB);
+		if (this.prob < 0 || this.prob > 1) {
+			throw new SettingsError(s.getFullPropertyName(CACHING_PROB_S) +
+					" must be in range [0, 1]");
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype strategy
+	 */
+	protected FixedProbCaching(FixedProbCaching proto) {
+		super(proto);
+		this.prob = proto.prob;
+	}
+
+	@Override
+	protected boolean admit(Message data, int hopsToDestination) {
+		return draw(this.prob);
+	}
+
+	@Override
+	public FixedProbCaching replicate() {
+		return new FixedProbCaching(this);
+	}
+}
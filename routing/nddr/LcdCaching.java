@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Caching strategy that caches Data only one hop down from the host that
+ * answered the Interest (Leave Copy Down). Every cache hit creates a new
+ * Data message, so popular content moves one hop closer to its consumers
+ * per request.
+ */
+public class LcdCaching extends CachingStrategy {
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public LcdCaching(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype strategy
+	 */
+	protected LcdCaching(LcdCaching proto) {
+		super(proto);
+	}
+
+	@Override
+	protected boolean admit(Message data, int hopsToDestination) {
+		return getHopsFromSource(data) == 1;
+	}
+
+	@Override
+	public LcdCaching replicate() {
+		return new LcdCaching(this);
+	}
+}
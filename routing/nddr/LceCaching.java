@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Caching strategy that caches all the received Data (Leave Copy
+ * Everywhere).
+ */
+public class LceCaching extends CachingStrategy {
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public LceCaching(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype strategy
+	 */
+	protected LceCaching(LceCaching proto) {
+		super(proto);
+	}
+
+	@Override
+	protected boolean admit(Message data, int hopsToDestination) {
+		return true;
+	}
+
+	@Override
+	public LceCaching replicate() {
+		return new LceCaching(this);
+	}
+}
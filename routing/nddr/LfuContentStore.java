@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Settings;
+
+/**
+ * Content store that evicts the Least Frequently Used content. Ties are
+ * broken by evicting the least recently used of the least frequently used
+ * entries. The entries are grouped in frequency buckets that are kept in
+ * a linked list in increasing frequency order, so that adding, accessing
+ * and evicting an entry all take constant time.
+ */
+public class LfuContentStore extends ContentStore {
+	/** sentinel of the bucket list; head.next is the lowest frequency */
+	private final Bucket head;
+
+	/**
+	 * Entry with an access frequency
+	 */
+	private static class LfuEntry extends Entry {
+		private Bucket bucket;
+
+		private LfuEntry(int id, String content, int size) {
+			super(id, content, size);
+		}
+	}
+
+	/**
+	 * Entries with the same access frequency, in the order they got to
+	 * the frequency
+	 */
+	private static class Bucket {
+		private final int frequency;
+		/** sentinel of the entry list */
+		private final Entry entries;
+		private Bucket prev, next;
+
+		private Bucket(int frequency) {
+			this.frequency = frequency;
+			this.entries = new Entry(-1, null, 0);
+			this.entries.prev = this.entries.next = this.entries;
+		}
+
+		private boolean isEmpty() {
+			return this.entries.next == this.entries;
+		}
+
+		/**
+		 * Links a new bucket after this bucket
+		 */
+		private Bucket addAfter(int frequency) {
+			Bucket b = new Bucket(frequency);
+			b.prev = this;
+			b.next = this.next;
+			this.next.prev = b;
+			this.next = b;
+			return b;
+		}
+
+		private void unlink() {
+			this.prev.next = this.next;
+			this.next.prev = this.prev;
+		}
+	}
+
+	/**
+	 * Constructor. Creates a new prototype store.
+	 * @param s The settings object of the router's namespace
+	 */
+	public LfuContentStore(Settings s) {
+		super(s);
+		this.head = null;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype store
+	 */
+	protected LfuContentStore(LfuContentStore proto) {
+		super(proto);
+		this.head = new Bucket(0);
+		this.head.prev = this.head.next = this.head;
+	}
+
+	@Override
+	protected Entry newEntry(int id, String content, int size) {
+		return new LfuEntry(id, content, size);
+	}
+
+	/**
+	 * Moves an entry to the end of the given bucket
+	 */
+	private void moveTo(LfuEntry e, Bucket b) {
+		if (e.bucket != null) {
+			e.unlink();
+			if (e.bucket.isEmpty()) {
+				e.bucket.unlink();
+			}
+		}
+		e.linkBefore(b.entries);
+		e.bucket = b;
+	}
+
+	@Override
+	protected void entryAdded(Entry e) {
+		Bucket first = this.head.next;
+		if (first == this.head || first.frequency != 1) {
+			first = this.head.addAfter(1);
+		}
+		moveTo((LfuEntry)e, first);
+	}
+
+	@Override
+	protected void entryAccessed(Entry e) {
+		LfuEntry le = (LfuEntry)e;
+		Bucket current = le.bucket;
+		Bucket next = current.next;
+		if (next == this.head || next.frequency != current.frequency + 1) {
+			next = current.addAfter(current.frequency + 1);
+		}
+		moveTo(le, next);
+	}
+
+	@Override
+	protected void entryRemoved(Entry e) {
+		LfuEntry le = (LfuEntry)e;
+		le.unlink();
+		if (le.bucket.isEmpty()) {
+			le.bucket.unlink();
+		}
+		le.bucket = null;
+	}
+
+	@Override
+	protected Entry getVictim() {
+		return this.head.next.entries.next;
+	}
+
+	@Override
+	public LfuContentStore replicate() {
+		return new LfuContentStore(this);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Settings;
+
+/**
+ * Content store that evicts the Least Recently Used content. Works like
+ * {@link FifoContentStore} but an accessed entry is moved to the end of
+ * the list.
+ */
+public class LruContentStore extends FifoContentStore {
+
+	/**
+	 * Constructor. Creates a new prototype store.
+	 * @param s The settings object of the router's namespace
+	 */
+	public LruContentStore(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype store
+	 */
+	protected LruContentStore(LruContentStore proto) {
+		super(proto);
+	}
+
+	@Override
+	protected void entryAccessed(Entry e) {
+		e.unlink();
+		e.linkBefore(this.head);
+	}
+
+	@Override
+	public LruContentStore replicate() {
+		return new LruContentStore(this);
+	}
+}
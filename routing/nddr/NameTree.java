@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of hierarchical data names. A name is a sequence of
+ * components separated by slashes, e.g., "/city/sensor/42/chunk/7" (the
+ * leading slash is optional). Every name and every prefix of a name added
+ * to the tree is a node with a dense integer ID, so per-name state can be
+ * kept in arrays and bit sets indexed by the node IDs.
+ * <P>
+ * The component strings are interned to integers and the children of all
+ * nodes are kept in one open addressing hash table keyed by the (parent
+ * node, component) pair, so adding and finding a name and longest prefix
+ * matching take time proportional to the depth of the name, regardless of
+ * the number of names in the tree.
+ * </P>
+ */
+public class NameTree {
+	/** ID of the root node (the empty name "/") */
+	public static final int ROOT = 0;
+	/** Separator of the name components */
+	public static final char SEPARATOR = '/';
+
+	/** initial capacity of the node arrays */
+	private static final int INITIAL_CAPACITY = 16;
+	/** marker of an empty slot in the child table */
+	private static final long EMPTY = -1L;
+
+	/** interned component IDs mapped by the component strings */
+	private Map<String, Integer> componentIds;
+	/** component strings indexed by the component IDs */
+	private List<String> components;
+
+	/** parent node of every node (-1 for the root) */
+	private int[] parents;
+	/** last component (ID) of every node's name */
+	private int[] componentOf;
+	/** number of components in every node's name */
+	private int[] depths;
+	private int size;
+
+	/** child table keys: (parent node << 32 | component ID) */
+	private long[] childKeys;
+	/** child table values: the child node */
+	private int[] childNodes;
+	private int nrofChildren;
+
+	/**
+	 * Constructor. Creates a tree with only the root node.
+	 */
+	public NameTree() {
+		this.componentIds = new HashMap<String, Integer>();
+		this.components = new ArrayList<String>();
+		this.parents = new int[INITIAL_CAPACITY];
+		this.componentOf = new int[INITIAL_CAPACITY];
+		this.depths = new int[INITIAL_CAPACITY];
+		this.childKeys = new long[INITIAL_CAPACITY * 2];
+		Arrays.fill(this.childKeys, EMPTY);
+		this.childNodes = new int[INITIAL_CAPACITY * 2];
+
+		this.parents[ROOT] = -1;
+		this.componentOf[ROOT] = -1;
+		this.size = 1;
+	}
+
+	/**
+	 * Adds a name (and all its prefixes) to the tree
+	 * @param name The name
+	 * @return ID of the name's node
+	 */
+	public int add(String name) {
+		int node = ROOT;
+		int start = 0;
+		for (int end; (end = nextComponent(name, start)) >= 0; start = end) {
+			String c = component(name, start, end);
+			if (c != null) {
+				node = addChild(node, c);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Adds a child to a node
+	 * @param parent ID of the parent node
+	 * @param component Name component of the child
+	 * @return ID of the (new or existing) child node
+	 */
+	public int addChild(int parent, String component) {
+		Integer c = this.componentIds.get(component);
+		if (c == null) {
+			c = this.components.size();
+			this.componentIds.put(component, c);
+			this.components.add(component);
+		}
+
+		long key = childKey(parent, c);
+		int slot = findSlot(key);
+		if (this.childKeys[slot] == key) {
+			return this.childNodes[slot];
+		}
+
+		if (this.size == this.parents.length) {
+			int capacity = this.size * 2;
+			this.parents = Arrays.copyOf(this.parents, capacity);
+			this.componentOf = Arrays.copyOf(this.componentOf,
+					capacity);
+			this.depths = Arrays.copyOf(this.depths, capacity);
+		}
+		int node = this.size++;
+		this.parents[node] = parent;
+		this.componentOf[node] = c;
+		this.depths[node] = this.depths[parent] + 1;
+
+		this.childKeys[slot] = key;
+		this.childNodes[slot] = node;
+		if (++this.nrofChildren * 2 > this.childKeys.length) {
+			rehash(this.childKeys.length * 2);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the child of a node
+	 * @param parent ID of the parent node
+	 * @param component Name component of the child
+	 * @return ID of the child node or -1 if there's no such child
+	 */
+	public int getChild(int parent, String component) {
+		Integer c = this.componentIds.get(component);
+		if (c == null) {
+			return -1;
+		}
+		long key = childKey(parent, c);
+		int slot = findSlot(key);
+		return this.childKeys[slot] == key ? this.childNodes[slot] : -1;
+	}
+
+	/**
+	 * Finds the node of a name
+	 * @param name The name
+	 * @return ID of the name's node or -1 if the name is not in the tree
+	 */
+	public int find(String name) {
+		int node = ROOT;
+		int start = 0;
+		for (int end; (end = nextComponent(name, start)) >= 0; start = end) {
+			String c = component(name, start, end);
+			if (c != null && (node = getChild(node, c)) < 0) {
+				return -1;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the longest prefix of a node's name that is in the given set
+	 * of nodes (the node itself included)
+	 * @param node ID of the node
+	 * @param prefixes IDs of the candidate prefix nodes
+	 * @return ID of the longest matching prefix or -1 if none matches
+	 */
+	public int longestPrefixMatch(int node, BitSet prefixes) {
+		for (; node >= 0; node = this.parents[node]) {
+			if (prefixes.get(node)) {
+				return node;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the longest prefix of a name that is in the given set of
+	 * nodes. The name doesn't need to be in the tree.
+	 * @param name The name
+	 * @param prefixes IDs of the candidate prefix nodes
+	 * @return ID of the longest matching prefix or -1 if none matches
+	 */
+	public int longestPrefixMatch(String name, BitSet prefixes) {
+		int node = ROOT;
+		int match = prefixes.get(ROOT) ? ROOT : -1;
+		int start = 0;
+		for (int end; (end = nextComponent(name, start)) >= 0; start = end) {
+			String c = component(name, start, end);
+			if (c == null) {
+				continue;
+			}
+			if ((node = getChild(node, c)) < 0) {
+				break;
+			}
+			if (prefixes.get(node)) {
+				match = node;
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Returns true if a node's name is a prefix of (or equal to) another
+	 * node's name
+	 * @param prefix ID of the possible prefix node
+	 * @param node ID of the other node
+	 * @return true if the first node is a prefix of the second one
+	 */
+	public boolean isPrefix(int prefix, int node) {
+		while (this.depths[node] > this.depths[prefix]) {
+			node = this.parents[node];
+		}
+		return node == prefix;
+	}
+
+	/**
+	 * Returns the parent of a node
+	 * @param node ID of the node
+	 * @return ID of the parent node or -1 for the root
+	 */
+	public int getParent(int node) {
+		return this.parents[node];
+	}
+
+	/**
+	 * Returns the number of components in a node's name
+	 * @param node ID of the node
+	 * @return The depth of the node (0 for the root)
+	 */
+	public int getDepth(int node) {
+		return this.depths[node];
+	}
+
+	/**
+	 * Returns the last component of a node's name
+	 * @param node ID of the node
+	 * @return The component (null for the root)
+	 */
+	public String getComponent(int node) {
+		return node == ROOT ? null :
+			this.components.get(this.componentOf[node]);
+	}
+
+	/**
+	 * Returns the full name of a node
+	 * @param node ID of the node
+	 * @return The name, e.g., "/city/sensor/42"
+	 */
+	public String getName(int node) {
+		if (node == ROOT) {
+			return String.valueOf(SEPARATOR);
+		}
+		String[] parts = new String[this.depths[node]];
+		for (int i = parts.length - 1; i >= 0; i--) {
+			parts[i] = getComponent(node);
+			node = this.parents[node];
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String part : parts) {
+			sb.append(SEPARATOR).append(part);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the number of nodes in the tree (root included)
+	 * @return The number of nodes
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the end index of the name component starting at the given
+	 * index or -1 if there are no more components
+	 */
+	private static int nextComponent(String name, int start) {
+		if (start >= name.length()) {
+			return -1;
+		}
+		int end = name.indexOf(SEPARATOR, start);
+		return end < 0 ? name.length() : end + 1;
+	}
+
+	/**
+	 * Returns the component between the indexes (without the separator)
+	 * or null if the component is empty
+	 */
+	private static String component(String name, int start, int end) {
+		if (end > start && name.charAt(end - 1) == SEPARATOR) {
+			end--;
+		}
+		return end > start ? name.substring(start, end) : null;
+	}
+
+	/**
+	 * Returns the child table key of a (parent, component) pair
+	 */
+	private static long childKey(int parent, int component) {
+		return ((long)parent << 32) | component;
+	}
+
+	/**
+	 * Returns the slot of a key in the child table or the empty slot where
+	 * it should be put (linear probing)
+	 */
+	private int findSlot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		int mask = this.childKeys.length - 1;
+		int slot = (int)(h ^ (h >>> 32)) & mask;
+		while (this.childKeys[slot] != EMPTY && this.childKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Grows the child table
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = this.childKeys;
+		int[] oldNodes = this.childNodes;
+		this.childKeys = new long[capacity];
+		Arrays.fill(this.childKeys, EMPTY);
+		this.childNodes = new int[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = findSlot(oldKeys[i]);
+				this.childKeys[slot] = oldKeys[i];
+				this.childNodes[slot] = oldNodes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.TimerWheel;
+import core.DTNHost;
+
+/**
+ * Pending Interest Table of an NDDR router. Every entry records the hosts
+ * that have requested a data ID (see {@link ContentCatalog}) and not yet
+ * received it. Interests for a data ID that already has an entry are
+ * aggregated to the entry.
+ * <P>
+ * An entry lives as long as the latest of its aggregated Interests: the
+ * entries are scheduled to expire in a {@link TimerWheel} at the Interests'
+ * expiry time, so the size of the table is bounded by the number of live
+ * Interests. Requester membership is kept in a bit set indexed by the host
+ * addresses, so adding, checking and removing a requester take constant
+ * time.
+ * </P>
+ */
+public class PendingInterestTable {
+	/** length of the expiry timer wheel's tick (seconds) */
+	private static final double EXPIRY_TICK = 1.0;
+
+	/** entries mapped by the data IDs */
+	private Map<Integer, Entry> entries;
+	/** expiry timers of the entries */
+	private TimerWheel<Entry> expiryTimers;
+
+	private int nrofCreated;
+	private int nrofAggregated;
+	private int nrofDuplicates;
+	private int nrofSatisfied;
+	private int nrofExpired;
+
+	/**
+	 * Requesters of a data ID
+	 */
+	private static class Entry {
+		private final int dataId;
+		/** requesters in the order they were (first) added */
+		private List<DTNHost> requesters;
+		/** addresses of the requesters that are in the requester list */
+		private BitSet listed;
+		/** addresses of the current requesters */
+		private BitSet pending;
+		private double expiryTime;
+		private TimerWheel.Timer<Entry> timer;
+
+		private Entry(int dataId) {
+			this.dataId = dataId;
+			this.requesters = new ArrayList<DTNHost>(2);
+			this.listed = new BitSet();
+			this.pending = new BitSet();
+			this.expiryTime = -1;
+		}
+
+		/**
+		 * Adds a requester
+		 * @return true if the host wasn't a requester yet
+		 */
+		private boolean add(DTNHost host) {
+			int address = host.getAddress();
+			if (this.pending.get(address)) {
+				return false;
+			}
+			this.pending.set(address);
+			if (!this.listed.get(address)) {
+				this.listed.set(address);
+				this.requesters.add(host);
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the current requesters
+		 */
+		private List<DTNHost> getRequesters() {
+			List<DTNHost> hosts = new ArrayList<DTNHost>(this.requesters.size());
+			for (DTNHost h : this.requesters) {
+				if (this.pending.get(h.getAddress())) {
+					hosts.add(h);
+				}
+			}
+			return hosts;
+		}
+	}
+
+	/**
+	 * Constructor. Creates an empty table.
+	 */
+	public PendingInterestTable() {
+		this.entries = new HashMap<Integer, Entry>();
+		this.expiryTimers = new TimerWheel<Entry>(EXPIRY_TICK);
+	}
+
+	/**
+	 * Returns true if the table has an entry for a data ID
+	 * @param dataId The data ID
+	 * @return true if the data ID has pending Interests
+	 */
+	public boolean contains(int dataId) {
+		return this.entries.containsKey(dataId);
+	}
+
+	/**
+	 * Adds a requester for a data ID. If the data ID doesn't have an entry
+	 * yet, a new entry is created; otherwise the Interest is aggregated to
+	 * the existing entry. The lifetime of the entry is extended to the
+	 * expiry time of the Interest if that is later.
+	 * @param dataId The data ID
+	 * @param requester The requesting host
+	 * @param expiryTime Expiry time of the Interest (Double.MAX_VALUE if it
+	 * never expires)
+	 * @return true if a new entry was created
+	 */
+	public boolean add(int dataId, DTNHost requester, double expiryTime) {
+		Entry e = this.entries.get(dataId);
+		boolean created = (e == null);
+		if (created) {
+			e = new Entry(dataId);
+			this.entries.put(dataId, e);
+			this.nrofCreated++;
+		}
+		if (e.add(requester)) {
+			if (!created) {
+				this.nrofAggregated++;
+			}
+		} else {
+			this.nrofDuplicates++;
+		}
+
+		if (expiryTime > e.expiryTime) {
+			e.expiryTime = expiryTime;
+			if (e.timer != null) {
+				this.expiryTimers.cancel(e.timer);
+				e.timer = null;
+			}
+			if (expiryTime != Double.MAX_VALUE) {
+				e.timer = this.expiryTimers.schedule(e, expiryTime);
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Returns true if a host is a requester of a data ID
+	 * @param dataId The data ID
+	 * @param host The host
+	 * @return true if the host has a pending Interest for the data ID
+	 */
+	public boolean hasRequester(int dataId, DTNHost host) {
+		Entry e = this.entries.get(dataId);
+		return e != null && e.pending.get(host.getAddress());
+	}
+
+	/**
+	 * Removes a requester of a data ID. The entry stays in the table even
+	 * if it has no more requesters.
+	 * @param dataId The data ID
+	 * @param host The host
+	 * @return true if the host was a requester of the data ID
+	 */
+	public boolean removeRequester(int dataId, DTNHost host) {
+		Entry e = this.entries.get(dataId);
+		if (e == null || !e.pending.get(host.getAddress())) {
+			return false;
+		}
+		e.pending.clear(host.getAddress());
+		return true;
+	}
+
+	/**
+	 * Replaces the requesters of a data ID with a single host (keeping the
+	 * lifetime of the entry)
+	 * @param dataId The data ID
+	 * @param host The only requester left
+	 */
+	public void retainOnly(int dataId, DTNHost host) {
+		Entry e = this.entries.get(dataId);
+		assert e != null : "No PIT entry for data ID " + dataId;
+		e.pending.clear();
+		e.add(host);
+	}
+
+	/**
+	 * Returns the requesters of a data ID
+	 * @param dataId The data ID
+	 * @return The requesters in the order they were added (a new list;
+	 * empty if there's no entry for the data ID)
+	 */
+	public List<DTNHost> getRequesters(int dataId) {
+		Entry e = this.entries.get(dataId);
+		if (e == null) {
+			return new ArrayList<DTNHost>(0);
+		}
+		return e.getRequesters();
+	}
+
+	/**
+	 * Removes the entry of a data ID because the data was received
+	 * @param dataId The data ID
+	 */
+	public void satisfy(int dataId) {
+		Entry e = this.entries.remove(dataId);
+		if (e != null) {
+			if (e.timer != null) {
+				this.expiryTimers.cancel(e.timer);
+			}
+			this.nrofSatisfied++;
+		}
+	}
+
+	/**
+	 * Returns the data IDs that have an entry
+	 * @return The data IDs (a new set)
+	 */
+	public BitSet getPendingIds() {
+		BitSet ids = new BitSet();
+		for (int id : this.entries.keySet()) {
+			ids.set(id);
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the addresses of the requesters of a data ID
+	 * @param dataId The data ID
+	 * @return The addresses (a new set; empty if there's no entry for the
+	 * data ID)
+	 */
+	public BitSet getRequesterAddresses(int dataId) {
+		Entry e = this.entries.get(dataId);
+		if (e == null) {
+			return new BitSet(0);
+		}
+		return (BitSet)e.pending.clone();
+	}
+
+	/**
+	 * Removes the entries whose Interests have all expired
+	 * @param now The current time
+	 * @return The number of removed entries
+	 */
+	public int expire(double now) {
+		List<Entry> expired = this.expiryTimers.advance(now);
+		for (Entry e : expired) {
+			this.entries.remove(e.dataId);
+		}
+		this.nrofExpired += expired.size();
+		return expired.size();
+	}
+
+	/**
+	 * Returns the number of entries in the table
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Returns the number of created entries
+	 * @return the number of created entries
+	 */
+	public int getNrofCreated() {
+		return this.nrofCreated;
+	}
+
+	/**
+	 * Returns the number of Interests that were aggregated to an existing
+	 * entry
+	 * @return the number of aggregated Interests
+	 */
+	public int getNrofAggregated() {
+		return this.nrofAggregated;
+	}
+
+	/**
+	 * Returns the number of Interests from hosts that already were
+	 * requesters of the entry
+	 * @return the number of duplicate Interests
+	 */
+	public int getNrofDuplicates() {
+		return this.nrofDuplicates;
+	}
+
+	/**
+	 * Returns the number of entries that were removed because the data
+	 * was received
+	 * @return the number of satisfied entries
+	 */
+	public int getNrofSatisfied() {
+		return this.nrofSatisfied;
+	}
+
+	/**
+	 * Returns the number of entries that expired
+	 * @return the number of expired entries
+	 */
+	public int getNrofExpired() {
+		return this.nrofExpired;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.nddr;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Caching strategy that caches Data with a probability that grows towards
+ * the consumer (ProbCache). A host x hops from the Data source on a path of
+ * c hops caches with the probability
+ * <CODE>(c - x + 1) / T * x / c</CODE>, where T is the target time window,
+ * i.e., roughly how many copies of the content the path should hold. The
+ * path length is the hop count of the Data plus the known distance to its
+ * destination; if the distance isn't known, the rest of the path is
+ * assumed to be as long as the traveled part. All the content stores are
+ * assumed to be equally large.
+ */
+public class ProbCacheCaching extends CachingStrategy {
+	/** Target time window -setting id ({@value}). Double valued.
+	 * Default = {@value #DEFAULT_TIME_WINDOW} */
+	public static final String TIME_WINDOW_S = "probCacheTimeWindow";
+	/** Default target time window ({@value}) */
+	public static final double DEFAULT_TIME_WINDOW = 10;
+
+	private final double timeWindow;
+
+	/**
+	 * Constructor. Creates a new prototype strategy.
+	 * @param s The settings object of the router's namespace
+	 */
+	public ProbCacheCaching(Settings s) {
+		super(s);
+		this.timeWindow = s.getDouble(TIME_WINDOW_S, DEFAULT_TIME_WINDOW);
+		s.ensurePositiveValue(this.timeWindow, TIME_WINDOW_S);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The prototype strategy
+	 */
+	protected ProbCacheCaching(ProbCacheCaching proto) {
+		super(proto);
+		this.timeWindow = proto.timeWindow;
+	}
+
+	/**
+	 * Returns the caching probability of a host on a path
+	 * @param hopsFromSource Distance of the host from the Data source
+	 * @param hopsToDestination Distance of the host to the destination or
+	 * {@link CachingStrategy#UNKNOWN}
+	 * @return The caching probability
+	 */
+	public double getProbability(int hopsFromSource, int hopsToDestination) {
+		int x = hopsFromSource;
+		int left = (hopsToDestination == UNKNOWN ? x : hopsToDestination);
+		int c = x + left;
+		return (left + 1) / this.timeWindow * x / c;
+	}
+
+	@Override
+	protected boolean admit(Message data, int hopsToDestination) {
+		return draw(getProbability(getHopsFromSource(data),
+				hopsToDestination));
+	}
+
+	@Override
+	public ProbCacheCaching replicate() {
+		return new ProbCacheCaching(this);
+	}
+}
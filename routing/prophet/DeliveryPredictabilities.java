@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.prophet;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+
+/**
+ * Delivery predictabilities of a PRoPHET router stored in arrays indexed by
+ * host address. Aging is lazy: instead of multiplying every value, a common
+ * scale factor is multiplied, so aging and lookups are O(1). The values are
+ * renormalized (the scale is applied to all values) only when the scale gets
+ * too small to keep enough precision.
+ */
+public class DeliveryPredictabilities {
+	/** scale factor below which the values are renormalized */
+	private static final double MIN_SCALE = 1e-100;
+	/** initial capacity (number of host addresses) of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** predictabilities divided by the scale (indexed by host address) */
+	private double[] values;
+	/** the hosts of the entries (indexed by host address) */
+	private DTNHost[] hosts;
+	/** addresses of the hosts that have an entry (in insertion order) */
+	private int[] addresses;
+	/** number of entries */
+	private int size;
+	/** common scale factor of the values */
+	private double scale;
+
+	/**
+	 * Constructor. Creates an empty predictability table.
+	 */
+	public DeliveryPredictabilities() {
+		this.values = new double[INITIAL_CAPACITY];
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.addresses = new int[INITIAL_CAPACITY];
+		this.size = 0;
+		this.scale = 1;
+	}
+
+	/**
+	 * Returns the predictability for a host
+	 * @param host The host
+	 * @return The predictability or 0 if there's no entry for the host
+	 */
+	public double get(DTNHost host) {
+		return get(host.getAddress());
+	}
+
+	/**
+	 * Returns the predictability for a host address
+	 * @param address Address of the host
+	 * @return The predictability or 0 if there's no entry for the host
+	 */
+	public double get(int address) {
+		if (address >= this.values.length) {
+			return 0;
+		}
+		return this.values[address] * this.scale;
+	}
+
+	/**
+	 * Sets the predictability for a host
+	 * @param host The host
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= this.values.length) {
+			int capacity = Math.max(address + 1, this.values.length * 2);
+			this.values = Arrays.copyOf(this.values, capacity);
+			this.hosts = Arrays.copyOf(this.hosts, capacity);
+		}
+		if (this.hosts[address] == null) {
+			if (this.size == this.addresses.length) {
+				this.addresses = Arrays.copyOf(this.addresses, this.size * 2);
+			}
+			this.addresses[this.size++] = address;
+			this.hosts[address] = host;
+		}
+		this.values[address] = value / this.scale;
+	}
+
+	/**
+	 * Ages all the predictabilities by multiplying them with the given factor
+	 * @param mult The aging factor (between 0 and 1)
+	 */
+	public void age(double mult) {
+		this.scale *= mult;
+		if (this.scale < MIN_SCALE) {
+			for (int i = 0; i < this.size; i++) {
+				this.values[this.addresses[i]] *= this.scale;
+			}
+			this.scale = 1;
+		}
+	}
+
+	/**
+	 * Returns the number of hosts that have a predictability entry
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the host of an entry
+	 * @param index Index of the entry (0 ... {@link #size()}-1)
+	 * @return The host
+	 */
+	public DTNHost getHost(int index) {
+		return this.hosts[this.addresses[index]];
+	}
+
+	/**
+	 * Returns the predictability of an entry
+	 * @param index Index of the entry (0 ... {@link #size()}-1)
+	 * @return The predictability
+	 */
+	public double getValue(int index) {
+		return this.values[this.addresses[index]] * this.scale;
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Earliest arrival routes from one node over a {@link ContactPlan}. The
+ * routes are calculated with a time-dependent Dijkstra's algorithm: a node
+ * reached at time t can forward over any contact that hasn't ended at t
+ * (waiting for the contact to start if necessary).
+ * <P>
+ * The routes to all destinations are calculated at once and cached. Every
+ * destination's route stays valid (i.e., it still gives the same, earliest
+ * possible, arrival time) until the first contact of the route ends or, for
+ * routes with more than one hop, until the second contact of the route
+ * starts to be used. The routes are recalculated only when the route of a
+ * destination that is asked for is no longer valid.
+ * </P>
+ */
+public class ContactGraphRoutes {
+	/** Arrival time of destinations that can't be reached */
+	public static final double NEVER = ContactPlan.NEVER;
+
+	private final ContactPlan plan;
+	private final int source;
+	/** time of the latest route calculation (NaN if not calculated) */
+	private double calculatedAt;
+	/** earliest arrival times of the nodes */
+	private double[] arrival;
+	/** first hops of the routes (-1 if there's no route) */
+	private int[] nextHop;
+	/** end times of the first contacts of the routes */
+	private double[] firstContactEnd;
+	/** times until which the routes are valid */
+	private double[] validUntil;
+	/** binary heap of the nodes whose arrival times are being resolved */
+	private int[] heap;
+	/** positions of the nodes in the heap (-1 if not in the heap) */
+	private int[] heapPos;
+	private int heapSize;
+	/** nodes whose earliest arrival time is known */
+	private boolean[] done;
+
+	/**
+	 * Constructor.
+	 * @param plan The contact plan to use
+	 * @param source Address of the node where the routes start from
+	 */
+	public ContactGraphRoutes(ContactPlan plan, int source) {
+		this.plan = plan;
+		this.source = source;
+		this.calculatedAt = Double.NaN;
+		resize(Math.max(plan.getNrofNodes(), source + 1));
+	}
+
+	/**
+	 * Returns the first hop of the earliest arrival route to a destination
+	 * @param destination Address of the destination
+	 * @param now Current time
+	 * @return Address of the first hop or -1 if the destination can't be
+	 * reached (or it is the source)
+	 */
+	public int getNextHop(int destination, double now) {
+		if (!update(destination, now)) {
+			return -1;
+		}
+		return nextHop[destination];
+	}
+
+	/**
+	 * Returns the earliest possible arrival time to a destination (if a
+	 * message was forwarded at every hop as soon as possible)
+	 * @param destination Address of the destination
+	 * @param now Current time
+	 * @return The arrival time or {@link #NEVER} if the destination can't be
+	 * reached
+	 */
+	public double getArrivalTime(int destination, double now) {
+		if (!update(destination, now)) {
+			return destination == source ? now : NEVER;
+		}
+		/* routes stay valid as time passes but direct contacts may be
+		 * reached later than at the time of the calculation */
+		return Math.max(arrival[destination], now);
+	}
+
+	/**
+	 * Recalculates the routes if the route to the destination isn't valid
+	 * anymore
+	 * @return false if the destination is outside of the plan (or is the
+	 * source), true otherwise
+	 */
+	private boolean update(int destination, double now) {
+		if (destination >= arrival.length || destination == source) {
+			return false;
+		}
+		if (Double.isNaN(calculatedAt) || now < calculatedAt ||
+				now >= validUntil[destination]) {
+			calculate(now);
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates the earliest arrival routes to all nodes
+	 * @param now The time when the routes start
+	 */
+	private void calculate(double now) {
+		if (arrival.length < plan.getNrofNodes()) {
+			resize(plan.getNrofNodes());
+		}
+		Arrays.fill(arrival, NEVER);
+		Arrays.fill(nextHop, -1);
+		/* unreachable nodes stay unreachable as time passes */
+		Arrays.fill(validUntil, NEVER);
+		Arrays.fill(done, false);
+		calculatedAt = now;
+
+		arrival[source] = now;
+		heapUpdate(source);
+
+		while (heapSize > 0) {
+			int u = heapPoll();
+			done[u] = true;
+			double t = arrival[u];
+
+			for (int i = 0, n = plan.getNrofPairs(u); i < n; i++) {
+				int p = plan.getPair(u, i);
+				int v = plan.getOtherNode(p, u);
+				if (done[v]) {
+					continue;
+				}
+				int c = plan.getNextContact(p, t);
+				if (c < 0) {
+					continue; // no more contacts between u and v
+				}
+				double tv = Math.max(t, plan.getStart(p, c));
+				if (tv < arrival[v]) {
+					arrival[v] = tv;
+					if (u == source) {
+						nextHop[v] = v;
+						firstContactEnd[v] = plan.getEnd(p, c);
+						validUntil[v] = firstContactEnd[v];
+					}
+					else {
+						nextHop[v] = nextHop[u];
+						if (nextHop[u] == u) {
+							/* second hop: valid until the second contact
+							 * would have to be used later than now */
+							validUntil[v] = Math.min(firstContactEnd[u], tv);
+						}
+						else {
+							validUntil[v] = validUntil[u];
+						}
+					}
+					heapUpdate(v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resizes the arrays
+	 */
+	private void resize(int size) {
+		arrival = new double[size];
+		nextHop = new int[size];
+		firstContactEnd = new double[size];
+		validUntil = new double[size];
+		heap = new int[size];
+		heapPos = new int[size];
+		Arrays.fill(heapPos, -1);
+		done = new boolean[size];
+		calculatedAt = Double.NaN;
+	}
+
+	/**
+	 * Adds a node to the heap or moves it up after its time decreased
+	 */
+	private void heapUpdate(int v) {
+		int i = heapPos[v];
+		if (i == -1) {
+			i = heapSize++;
+		}
+		while (i > 0) {
+			int p = (i - 1) / 2;
+			if (arrival[heap[p]] <= arrival[v]) {
+				break;
+			}
+			heap[i] = heap[p];
+			heapPos[heap[i]] = i;
+			i = p;
+		}
+		heap[i] = v;
+		heapPos[v] = i;
+	}
+
+	/**
+	 * Removes and returns the node with the earliest time from the heap
+	 */
+	private int heapPoll() {
+		int top = heap[0];
+		heapPos[top] = -1;
+		int last = heap[--heapSize];
+		if (heapSize > 0) {
+			int i = 0;
+			while (true) {
+				int c = 2 * i + 1;
+				if (c >= heapSize) {
+					break;
+				}
+				if (c + 1 < heapSize &&
+						arrival[heap[c + 1]] < arrival[heap[c]]) {
+					c++;
+				}
+				if (arrival[heap[c]] >= arrival[last]) {
+					break;
+				}
+				heap[i] = heap[c];
+				heapPos[heap[i]] = i;
+				i = c;
+			}
+			heap[i] = last;
+			heapPos[last] = i;
+		}
+		return top;
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time-indexed plan of the contacts between nodes. The contacts of every
+ * node pair are kept in primitive arrays sorted by time, and every node has
+ * a list of the pairs it belongs to, so the next contact between two nodes
+ * after a given time is found with a binary search. Contacts are
+ * bidirectional.
+ * <P>
+ * A plan can be read from a connection trace (any external events file that
+ * {@link ExternalEventsQueue} can read, e.g., a
+ * {@link input.StandardEventsReader} file): every "connection up" event
+ * starts a contact between the nodes and the matching "connection down"
+ * event ends it. Contacts that are still up at the end of the trace never
+ * end.
+ * </P>
+ */
+public class ContactPlan {
+	/** End time of contacts that never end */
+	public static final double NEVER = Double.MAX_VALUE;
+	/** initial capacity of the contact arrays of a pair */
+	private static final int PAIR_INIT_SIZE = 4;
+	/** how many events are read at once from a trace */
+	private static final int TRACE_PRELOAD = 10000;
+
+	/** pair index mapped by the pair's key (see {@link #getKey(int, int)}) */
+	private Map<Long, Integer> pairIndexes;
+	/** the nodes of the pairs */
+	private int[] pairA;
+	private int[] pairB;
+	/** start and end times of every pair's contacts (in time order) */
+	private double[][] starts;
+	private double[][] ends;
+	/** number of contacts of every pair */
+	private int[] nrofContacts;
+	private int nrofPairs;
+	/** indexes of the pairs of every node (indexed by node address) */
+	private int[][] nodePairs;
+	private int[] nrofNodePairs;
+	/** number of "connection up" events without a matching "down" event
+	 * per pair (there can be more than one interface per node) */
+	private int[] openCount;
+
+	/**
+	 * Constructor. Creates an empty contact plan.
+	 */
+	public ContactPlan() {
+		this.pairIndexes = new HashMap<Long, Integer>();
+		this.pairA = new int[16];
+		this.pairB = new int[16];
+		this.starts = new double[16][];
+		this.ends = new double[16][];
+		this.nrofContacts = new int[16];
+		this.openCount = new int[16];
+		this.nrofPairs = 0;
+		this.nodePairs = new int[16][];
+		this.nrofNodePairs = new int[16];
+	}
+
+	/**
+	 * Reads a contact plan from a connection trace file. Other than
+	 * connection events in the file are ignored.
+	 * @param filePath Path to the trace file
+	 * @return The contact plan
+	 */
+	public static ContactPlan readTrace(String filePath) {
+		ContactPlan plan = new ContactPlan();
+		ExternalEventsQueue queue =
+			new ExternalEventsQueue(filePath, TRACE_PRELOAD);
+
+		while (queue.nextEventsTime() != Double.MAX_VALUE) {
+			ExternalEvent ee = queue.nextEvent();
+			if (ee instanceof ConnectionEvent) {
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				plan.addConnectionEvent(ce.getFromAddress(), ce.getToAddress(),
+						ce.isUp(), ce.getTime());
+			}
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Adds a connection event to the plan. Events must be added in time
+	 * order.
+	 * @param a Address of the node at one end of the connection
+	 * @param b Address of the node at the other end of the connection
+	 * @param up True for a "connection up" event, false for "down"
+	 * @param time Time of the event
+	 */
+	public void addConnectionEvent(int a, int b, boolean up, double time) {
+		int p = getPairIndex(a, b);
+		if (up) {
+			if (openCount[p]++ == 0) {
+				addContact(p, time, NEVER);
+			}
+		}
+		else if (openCount[p] > 0 && --openCount[p] == 0) {
+			ends[p][nrofContacts[p] - 1] = time;
+		}
+	}
+
+	/**
+	 * Adds a contact to the plan. Contacts of a node pair must be added in
+	 * time order and they must not overlap.
+	 * @param a Address of the node at one end of the contact
+	 * @param b Address of the node at the other end of the contact
+	 * @param start Start time of the contact
+	 * @param end End time of the contact
+	 */
+	public void addContact(int a, int b, double start, double end) {
+		addContact(getPairIndex(a, b), start, end);
+	}
+
+	/**
+	 * Adds a contact for a pair
+	 */
+	private void addContact(int p, double start, double end) {
+		int n = nrofContacts[p];
+		assert n == 0 || ends[p][n - 1] <= start : "Overlapping contacts";
+		if (n == starts[p].length) {
+			starts[p] = Arrays.copyOf(starts[p], n * 2);
+			ends[p] = Arrays.copyOf(ends[p], n * 2);
+		}
+		starts[p][n] = start;
+		ends[p][n] = end;
+		nrofContacts[p]++;
+	}
+
+	/**
+	 * Returns the index of a node pair, creating the pair if necessary
+	 */
+	private int getPairIndex(int a, int b) {
+		Long key = getKey(a, b);
+		Integer index = pairIndexes.get(key);
+		if (index != null) {
+			return index;
+		}
+
+		int p = nrofPairs++;
+		if (p == pairA.length) {
+			int size = p * 2;
+			pairA = Arrays.copyOf(pairA, size);
+			pairB = Arrays.copyOf(pairB, size);
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			nrofContacts = Arrays.copyOf(nrofContacts, size);
+			openCount = Arrays.copyOf(openCount, size);
+		}
+		pairA[p] = a;
+		pairB[p] = b;
+		starts[p] = new double[PAIR_INIT_SIZE];
+		ends[p] = new double[PAIR_INIT_SIZE];
+		pairIndexes.put(key, p);
+		addNodePair(a, p);
+		addNodePair(b, p);
+		return p;
+	}
+
+	/**
+	 * Adds a pair to the pair list of a node
+	 */
+	private void addNodePair(int node, int p) {
+		if (node >= nodePairs.length) {
+			int size = Math.max(node + 1, nodePairs.length * 2);
+			nodePairs = Arrays.copyOf(nodePairs, size);
+			nrofNodePairs = Arrays.copyOf(nrofNodePairs, size);
+		}
+		if (nodePairs[node] == null) {
+			nodePairs[node] = new int[PAIR_INIT_SIZE];
+		}
+		else if (nrofNodePairs[node] == nodePairs[node].length) {
+			nodePairs[node] = Arrays.copyOf(nodePairs[node],
+					nrofNodePairs[node] * 2);
+		}
+		nodePairs[node][nrofNodePairs[node]++] = p;
+	}
+
+	/**
+	 * Returns a key for a node pair (same for both orders of the nodes)
+	 */
+	private static long getKey(int a, int b) {
+		return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+	}
+
+	/**
+	 * Returns the number of node addresses the plan has room for (all nodes
+	 * that have contacts have an address smaller than this)
+	 * @return the number of node addresses
+	 */
+	public int getNrofNodes() {
+		return this.nodePairs.length;
+	}
+
+	/**
+	 * Returns the number of node pairs a node has contacts with
+	 * @param node Address of the node
+	 * @return The number of pairs
+	 */
+	public int getNrofPairs(int node) {
+		return node < nrofNodePairs.length ? nrofNodePairs[node] : 0;
+	}
+
+	/**
+	 * Returns a pair of a node
+	 * @param node Address of the node
+	 * @param i Index of the pair (0 ... {@link #getNrofPairs(int)}-1)
+	 * @return The pair index
+	 */
+	public int getPair(int node, int i) {
+		return nodePairs[node][i];
+	}
+
+	/**
+	 * Returns the other node of a pair
+	 * @param p The pair index
+	 * @param node Address of one of the nodes of the pair
+	 * @return Address of the other node
+	 */
+	public int getOtherNode(int p, int node) {
+		return pairA[p] == node ? pairB[p] : pairA[p];
+	}
+
+	/**
+	 * Returns the index of the first contact of a pair that hasn't ended
+	 * at the given time
+	 * @param p The pair index
+	 * @param time The time
+	 * @return Index of the contact or -1 if all contacts have ended
+	 */
+	public int getNextContact(int p, double time) {
+		double[] e = ends[p];
+		int low = 0;
+		int high = nrofContacts[p];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (e[mid] <= time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low < nrofContacts[p] ? low : -1;
+	}
+
+	/**
+	 * Returns the start time of a contact
+	 * @param p The pair index
+	 * @param c The contact index
+	 * @return The start time
+	 */
+	public double getStart(int p, int c) {
+		return starts[p][c];
+	}
+
+	/**
+	 * Returns the end time of a contact
+	 * @param p The pair index
+	 * @param c The contact index
+	 * @return The end time (or {@link #NEVER})
+	 */
+	public double getEnd(int p, int c) {
+		return ends[p][c];
+	}
+}
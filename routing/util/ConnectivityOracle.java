@@ -0,0 +1,271 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Connection;
+import core.DTNHost;
+import core.DTNSim;
+
+/**
+ * Oracle that knows which hosts are currently (multi-hop) connected to each
+ * other, i.e., the connected components of the network. Meant for oracle
+ * style routers and reports; the users of the oracle tell it about the
+ * connections that go up and down (telling the same event more than once,
+ * e.g., from both ends of a connection, is harmless).
+ * <P>
+ * The components are kept in a union-find structure: a new connection joins
+ * two components in (almost) constant time. A connection going down may
+ * split a component, which can't be done incrementally; instead the
+ * structure is marked dirty and it is rebuilt from the current connections
+ * when it is queried the next time. The hosts of every component are also
+ * kept in a circular list so that the members of a component can be listed
+ * in time proportional to the size of the component.
+ * </P>
+ */
+public class ConnectivityOracle {
+	/** initial capacity (number of host addresses) of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+	private static ConnectivityOracle instance;
+
+	/** the connections that are up mapped to the host at one end */
+	private Map<Connection, DTNHost> connections;
+	/** the hosts that have had connections (indexed by address) */
+	private DTNHost[] hosts;
+	/** union-find parents of the hosts (indexed by address) */
+	private int[] parent;
+	/** sizes of the components (valid for the roots only) */
+	private int[] size;
+	/** next host in the circular list of a component's hosts */
+	private int[] next;
+	/** number of host addresses the arrays have room for */
+	private int capacity;
+	/** true if connections have gone down after the last rebuild */
+	private boolean dirty;
+
+	static {
+		DTNSim.registerForReset(ConnectivityOracle.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Returns the oracle of the current simulation run
+	 * @return the oracle
+	 */
+	public static ConnectivityOracle getInstance() {
+		if (instance == null) {
+			instance = new ConnectivityOracle();
+		}
+		return instance;
+	}
+
+	/**
+	 * Resets the oracle (for a new simulation run)
+	 */
+	public static void reset() {
+		instance = null;
+	}
+
+	/**
+	 * Private constructor; use {@link #getInstance()}
+	 */
+	private ConnectivityOracle() {
+		this.connections = new HashMap<Connection, DTNHost>();
+		this.hosts = new DTNHost[0];
+		this.parent = new int[0];
+		this.size = new int[0];
+		this.next = new int[0];
+		this.capacity = 0;
+		this.dirty = false;
+		ensureCapacity(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Informs the oracle that a connection went up
+	 * @param host The host at one end of the connection
+	 * @param con The connection
+	 */
+	public void connectionUp(DTNHost host, Connection con) {
+		if (this.connections.containsKey(con)) {
+			return; // already known
+		}
+		this.connections.put(con, host);
+		DTNHost other = con.getOtherNode(host);
+		addHost(host);
+		addHost(other);
+		if (!this.dirty) {
+			union(host.getAddress(), other.getAddress());
+		} /* else the connection is included in the next rebuild */
+	}
+
+	/**
+	 * Informs the oracle that a connection went down
+	 * @param host The host at one end of the connection
+	 * @param con The connection
+	 */
+	public void connectionDown(DTNHost host, Connection con) {
+		if (this.connections.remove(con) != null) {
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Returns true if there's a (multi-hop) path between the two hosts
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return true if the hosts are in the same component
+	 */
+	public boolean isConnected(DTNHost h1, DTNHost h2) {
+		if (h1 == h2) {
+			return true;
+		}
+		if (!isKnown(h1) || !isKnown(h2)) {
+			return false;
+		}
+		rebuildIfDirty();
+		return find(h1.getAddress()) == find(h2.getAddress());
+	}
+
+	/**
+	 * Returns the number of hosts in the component of a host
+	 * @param host The host
+	 * @return The size of the host's component (at least 1)
+	 */
+	public int getComponentSize(DTNHost host) {
+		if (!isKnown(host)) {
+			return 1;
+		}
+		rebuildIfDirty();
+		return this.size[find(host.getAddress())];
+	}
+
+	/**
+	 * Returns the hosts in the component of a host
+	 * @param host The host
+	 * @return A new list of the hosts in the component (including the host)
+	 */
+	public List<DTNHost> getComponent(DTNHost host) {
+		if (!isKnown(host)) {
+			List<DTNHost> single = new ArrayList<DTNHost>(1);
+			single.add(host);
+			return single;
+		}
+		rebuildIfDirty();
+		int first = host.getAddress();
+		List<DTNHost> members = new ArrayList<DTNHost>(this.size[find(first)]);
+		int i = first;
+		do {
+			members.add(this.hosts[i]);
+			i = this.next[i];
+		} while (i != first);
+		return members;
+	}
+
+	/**
+	 * Returns true if the host has had connections
+	 */
+	private boolean isKnown(DTNHost host) {
+		int address = host.getAddress();
+		return address < this.capacity && this.hosts[address] != null;
+	}
+
+	/**
+	 * Adds a host to the structure as a single host component (if the host
+	 * isn't known already)
+	 * @param host The host
+	 */
+	private void addHost(DTNHost host) {
+		int address = host.getAddress();
+		ensureCapacity(address + 1);
+		if (this.hosts[address] == null) {
+			this.hosts[address] = host;
+		}
+	}
+
+	/**
+	 * Makes sure the arrays have room for the given number of addresses.
+	 * New addresses are single host components.
+	 * @param newSize The number of addresses
+	 */
+	private void ensureCapacity(int newSize) {
+		if (newSize <= this.capacity) {
+			return;
+		}
+		int newCapacity = Math.max(newSize, this.capacity * 2);
+		this.hosts = Arrays.copyOf(this.hosts, newCapacity);
+		this.parent = Arrays.copyOf(this.parent, newCapacity);
+		this.size = Arrays.copyOf(this.size, newCapacity);
+		this.next = Arrays.copyOf(this.next, newCapacity);
+		for (int i = this.capacity; i < newCapacity; i++) {
+			this.parent[i] = i;
+			this.size[i] = 1;
+			this.next[i] = i;
+		}
+		this.capacity = newCapacity;
+	}
+
+	/**
+	 * Rebuilds the components from the current connections if connections
+	 * have gone down since the last rebuild
+	 */
+	private void rebuildIfDirty() {
+		if (!this.dirty) {
+			return;
+		}
+		for (int i = 0; i < this.capacity; i++) {
+			this.parent[i] = i;
+			this.size[i] = 1;
+			this.next[i] = i;
+		}
+		this.dirty = false;
+		for (Map.Entry<Connection, DTNHost> e : this.connections.entrySet()) {
+			DTNHost host = e.getValue();
+			DTNHost other = e.getKey().getOtherNode(host);
+			union(host.getAddress(), other.getAddress());
+		}
+	}
+
+	/**
+	 * Returns the root of a host's component
+	 * @param address Address of the host
+	 * @return Address of the root
+	 */
+	private int find(int address) {
+		while (this.parent[address] != address) {
+			this.parent[address] = this.parent[this.parent[address]];
+			address = this.parent[address];
+		}
+		return address;
+	}
+
+	/**
+	 * Joins the components of two hosts
+	 * @param a Address of the first host
+	 * @param b Address of the second host
+	 */
+	private void union(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+		if (ra == rb) {
+			return;
+		}
+		if (this.size[ra] < this.size[rb]) {
+			int tmp = ra;
+			ra = rb;
+			rb = tmp;
+		}
+		this.parent[rb] = ra;
+		this.size[ra] += this.size[rb];
+		/* splice the circular member lists together */
+		int tmp = this.next[ra];
+		this.next[ra] = this.next[rb];
+		this.next[rb] = tmp;
+	}
+}
@@ -5,6 +5,7 @@
 package routing.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 
 import util.Range;
 import util.Tuple;
@@ -40,6 +41,11 @@ import core.Settings;
  * or matches to message's hop count, transfer is accepted.  Otherwise transfer
  * is denied.
  * </P>
+ * <P>The address lists and hop count conditions are compiled into bitmaps of
+ * the accepted addresses and hop counts (that grow as bigger values are
+ * checked), so checking a message takes only a few bitmap lookups. Only the
+ * MCB conditions, whose values change during the simulation, are evaluated
+ * for every check.</P>
  * @author Ari
  */
 public class MessageTransferAcceptPolicy {
@@ -112,12 +118,12 @@ public class MessageTransferAcceptPolicy {
 	private ArrayList<Tuple<String,ArithmeticCondition>> recvConditions = null;
 	private ArrayList<Tuple<String,ArithmeticCondition>> sendConditions = null;
 	
-	private Range[] toSendPolicy = null;
-	private Range[] fromSendPolicy = null;
-	private Range[] toReceivePolicy = null;
-	private Range[] fromReceivePolicy = null;
-	private ArithmeticCondition hopCountSendPolicy = null;
-	private ArithmeticCondition hopCountReceivePolicy = null;
+	private AddressPolicy toSendPolicy = null;
+	private AddressPolicy fromSendPolicy = null;
+	private AddressPolicy toReceivePolicy = null;
+	private AddressPolicy fromReceivePolicy = null;
+	private CompiledPredicate hopCountSendPolicy = null;
+	private CompiledPredicate hopCountReceivePolicy = null;
 	
 	public MessageTransferAcceptPolicy(Settings nsSettings) {
 		Settings s;
@@ -130,22 +136,28 @@ public class MessageTransferAcceptPolicy {
 		addMCBCs(s);
 				
 		if (s.contains(TO_SPOLICY_S)) {
-			this.toSendPolicy = s.getCsvRanges(TO_SPOLICY_S);
+			this.toSendPolicy = 
+				new AddressPolicy(s.getCsvRanges(TO_SPOLICY_S));
 		}
 		if (s.contains(FROM_SPOLICY_S)) {
-			this.fromSendPolicy = s.getCsvRanges(FROM_SPOLICY_S);			
+			this.fromSendPolicy = 
+				new AddressPolicy(s.getCsvRanges(FROM_SPOLICY_S));			
 		}
 		if (s.contains(TO_RPOLICY_S)) {
-			this.toReceivePolicy = s.getCsvRanges(TO_RPOLICY_S);
+			this.toReceivePolicy = 
+				new AddressPolicy(s.getCsvRanges(TO_RPOLICY_S));
 		}
 		if (s.contains(FROM_RPOLICY_S)) {
-			this.fromReceivePolicy = s.getCsvRanges(FROM_RPOLICY_S);			
+			this.fromReceivePolicy = 
+				new AddressPolicy(s.getCsvRanges(FROM_RPOLICY_S));			
 		}
 		if (s.contains(HOPCOUNT_SPOLICY_S)) {
-			hopCountSendPolicy = s.getCondition(HOPCOUNT_SPOLICY_S);
+			hopCountSendPolicy = 
+				new HopCountPolicy(s.getCondition(HOPCOUNT_SPOLICY_S));
 		}
 		if (s.contains(HOPCOUNT_RPOLICY_S)) {
-			hopCountReceivePolicy = s.getCondition(HOPCOUNT_RPOLICY_S);
+			hopCountReceivePolicy = 
+				new HopCountPolicy(s.getCondition(HOPCOUNT_RPOLICY_S));
 		}
 	}
 	
@@ -229,36 +241,24 @@ public class MessageTransferAcceptPolicy {
 	 * @return True if the address was in the policy list, or the policy list
 	 * was null
 	 */
-	private boolean checkSimplePolicy(DTNHost host, Range [] policy, 
+	private boolean checkSimplePolicy(DTNHost host, AddressPolicy policy, 
 			int thisHost) {
-		int address;
-		
 		if (policy == null) {
 			return true;
 		}
 		
-		address = host.getAddress();
-		
-		for (Range r : policy) {
-			if (r.isInRange(TO_ME_VALUE) && address == thisHost) {
-				return true;
-			}
-			 else if (r.isInRange(address)) {
-				return true;
-			}
-		}
-		return false;
+		return policy.accepts(host.getAddress(), thisHost);
 	}
 	
 	/**
 	 * Checks the given messages hop count against the given policy arithmetic 
 	 * condition
 	 * @param m The message whose hop count is checked
-	 * @param ac The policy arithmetic condition
+	 * @param ac The compiled policy arithmetic condition
 	 * @return True if the condition is null or the hop count matches to the
 	 * condition, false otherwise 
 	 */
-	private boolean checkHopCountPolicy(Message m, ArithmeticCondition ac) {
+	private boolean checkHopCountPolicy(Message m, CompiledPredicate ac) {
 		if (ac == null) {
 			return true;
 		} else {
@@ -322,4 +322,110 @@ public class MessageTransferAcceptPolicy {
 		return true;
 	}
 	
+	/**
+	 * Integer predicate whose values are evaluated only once and cached in a
+	 * bitmap. The bitmap is grown (to at least double size) when a value
+	 * outside of it is checked.
+	 */
+	private static abstract class CompiledPredicate {
+		/** values that have been evaluated true */
+		private final BitSet accepted = new BitSet();
+		/** values smaller than this have been evaluated */
+		private int compiledSize = 0;
+		
+		/**
+		 * Returns the (cached) value of the predicate
+		 * @param value The value to check
+		 * @return The value of the predicate for the value
+		 */
+		public boolean isTrueFor(int value) {
+			if (value < 0) {
+				return evaluate(value); /* not cached */
+			}
+			if (value >= compiledSize) {
+				compile(Math.max(value + 1, compiledSize * 2));
+			}
+			return accepted.get(value);
+		}
+		
+		/**
+		 * Evaluates the predicate for all the values that aren't cached yet
+		 * and are smaller than the new size
+		 * @param newSize The new size of the cache
+		 */
+		private void compile(int newSize) {
+			for (int i = compiledSize; i < newSize; i++) {
+				if (evaluate(i)) {
+					accepted.set(i);
+				}
+			}
+			compiledSize = newSize;
+		}
+		
+		/**
+		 * Evaluates the predicate
+		 * @param value The value to evaluate the predicate for
+		 * @return The value of the predicate
+		 */
+		protected abstract boolean evaluate(int value);
+	}
+	
+	/**
+	 * Compiled hop count condition
+	 */
+	private static class HopCountPolicy extends CompiledPredicate {
+		private final ArithmeticCondition condition;
+		
+		public HopCountPolicy(ArithmeticCondition condition) {
+			this.condition = condition;
+		}
+		
+		@Override
+		protected boolean evaluate(int value) {
+			return condition.isTrueFor(value);
+		}
+	}
+	
+	/**
+	 * Compiled simple policy address list. Addresses in the ranges are kept
+	 * in a bitmap, and {@value #TO_ME_VALUE} in the list (which accepts the
+	 * host using the policy) is checked separately.
+	 */
+	private static class AddressPolicy extends CompiledPredicate {
+		private final Range[] ranges;
+		/** does the list contain {@value #TO_ME_VALUE} */
+		private final boolean acceptsMe;
+		
+		public AddressPolicy(Range[] ranges) {
+			this.ranges = ranges;
+			boolean me = false;
+			for (Range r : ranges) {
+				if (r.isInRange(TO_ME_VALUE)) {
+					me = true;
+				}
+			}
+			this.acceptsMe = me;
+		}
+		
+		/**
+		 * Returns true if the policy accepts the address
+		 * @param address The address to check
+		 * @param thisHost The address of the host using the policy
+		 * @return True if the address is accepted
+		 */
+		public boolean accepts(int address, int thisHost) {
+			return (acceptsMe && address == thisHost) || isTrueFor(address);
+		}
+		
+		@Override
+		protected boolean evaluate(int value) {
+			for (Range r : ranges) {
+				if (r.isInRange(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
 }
\ No newline at end of file
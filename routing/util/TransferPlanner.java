@@ -0,0 +1,400 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import routing.ActiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Contact duration aware transfer planner. Estimates how long a connection
+ * will still stay up from the current locations and velocities of the two
+ * hosts and the transmit range, and how many bytes can be sent during that
+ * time. Messages that wouldn't make it through before the connection breaks
+ * aren't sent at all (their transfer would just be aborted), and from the
+ * messages that do fit, the most valuable set is chosen (a 0-1 knapsack
+ * problem). By default the messages that are earlier in the send queue are
+ * worth more; optionally the router utility (see
+ * {@link ActiveRouter#getMessageUtility(Message)}) is used instead.
+ * <P>
+ * The estimate assumes that both hosts keep moving to the same direction
+ * with the same speed; hosts that don't move relative to each other stay
+ * connected forever.
+ * </P>
+ * <P>
+ * Every router has its own planner that keeps the plan of each connection
+ * until it is used or the router gets new messages, so the knapsack isn't
+ * solved again on every update. The byte budget of
+ * a connection is computed at most once per simulation time instant.
+ * </P>
+ */
+public class TransferPlanner {
+	/** Transfer planning -setting id ({@value}). Boolean valued. If set to
+	 * true, the router uses a transfer planner. Default=false. */
+	public static final String TRANSFER_PLANNING_S = "transferPlanning";
+	/** Planning margin -setting id ({@value}). The portion (0-1] of the
+	 * estimated remaining contact that is planned to be used for sending.
+	 * Default={@value #DEFAULT_MARGIN}. */
+	public static final String PLANNING_MARGIN_S = "planningMargin";
+	/** Default value for the planning margin */
+	public static final double DEFAULT_MARGIN = 0.9;
+	/** Planning by utility -setting id ({@value}). Boolean valued. If set to
+	 * true, the planned messages are chosen by the router's message utility
+	 * instead of the send queue order. Default=false. */
+	public static final String PLANNING_UTILITY_S = "planningUtility";
+
+	/** number of capacity units the byte budget is divided into when
+	 * solving the knapsack problem */
+	private static final int KNAPSACK_UNITS = 128;
+
+	private final double margin;
+	private final boolean useUtility;
+
+	/** the current plans of the connections */
+	private Map<Connection, List<Message>> plans;
+	/** the messages that couldn't be sent over the connections during the
+	 * current contacts */
+	private Map<Connection, Set<Message>> refused;
+	/** the connection, time and value of the latest byte budget */
+	private Connection budgetCon;
+	private double budgetTime;
+	private long budget;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object (of the router)
+	 */
+	public TransferPlanner(Settings s) {
+		this.margin = s.getDouble(PLANNING_MARGIN_S, DEFAULT_MARGIN);
+		if (this.margin <= 0 || this.margin > 1) {
+			throw new SettingsError(PLANNING_MARGIN_S + " must be in " +
+					"range (0, 1]");
+		}
+		this.useUtility = s.getBoolean(PLANNING_UTILITY_S, false);
+		this.plans = new HashMap<Connection, List<Message>>();
+		this.refused = new HashMap<Connection, Set<Message>>();
+	}
+
+	/**
+	 * Copy constructor. Creates a planner with the same settings and no
+	 * plans.
+	 * @param proto The prototype planner
+	 */
+	protected TransferPlanner(TransferPlanner proto) {
+		this.margin = proto.margin;
+		this.useUtility = proto.useUtility;
+		this.plans = new HashMap<Connection, List<Message>>();
+		this.refused = new HashMap<Connection, Set<Message>>();
+	}
+
+	/**
+	 * Creates a replicate of this planner (for another router)
+	 * @return The replicate
+	 */
+	public TransferPlanner replicate() {
+		return new TransferPlanner(this);
+	}
+
+	/**
+	 * Estimates how long a connection will still be up
+	 * @param host The host at one end of the connection
+	 * @param con The connection
+	 * @return The estimated time (seconds) or Double.MAX_VALUE if the hosts
+	 * aren't moving away from each other
+	 */
+	public static double getContactWindow(DTNHost host, Connection con) {
+		DTNHost other = con.getOtherNode(host);
+		NetworkInterface ni = getInterface(host, con);
+		if (ni == null) {
+			return 0; // connection is not up anymore
+		}
+		double range = Math.min(ni.getTransmitRange(),
+				con.getOtherInterface(ni).getTransmitRange());
+
+		return getContactWindow(host.getLocation(), host.getVelocity(),
+				other.getLocation(), other.getVelocity(), range);
+	}
+
+	/**
+	 * Estimates how long two hosts moving with constant velocities stay
+	 * within the given range of each other
+	 * @param l1 Location of the first host
+	 * @param v1 Velocity of the first host
+	 * @param l2 Location of the second host
+	 * @param v2 Velocity of the second host
+	 * @param range The range
+	 * @return The time (seconds) until the hosts are out of range, 0 if they
+	 * already are or Double.MAX_VALUE if they don't move relative to each
+	 * other
+	 */
+	public static double getContactWindow(Coord l1, Coord v1, Coord l2,
+			Coord v2, double range) {
+		double rx = l2.getX() - l1.getX();
+		double ry = l2.getY() - l1.getY();
+		double vx = v2.getX() - v1.getX();
+		double vy = v2.getY() - v1.getY();
+
+		/* solve |r + v*t| = range for t */
+		double a = vx * vx + vy * vy;
+		if (a == 0) {
+			return Double.MAX_VALUE;
+		}
+		double b = 2 * (rx * vx + ry * vy);
+		double c = rx * rx + ry * ry - range * range;
+		double disc = b * b - 4 * a * c;
+		if (disc < 0) {
+			return 0; // already out of range
+		}
+		return Math.max(0, (-b + Math.sqrt(disc)) / (2 * a));
+	}
+
+	/**
+	 * Returns the host's network interface that the connection uses
+	 */
+	private static NetworkInterface getInterface(DTNHost host,
+			Connection con) {
+		for (NetworkInterface ni : host.getInterfaces()) {
+			if (ni.getConnections().contains(con)) {
+				return ni;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of bytes that can be sent over a connection before
+	 * it (probably) breaks
+	 * @param host The sending host
+	 * @param con The connection
+	 * @return The number of bytes (Long.MAX_VALUE if no limit is known)
+	 */
+	public long getByteBudget(DTNHost host, Connection con) {
+		double now = SimClock.getTime();
+		if (con == this.budgetCon && now == this.budgetTime) {
+			return this.budget;
+		}
+
+		double window = getContactWindow(host, con);
+		double bytes = window * this.margin * con.getSpeed();
+		this.budgetCon = con;
+		this.budgetTime = now;
+		this.budget = (window == Double.MAX_VALUE || bytes >= Long.MAX_VALUE ?
+				Long.MAX_VALUE : (long)bytes);
+		return this.budget;
+	}
+
+	/**
+	 * Returns true if a message can (probably) be sent over a connection
+	 * before the connection breaks
+	 * @param host The sending host
+	 * @param con The connection
+	 * @param m The message
+	 * @return true if the message fits in the remaining contact
+	 */
+	public boolean fits(DTNHost host, Connection con, Message m) {
+		return m.getSize() <= getByteBudget(host, con);
+	}
+
+	/**
+	 * Returns the plan of a connection: the messages to send over the
+	 * connection in sending order. A new plan is made from the send queue
+	 * (see {@link #plan(ActiveRouter, DTNHost, Connection, Collection)}) if
+	 * the connection has no current plan or all of it is used; the caller
+	 * removes the messages it has sent from the returned list and tells
+	 * about the refused ones with {@link #refused(Connection, Message)}.
+	 * @param router The sending router
+	 * @param host The sending host
+	 * @param con The connection
+	 * @param queue The send queue of the connection
+	 * @return The current plan of the connection
+	 */
+	public List<Message> getPlan(ActiveRouter router, DTNHost host,
+			Connection con, Collection<Message> queue) {
+		List<Message> plan = this.plans.get(con);
+		if (plan == null || plan.isEmpty()) {
+			plan = plan(router, host, con, queue);
+			this.plans.put(con, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Informs the planner that a planned message can't be sent over a
+	 * connection (it doesn't fit in the contact anymore or the peer refused
+	 * it). The message is removed from the plan and isn't planned for the
+	 * connection again during the contact.
+	 * @param con The connection
+	 * @param m The refused message
+	 */
+	public void refused(Connection con, Message m) {
+		List<Message> plan = this.plans.get(con);
+		if (plan != null) {
+			plan.remove(m);
+		}
+		Set<Message> set = this.refused.get(con);
+		if (set == null) {
+			set = new HashSet<Message>();
+			this.refused.put(con, set);
+		}
+		set.add(m);
+	}
+
+	/**
+	 * Informs the planner that the router got a new message. The plans are
+	 * remade when they are needed next time.
+	 * @param m The new message
+	 */
+	public void messageAdded(Message m) {
+		this.plans.clear();
+	}
+
+	/**
+	 * Informs the planner that a message was removed from the router
+	 * @param m The removed message
+	 */
+	public void messageRemoved(Message m) {
+		for (List<Message> plan : this.plans.values()) {
+			plan.remove(m);
+		}
+		for (Set<Message> set : this.refused.values()) {
+			set.remove(m);
+		}
+	}
+
+	/**
+	 * Forgets the plan of a connection that went down
+	 * @param con The connection
+	 */
+	public void connectionDown(Connection con) {
+		this.plans.remove(con);
+		this.refused.remove(con);
+		if (con == this.budgetCon) {
+			this.budgetCon = null;
+		}
+	}
+
+	/**
+	 * Forgets the plans of the connections that are not in the given
+	 * collection
+	 * @param connections The live connections
+	 */
+	public void retainConnections(Collection<Connection> connections) {
+		this.plans.keySet().retainAll(connections);
+		this.refused.keySet().retainAll(connections);
+		if (!connections.contains(this.budgetCon)) {
+			this.budgetCon = null;
+		}
+	}
+
+	/**
+	 * Plans which messages to send over a connection: the most valuable set
+	 * of messages that fits in the byte budget of the connection (see
+	 * {@link #choose(long, long[], double[])}). The messages are valued by
+	 * their order in the given collection (earlier is worth more) or, if
+	 * the planner uses the utility, by the router's message utility. The
+	 * messages refused during the contact aren't planned.
+	 * @param router The sending router
+	 * @param host The sending host
+	 * @param con The connection
+	 * @param messages The messages to choose from (in sending order)
+	 * @return The chosen messages in the same order as they were given
+	 */
+	public List<Message> plan(ActiveRouter router, DTNHost host,
+			Connection con, Collection<Message> messages) {
+		long budget = getByteBudget(host, con);
+		Set<Message> refusedMsgs = this.refused.get(con);
+		List<Message> candidates = new ArrayList<Message>(messages.size());
+		long total = 0;
+		for (Message m : messages) {
+			if (m.getSize() <= budget &&
+					(refusedMsgs == null || !refusedMsgs.contains(m))) {
+				candidates.add(m);
+				total += m.getSize();
+			}
+		}
+		if (total <= budget) {
+			return candidates; // everything that fits alone fits together
+		}
+
+		int n = candidates.size();
+		long[] sizes = new long[n];
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++) {
+			Message m = candidates.get(i);
+			sizes[i] = m.getSize();
+			values[i] = (this.useUtility ? router.getMessageUtility(m) : n - i);
+		}
+
+		boolean[] chosen = choose(budget, sizes, values);
+		List<Message> planned = new ArrayList<Message>();
+		for (int i = 0; i < n; i++) {
+			if (chosen[i]) {
+				planned.add(candidates.get(i));
+			}
+		}
+		return planned;
+	}
+
+	/**
+	 * Chooses the set of items with the biggest total value that fits in
+	 * the budget (0-1 knapsack). The problem is solved with dynamic
+	 * programming over a budget that is divided into
+	 * {@value #KNAPSACK_UNITS} units; the sizes are rounded up to whole
+	 * units so the chosen set always fits. The values are shifted so that
+	 * every item is worth something.
+	 * @param budget The budget
+	 * @param sizes Sizes of the items (each at most the budget)
+	 * @param values Values of the items
+	 * @return Which items are chosen
+	 */
+	public static boolean[] choose(long budget, long[] sizes,
+			double[] values) {
+		int n = sizes.length;
+		long unit = Math.max(1, (budget + KNAPSACK_UNITS - 1) / KNAPSACK_UNITS);
+		int capacity = (int)(budget / unit);
+		int[] weights = new int[n];
+		double minValue = Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			weights[i] = (int)((sizes[i] + unit - 1) / unit);
+			minValue = Math.min(minValue, values[i]);
+		}
+
+		double[] best = new double[capacity + 1];
+		boolean[][] taken = new boolean[n][capacity + 1];
+		for (int i = 0; i < n; i++) {
+			double value = values[i] - minValue + 1;
+			for (int w = capacity; w >= weights[i]; w--) {
+				double v = best[w - weights[i]] + value;
+				if (v > best[w]) {
+					best[w] = v;
+					taken[i][w] = true;
+				}
+			}
+		}
+
+		boolean[] chosen = new boolean[n];
+		for (int i = n - 1, w = capacity; i >= 0; i--) {
+			if (taken[i][w]) {
+				chosen[i] = true;
+				w -= weights[i];
+			}
+		}
+		return chosen;
+	}
+}
@@ -45,10 +45,29 @@ public class AllTests {
 		suite.addTestSuite(PointsOfInterestTest.class);
 		suite.addTestSuite(ActivenessHandlerTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
+		suite.addTestSuite(MaxPropCostGraphTest.class);
+		suite.addTestSuite(HopCountHistogramTest.class);
+		suite.addTestSuite(ConnectivityOracleTest.class);
+		suite.addTestSuite(ContactGraphRoutesTest.class);
+		suite.addTestSuite(ContentCatalogTest.class);
+		suite.addTestSuite(ContentStoreTest.class);
+		suite.addTestSuite(PendingInterestTableTest.class);
+		suite.addTestSuite(DistanceTableTest.class);
+		suite.addTestSuite(BloomFilterTest.class);
+		suite.addTestSuite(NameTreeTest.class);
+		suite.addTestSuite(ChunkRetrievalTest.class);
+		suite.addTestSuite(CachingStrategyTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(EvictionPolicyTest.class);
+		suite.addTestSuite(TimerWheelTest.class);
+		suite.addTestSuite(DeliveryPredictabilitiesTest.class);
+		suite.addTestSuite(TransferPlannerTest.class);
+		suite.addTestSuite(MessageTransferAcceptPolicyTest.class);
+		suite.addTestSuite(NDDRRouterTest.class);
+		suite.addTestSuite(ApplicationTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.MessageRouter;
+import core.Application;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+
+/**
+ * Tests for the application update scheduling, message type subscriptions
+ * and the dispatching of messages to the applications by the router.
+ */
+public class ApplicationTest extends TestCase {
+	private static final String APP_ID = "testApp";
+
+	private SimClock clock;
+	private DTNHost h0;
+	private DTNHost h1;
+	private MessageRouter r1;
+
+	/**
+	 * Application that counts its updates and records the messages it
+	 * handles
+	 */
+	private static class CountingApp extends Application {
+		private int nrofUpdates = 0;
+		private List<String> handled = new ArrayList<String>();
+
+		public CountingApp(String appId, String... types) {
+			setAppID(appId);
+			for (String type : types) {
+				subscribe(type);
+			}
+		}
+
+		@Override
+		public Message handle(Message msg, DTNHost host) {
+			this.handled.add(msg.getId());
+			return msg;
+		}
+
+		@Override
+		public void update(DTNHost host) {
+			this.nrofUpdates++;
+		}
+
+		@Override
+		public Application replicate() {
+			return this;
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		r1 = h1.getRouter();
+	}
+
+	/**
+	 * Transfers a message of the given type from h0 to h1
+	 */
+	private void transfer(String id, String type) {
+		Message m = new Message(h0, h1, id, 1);
+		m.setAppID(APP_ID);
+		m.addProperty(Application.TYPE_PROPERTY, type);
+		r1.receiveMessage(m, h0);
+		r1.messageTransferred(id, h0);
+	}
+
+	public void testUpdatedEveryCycle() {
+		CountingApp app = new CountingApp(APP_ID);
+		r1.addApplication(app);
+		r1.update();
+		clock.advance(1);
+		r1.update();
+		assertEquals(2, app.nrofUpdates);
+	}
+
+	public void testNextUpdate() {
+		CountingApp app = new CountingApp(APP_ID);
+		r1.addApplication(app);
+		app.setNextUpdate(10);
+
+		r1.update();
+		clock.advance(9.9);
+		r1.update();
+		assertEquals(0, app.nrofUpdates);
+
+		clock.advance(0.1);
+		r1.update();
+		clock.advance(1);
+		r1.update();
+		assertEquals(2, app.nrofUpdates);
+	}
+
+	public void testNeverUpdated() {
+		CountingApp app = new CountingApp(APP_ID);
+		CountingApp other = new CountingApp(APP_ID);
+		r1.addApplication(app);
+		r1.addApplication(other);
+		app.setNextUpdate(Application.NEVER);
+
+		for (int i = 0; i < 10; i++) {
+			r1.update();
+			clock.advance(1000);
+		}
+		assertEquals(0, app.nrofUpdates);
+		assertEquals(10, other.nrofUpdates);
+	}
+
+	public void testSubscriptions() {
+		CountingApp ping = new CountingApp(APP_ID, "ping");
+		CountingApp pingPong = new CountingApp(APP_ID, "ping", "pong");
+		CountingApp all = new CountingApp(APP_ID);
+		r1.addApplication(ping);
+		r1.addApplication(pingPong);
+		r1.addApplication(all);
+
+		transfer("M1", "ping");
+		transfer("M2", "pong");
+		transfer("M3", "other");
+		transfer("M4", null);
+
+		assertEquals(Arrays.asList("M1"), ping.handled);
+		assertEquals(Arrays.asList("M1", "M2"), pingPong.handled);
+		assertEquals(Arrays.asList("M1", "M2", "M3", "M4"), all.handled);
+	}
+
+	public void testGetApplications() {
+		CountingApp a1 = new CountingApp(APP_ID);
+		CountingApp a2 = new CountingApp(APP_ID);
+		CountingApp any = new CountingApp(null);
+		CountingApp b = new CountingApp("otherApp");
+
+		assertTrue(r1.getApplications(APP_ID).isEmpty());
+		assertTrue(r1.getApplications(null).isEmpty());
+
+		r1.addApplication(a1);
+		r1.addApplication(any);
+		r1.addApplication(a2);
+		r1.addApplication(b);
+
+		assertEquals(Arrays.asList(a1, a2, any),
+				new ArrayList<Application>(r1.getApplications(APP_ID)));
+		assertEquals(Arrays.asList(b, any),
+				new ArrayList<Application>(r1.getApplications("otherApp")));
+		/* IDs without own applications get only the catch-all ones */
+		assertEquals(Arrays.asList(any),
+				new ArrayList<Application>(r1.getApplications("noApps")));
+		assertEquals(Arrays.asList(any),
+				new ArrayList<Application>(r1.getApplications(null)));
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import util.BloomFilter;
+
+/**
+ * Tests for the Bloom filter.
+ */
+public class BloomFilterTest extends TestCase {
+
+	public void testNoFalseNegatives() {
+		BloomFilter f = new BloomFilter(1000, 0.01);
+		for (int key = 0; key < 3000; key += 3) {
+			f.add(key);
+		}
+		for (int key = 0; key < 3000; key += 3) {
+			assertTrue(f.mightContain(key));
+		}
+	}
+
+	public void testFalsePositiveRate() {
+		BloomFilter f = new BloomFilter(1000, 0.01);
+		for (int key = 0; key < 1000; key++) {
+			f.add(key);
+		}
+		int falsePositives = 0;
+		for (int key = 1000; key < 101000; key++) {
+			if (f.mightContain(key)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("" + falsePositives, falsePositives < 2000);
+		assertEquals(7, f.getNrofHashes());
+	}
+
+	public void testSize() {
+		BloomFilter f = new BloomFilter(0, 0.01);
+		assertEquals(8, f.getSizeInBytes());
+		assertFalse(f.mightContain(0));
+		f = new BloomFilter(1000, 0.01);
+		assertEquals(9600 / 8, f.getSizeInBytes()); // 9586 bits rounded up
+	}
+}
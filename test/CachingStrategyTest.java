@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.nddr.BetweennessCaching;
+import routing.nddr.CachingStrategy;
+import routing.nddr.FixedProbCaching;
+import routing.nddr.LcdCaching;
+import routing.nddr.LceCaching;
+import routing.nddr.ProbCacheCaching;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the NDDR caching strategies.
+ */
+public class CachingStrategyTest extends TestCase {
+	private TestSettings ts;
+	private DTNHost h0, h1, h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	/**
+	 * Creates a strategy for a host from a prototype
+	 */
+	private static CachingStrategy create(CachingStrategy proto,
+			DTNHost host) {
+		CachingStrategy cs = proto.replicate();
+		cs.init(host);
+		return cs;
+	}
+
+	/**
+	 * Creates a Data message created by the source that has traveled the
+	 * given hosts
+	 */
+	private static Message data(DTNHost source, DTNHost... path) {
+		Message m = new Message(source, null, "D", 100);
+		for (DTNHost h : path) {
+			m.addNodeOnPath(h);
+		}
+		return m;
+	}
+
+	public void testLce() {
+		CachingStrategy lce = create(new LceCaching(ts), h1);
+		assertTrue(lce.shouldCache(data(h0, h1), 3));
+		assertTrue(lce.shouldCache(data(h0, h2, h1), CachingStrategy.UNKNOWN));
+		assertEquals(2, lce.getNrofAdmissions());
+	}
+
+	public void testLcd() {
+		CachingStrategy lcd = create(new LcdCaching(ts), h2);
+		assertTrue(lcd.shouldCache(data(h0, h2), 1));
+		assertFalse(lcd.shouldCache(data(h0, h1, h2), 1));
+		assertEquals(2, lcd.getNrofDecisions());
+		assertEquals(1, lcd.getNrofAdmissions());
+	}
+
+	public void testFixedProb() {
+		ts.putSetting(FixedProbCaching.CACHING_PROB_S, "0.3");
+		CachingStrategy fp = create(new FixedProbCaching(ts), h1);
+		for (int i = 0; i < 10000; i++) {
+			fp.shouldCache(data(h0, h1), 1);
+		}
+		assertEquals(0.3, fp.getNrofAdmissions() / 10000.0, 0.02);
+
+		ts.putSetting(FixedProbCaching.CACHING_PROB_S, "0");
+		fp = create(new FixedProbCaching(ts), h1);
+		for (int i = 0; i < 100; i++) {
+			assertFalse(fp.shouldCache(data(h0, h1), 1));
+		}
+	}
+
+	public void testProbCache() {
+		ts.putSetting(ProbCacheCaching.TIME_WINDOW_S, "5");
+		ProbCacheCaching pc = new ProbCacheCaching(ts);
+
+		/* a 4 hop path: the probability grows towards the consumer */
+		assertEquals(4 / 5.0 * 1 / 4, pc.getProbability(1, 3), 0.0001);
+		assertEquals(3 / 5.0 * 2 / 4, pc.getProbability(2, 2), 0.0001);
+		assertEquals(2 / 5.0 * 3 / 4, pc.getProbability(3, 1), 0.0001);
+		assertTrue(pc.getProbability(3, 1) > pc.getProbability(1, 3));
+		/* unknown distance: the rest of the path is as long */
+		assertEquals(pc.getProbability(2, 2),
+				pc.getProbability(2, CachingStrategy.UNKNOWN), 0.0001);
+
+		CachingStrategy s1 = create(pc, h1);
+		CachingStrategy s2 = create(pc, h1);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(s1.shouldCache(data(h0, h1), 3),
+					s2.shouldCache(data(h0, h1), 3));
+		}
+	}
+
+	public void testBetweenness() {
+		BetweennessCaching proto = new BetweennessCaching(ts);
+		BetweennessCaching b0 = (BetweennessCaching)create(proto, h0);
+		BetweennessCaching b1 = (BetweennessCaching)create(proto, h1);
+		BetweennessCaching b2 = (BetweennessCaching)create(proto, h2);
+		for (int i = 0; i < 5; i++) {
+			b0.contactUp(h1);
+			b1.contactUp(h0);
+		}
+		b1.contactUp(h2);
+		b2.contactUp(h1);
+		assertEquals(6, b1.getNrofEncounters());
+
+		/* h1 is more central than the source, h2 is less central than h1 */
+		Message m = data(h0, h1);
+		b0.dataCreated(m);
+		assertTrue(b1.shouldCache(m, 1));
+		m.addNodeOnPath(h2);
+		assertFalse(b2.shouldCache(m, 0));
+
+		/* h0 is less central than h1 */
+		m = data(h1, h0);
+		b1.dataCreated(m);
+		assertFalse(b0.shouldCache(m, 0));
+	}
+}
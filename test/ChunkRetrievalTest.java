@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.nddr.ChunkRetrieval;
+
+/**
+ * Tests for the chunked retrievals of NDDR.
+ */
+public class ChunkRetrievalTest extends TestCase {
+
+	private static void assertChunks(int[] expected, int[] chunks) {
+		assertEquals(expected.length, chunks.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], chunks[i]);
+		}
+	}
+
+	public void testWindow() {
+		ChunkRetrieval r = new ChunkRetrieval(5, 6, 600, 10);
+		assertChunks(new int[] {0, 1, 2}, r.getNextRequests(3, 10));
+		for (int c = 0; c < 3; c++) {
+			r.requested(c, 100);
+		}
+		assertChunks(new int[0], r.getNextRequests(3, 20));
+
+		assertTrue(r.received(1, 30));
+		assertFalse(r.received(1, 31));
+		assertChunks(new int[] {3}, r.getNextRequests(3, 30));
+		r.requested(3, 100);
+		assertEquals(1, r.getNrofReceived());
+		assertFalse(r.isComplete());
+	}
+
+	public void testResume() {
+		ChunkRetrieval r = new ChunkRetrieval(5, 4, 400, 0);
+		r.requested(0, 50);
+		r.requested(1, 50);
+		assertTrue(r.received(0, 10));
+		/* Interest of chunk 1 expired: continue from the missing chunks */
+		assertChunks(new int[] {1, 2}, r.getNextRequests(2, 60));
+		r.requested(1, 200);
+		r.requested(2, 200);
+
+		assertTrue(r.received(2, 70));
+		assertTrue(r.received(1, 80));
+		assertTrue(r.received(3, 90));
+		assertTrue(r.isComplete());
+		assertEquals(90.0, r.getCompletionTime());
+		assertChunks(new int[0], r.getNextRequests(2, 100));
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.ConnectivityOracle;
+import core.CBRConnection;
+import core.Connection;
+import core.DTNHost;
+
+/**
+ * Tests for the connected components oracle.
+ */
+public class ConnectivityOracleTest extends TestCase {
+	private ConnectivityOracle oracle;
+	private DTNHost h0, h1, h2, h3, h4;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		ConnectivityOracle.reset();
+		oracle = ConnectivityOracle.getInstance();
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		h3 = utils.createHost();
+		h4 = utils.createHost();
+	}
+
+	private Connection connect(DTNHost from, DTNHost to) {
+		Connection con = new CBRConnection(from, from.getInterfaces().get(0),
+				to, to.getInterfaces().get(0), 10);
+		oracle.connectionUp(from, con);
+		oracle.connectionUp(to, con); // told from both ends
+		return con;
+	}
+
+	public void testJoins() {
+		assertTrue(oracle.isConnected(h0, h0));
+		assertFalse(oracle.isConnected(h0, h1));
+		assertEquals(1, oracle.getComponentSize(h0));
+
+		connect(h0, h1);
+		connect(h2, h3);
+		assertTrue(oracle.isConnected(h0, h1));
+		assertFalse(oracle.isConnected(h1, h2));
+		assertEquals(2, oracle.getComponentSize(h3));
+
+		connect(h1, h2);
+		assertTrue(oracle.isConnected(h0, h3));
+		assertFalse(oracle.isConnected(h0, h4));
+
+		List<DTNHost> component = oracle.getComponent(h2);
+		assertEquals(4, component.size());
+		assertTrue(component.contains(h0));
+		assertTrue(component.contains(h3));
+		assertFalse(component.contains(h4));
+		assertEquals(1, oracle.getComponent(h4).size());
+	}
+
+	public void testSplits() {
+		connect(h0, h1);
+		Connection c12 = connect(h1, h2);
+		connect(h2, h3);
+		connect(h0, h2); // a cycle: 0-1-2-0
+		assertEquals(4, oracle.getComponentSize(h0));
+
+		oracle.connectionDown(h1, c12);
+		oracle.connectionDown(h2, c12);
+		assertTrue(oracle.isConnected(h1, h3)); // still via h0
+
+		Connection c34 = connect(h3, h4);
+		assertEquals(5, oracle.getComponentSize(h1));
+		oracle.connectionDown(h3, c34);
+		assertFalse(oracle.isConnected(h0, h4));
+		assertEquals(1, oracle.getComponent(h4).size());
+		assertEquals(4, oracle.getComponent(h1).size());
+	}
+
+	public void testReset() {
+		connect(h0, h1);
+		ConnectivityOracle.reset();
+		assertFalse(ConnectivityOracle.getInstance().isConnected(h0, h1));
+	}
+}
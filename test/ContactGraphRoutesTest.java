@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.schedule.ContactGraphRoutes;
+import routing.schedule.ContactPlan;
+
+/**
+ * Tests for the contact plan and the earliest arrival routes over it.
+ */
+public class ContactGraphRoutesTest extends TestCase {
+	private static final double DELTA = 0.0000001;
+	private static final double NEVER = ContactGraphRoutes.NEVER;
+
+	private ContactPlan plan;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		plan = new ContactPlan();
+	}
+
+	public void testNextContact() {
+		plan.addContact(0, 1, 10, 20);
+		plan.addContact(1, 0, 30, 40);
+		assertEquals(1, plan.getNrofPairs(0));
+		assertEquals(1, plan.getNrofPairs(1));
+		assertEquals(0, plan.getNrofPairs(5));
+
+		int p = plan.getPair(0, 0);
+		assertEquals(1, plan.getOtherNode(p, 0));
+		assertEquals(0, plan.getOtherNode(p, 1));
+		assertEquals(0, plan.getNextContact(p, 0));
+		assertEquals(0, plan.getNextContact(p, 15));
+		assertEquals(1, plan.getNextContact(p, 20));
+		assertEquals(1, plan.getNextContact(p, 39));
+		assertEquals(-1, plan.getNextContact(p, 40));
+		assertEquals(30.0, plan.getStart(p, 1), DELTA);
+	}
+
+	public void testConnectionEvents() {
+		plan.addConnectionEvent(0, 1, true, 10);
+		plan.addConnectionEvent(1, 0, true, 12); // second interface
+		plan.addConnectionEvent(0, 1, false, 15);
+		plan.addConnectionEvent(0, 1, false, 20);
+		plan.addConnectionEvent(2, 1, true, 25);
+
+		int p = plan.getPair(0, 0);
+		assertEquals(0, plan.getNextContact(p, 0));
+		assertEquals(10.0, plan.getStart(p, 0), DELTA);
+		assertEquals(20.0, plan.getEnd(p, 0), DELTA);
+		assertEquals(-1, plan.getNextContact(p, 20));
+
+		p = plan.getPair(2, 0);
+		assertEquals(ContactPlan.NEVER, plan.getEnd(p, 0));
+	}
+
+	public void testRoutes() {
+		plan.addContact(0, 1, 10, 20);
+		plan.addContact(1, 2, 30, 40);
+		plan.addContact(0, 3, 5, 8);
+		plan.addContact(3, 2, 50, 60);
+		ContactGraphRoutes r = new ContactGraphRoutes(plan, 0);
+
+		assertEquals(1, r.getNextHop(2, 0));
+		assertEquals(30.0, r.getArrivalTime(2, 0), DELTA);
+		assertEquals(3, r.getNextHop(3, 0));
+		assertEquals(5.0, r.getArrivalTime(3, 0), DELTA);
+		assertEquals(-1, r.getNextHop(4, 0));
+		assertEquals(-1, r.getNextHop(0, 0));
+
+		/* direct contact to 3 has ended; 3 is reachable through 1 and 2 */
+		assertEquals(1, r.getNextHop(3, 9));
+		assertEquals(50.0, r.getArrivalTime(3, 9), DELTA);
+		assertEquals(1, r.getNextHop(2, 15));
+		assertEquals(30.0, r.getArrivalTime(2, 15), DELTA);
+		assertEquals(1, r.getNextHop(1, 15));
+		assertEquals(15.0, r.getArrivalTime(1, 15), DELTA);
+
+		/* contact to 1 has ended */
+		assertEquals(-1, r.getNextHop(2, 20));
+		assertEquals(NEVER, r.getArrivalTime(1, 20));
+
+		/* going back in time recalculates the routes */
+		assertEquals(3, r.getNextHop(3, 0));
+	}
+
+	public void testWaitingForBetterRoute() {
+		plan.addContact(0, 1, 0, 10);
+		plan.addContact(1, 2, 100, 110);
+		plan.addContact(0, 2, 50, 60);
+		ContactGraphRoutes r = new ContactGraphRoutes(plan, 0);
+
+		/* direct contact later is better than relaying now */
+		assertEquals(2, r.getNextHop(2, 0));
+		assertEquals(50.0, r.getArrivalTime(2, 0), DELTA);
+		assertEquals(-1, r.getNextHop(2, 60));
+	}
+
+	public void testAgainstBruteForce() {
+		Random rng = new Random(42);
+		int nrofNodes = 15;
+		double[] arrival = new double[nrofNodes];
+		for (int a = 0; a < nrofNodes; a++) {
+			for (int b = a + 1; b < nrofNodes; b++) {
+				double t = 0;
+				while (rng.nextDouble() < 0.7) {
+					t += rng.nextInt(200);
+					double end = t + 1 + rng.nextInt(50);
+					plan.addContact(a, b, t, end);
+					t = end;
+				}
+			}
+		}
+
+		ContactGraphRoutes r = new ContactGraphRoutes(plan, 0);
+		for (double now = 0; now < 1000; now += rng.nextInt(30)) {
+			/* Bellman-Ford style relaxation until nothing changes */
+			Arrays.fill(arrival, NEVER);
+			arrival[0] = now;
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int u = 0; u < nrofNodes; u++) {
+					if (arrival[u] == NEVER) {
+						continue;
+					}
+					for (int i = 0; i < plan.getNrofPairs(u); i++) {
+						int p = plan.getPair(u, i);
+						int v = plan.getOtherNode(p, u);
+						int c = plan.getNextContact(p, arrival[u]);
+						if (c < 0) {
+							continue;
+						}
+						double t = Math.max(arrival[u], plan.getStart(p, c));
+						if (t < arrival[v]) {
+							arrival[v] = t;
+							changed = true;
+						}
+					}
+				}
+			}
+
+			for (int v = 1; v < nrofNodes; v++) {
+				assertEquals(arrival[v], r.getArrivalTime(v, now), DELTA);
+				int hop = r.getNextHop(v, now);
+				if (arrival[v] == NEVER) {
+					assertEquals(-1, hop);
+				}
+				else {
+					assertTrue(hop >= 0);
+				}
+			}
+		}
+	}
+}
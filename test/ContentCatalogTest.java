@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.nddr.ContentCatalog;
+import routing.nddr.NameTree;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Tests for the NDDR content catalog.
+ */
+public class ContentCatalogTest extends TestCase {
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+	}
+
+	public void testNames() {
+		ts.putSetting(ContentCatalog.NROF_NAMES_S, "1000");
+		ContentCatalog c = new ContentCatalog(ts, 100);
+
+		assertEquals("A", c.getName(0));
+		assertEquals("Z", c.getName(25));
+		assertEquals("AA", c.getName(26));
+		assertEquals("AZ", c.getName(51));
+		assertEquals("BA", c.getName(52));
+		for (int id = 0; id < c.getNrofNames(); id++) {
+			assertEquals(id, c.getId(c.getName(id)));
+		}
+
+		assertEquals(-1, c.getId("a"));
+		assertEquals(-1, c.getId("A1"));
+		assertEquals(-1, c.getId("ZZZZ"));
+	}
+
+	public void testDefaultProducers() {
+		ContentCatalog c = new ContentCatalog(ts, 100);
+		assertEquals(ContentCatalog.DEFAULT_NROF_NAMES, c.getNrofNames());
+
+		assertEquals(0, c.getProducedNames(0).length);
+		assertEquals(0, c.getProducedNames(89).length);
+		for (int i = 0; i < 10; i++) {
+			int[] names = c.getProducedNames(90 + i);
+			assertEquals(1, names.length);
+			assertEquals(i, names[0]);
+		}
+		assertEquals(0, c.getProducedNames(100).length);
+	}
+
+	public void testProducersWithinHosts() {
+		/* the default producers follow the number of hosts */
+		ContentCatalog c = new ContentCatalog(ts, 50);
+		assertEquals(1, c.getProducedNames(40).length);
+		assertEquals(1, c.getProducedNames(49).length);
+
+		ts.putSetting(ContentCatalog.PRODUCERS_S, "90,100");
+		new ContentCatalog(ts, 100);
+		try {
+			new ContentCatalog(ts, 50);
+			fail("Producer range over the hosts not detected");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testReplicas() {
+		ts.putSetting(ContentCatalog.NROF_NAMES_S, "50");
+		ts.putSetting(ContentCatalog.PRODUCERS_S, "10,20");
+		ts.putSetting(ContentCatalog.NROF_REPLICAS_S, "3");
+		ContentCatalog c = new ContentCatalog(ts, 100);
+
+		int[] copies = new int[c.getNrofNames()];
+		for (int address = 0; address < 100; address++) {
+			int[] names = c.getProducedNames(address);
+			if (address < 10 || address >= 20) {
+				assertEquals(0, names.length);
+			}
+			Set<Integer> distinct = new HashSet<Integer>();
+			for (int id : names) {
+				assertTrue(distinct.add(id));
+				copies[id]++;
+			}
+		}
+		for (int id = 0; id < copies.length; id++) {
+			assertEquals(3, copies[id]);
+		}
+		for (int id = 0; id < copies.length; id++) {
+			int[] producers = c.getProducers(id);
+			assertEquals(3, producers.length);
+			for (int address : producers) {
+				boolean found = false;
+				for (int produced : c.getProducedNames(address)) {
+					found |= (produced == id);
+				}
+				assertTrue(found);
+			}
+		}
+	}
+
+	public void testHierarchicalNames() {
+		ts.putSetting(ContentCatalog.NAME_FANOUTS_S, "3,2,30");
+		ts.putSetting(ContentCatalog.PRODUCERS_S, "10,12");
+		ContentCatalog c = new ContentCatalog(ts, 100);
+		NameTree tree = c.getNameTree();
+
+		assertEquals(180, c.getNrofNames());
+		assertEquals("/A/A/A", c.getName(0));
+		assertEquals("/A/A/AD", c.getName(29));
+		assertEquals("/A/B/A", c.getName(30));
+		assertEquals("/C/B/AD", c.getName(179));
+		for (int id = 0; id < c.getNrofNames(); id++) {
+			assertEquals(id, c.getId(c.getName(id)));
+			assertEquals(3, tree.getDepth(c.getNode(id)));
+		}
+		assertEquals(-1, c.getId("/A/B"));
+		assertEquals(-1, c.getId("/D/A/A"));
+
+		/* producers get whole top level prefixes */
+		int[] prefixes = c.getProducedPrefixes(10);
+		assertEquals(2, prefixes.length);
+		assertEquals("/A", tree.getName(prefixes[0]));
+		assertEquals("/C", tree.getName(prefixes[1]));
+		assertEquals(120, c.getProducedNames(10).length);
+		assertEquals(60, c.getProducedNames(11).length);
+		for (int id : c.getProducedNames(11)) {
+			assertEquals(11, c.getProducers(id)[0]);
+			assertTrue(c.getName(id).startsWith("/B/"));
+		}
+	}
+
+	public void testChunkIds() {
+		ContentCatalog c = new ContentCatalog(ts, 100);
+		int chunkId = c.getChunkId(7, 3);
+		assertEquals(7, c.getChunkId(7, 0));
+		assertEquals(7, c.getObjectId(chunkId));
+		assertEquals(3, c.getChunkIndex(chunkId));
+		assertEquals("H/3", c.getChunkName(chunkId));
+		try {
+			c.getChunkId(7, Integer.MAX_VALUE / 5);
+			fail("Chunk ID overflow not detected");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testDeterministic() {
+		ts.putSetting(ContentCatalog.NROF_REPLICAS_S, "2");
+		ContentCatalog c1 = new ContentCatalog(ts, 100);
+		ContentCatalog c2 = new ContentCatalog(ts, 100);
+
+		for (int address = 90; address < 100; address++) {
+			assertEquals(c1.getProducedNames(address).length,
+					c2.getProducedNames(address).length);
+		}
+		for (int i = 0; i < 100; i++) {
+			int id = c1.drawName();
+			assertEquals(id, c2.drawName());
+			assertTrue(id >= 0 && id < c1.getNrofNames());
+		}
+	}
+}
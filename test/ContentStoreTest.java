@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.nddr.ContentStore;
+import routing.nddr.FifoContentStore;
+import routing.nddr.LfuContentStore;
+import routing.nddr.LruContentStore;
+
+/**
+ * Tests for the NDDR content stores and their replacement policies.
+ */
+public class ContentStoreTest extends TestCase {
+	private static final String CONTENT = "content";
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(ContentStore.CS_SIZE_S, "300");
+	}
+
+	/**
+	 * Adds entries 0, 1 and 2 (100 bytes each) to a store and looks up
+	 * the given entries
+	 */
+	private void fill(ContentStore cs, int... lookups) {
+		for (int id = 0; id < 3; id++) {
+			assertTrue(cs.add(id, CONTENT, 100));
+		}
+		for (int id : lookups) {
+			assertEquals(CONTENT, cs.lookup(id));
+		}
+	}
+
+	public void testFifo() {
+		ContentStore cs = new FifoContentStore(ts).replicate();
+		fill(cs, 0, 0, 1);
+		cs.add(3, CONTENT, 100);
+		assertFalse(cs.contains(0));
+		cs.add(4, CONTENT, 100);
+		assertFalse(cs.contains(1));
+		assertTrue(cs.contains(2));
+	}
+
+	public void testLru() {
+		ContentStore cs = new LruContentStore(ts).replicate();
+		fill(cs, 0, 1);
+		cs.add(3, CONTENT, 100);
+		assertFalse(cs.contains(2));
+		cs.add(4, CONTENT, 100);
+		assertFalse(cs.contains(0));
+		assertTrue(cs.contains(1));
+		assertTrue(cs.contains(3));
+	}
+
+	public void testLfu() {
+		ContentStore cs = new LfuContentStore(ts).replicate();
+		fill(cs, 0, 0, 1, 2, 2);
+		cs.add(3, CONTENT, 100);
+		assertFalse(cs.contains(1));
+		cs.add(4, CONTENT, 100);
+		assertFalse(cs.contains(3)); // new entries are used least
+		assertEquals(CONTENT, cs.lookup(4));
+		assertEquals(CONTENT, cs.lookup(4));
+		cs.add(5, CONTENT, 100);
+		assertFalse(cs.contains(0)); // oldest of the most used ones
+		assertTrue(cs.contains(2));
+		assertTrue(cs.contains(4));
+	}
+
+	public void testCounters() {
+		ContentStore cs = new LruContentStore(ts).replicate();
+		fill(cs, 0, 1);
+		assertNull(cs.lookup(5));
+		assertTrue(cs.add(0, CONTENT, 100)); // already cached
+		assertFalse(cs.add(5, CONTENT, 301));
+		cs.add(5, CONTENT, 250);
+
+		assertEquals(2, cs.getNrofHits());
+		assertEquals(1, cs.getNrofMisses());
+		assertEquals(4, cs.getNrofInsertions());
+		assertEquals(3, cs.getNrofEvictions());
+		assertEquals(1, cs.getNrofRejections());
+		assertEquals(1, cs.size());
+		assertEquals(250, cs.getUsed());
+		assertEquals(250, cs.evict());
+		assertEquals(-1, cs.evict());
+		assertEquals(0, cs.getUsed());
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.prophet.DeliveryPredictabilities;
+import core.DTNHost;
+
+/**
+ * Tests for the PRoPHET delivery predictability table
+ */
+public class DeliveryPredictabilitiesTest extends TestCase {
+	private static final double DELTA = 1e-12;
+	private DeliveryPredictabilities preds;
+	private DTNHost h1, h2, h3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		h3 = utils.createHost();
+		preds = new DeliveryPredictabilities();
+	}
+
+	public void testSetAndGet() {
+		assertEquals(0.0, preds.get(h1), DELTA);
+		assertEquals(0, preds.size());
+
+		preds.set(h2, 0.5);
+		preds.set(h1, 0.25);
+		preds.set(h2, 0.75);
+
+		assertEquals(0.25, preds.get(h1), DELTA);
+		assertEquals(0.75, preds.get(h2), DELTA);
+		assertEquals(0.0, preds.get(h3), DELTA);
+		assertEquals(0.0, preds.get(h3.getAddress() + 1000), DELTA);
+
+		assertEquals(2, preds.size());
+		assertEquals(h2, preds.getHost(0));
+		assertEquals(0.75, preds.getValue(0), DELTA);
+		assertEquals(h1, preds.getHost(1));
+	}
+
+	public void testAging() {
+		preds.set(h1, 0.5);
+		preds.age(0.5);
+		assertEquals(0.25, preds.get(h1), DELTA);
+
+		preds.set(h2, 0.5); // set after aging isn't aged
+		assertEquals(0.5, preds.get(h2), DELTA);
+
+		preds.age(0.1);
+		assertEquals(0.025, preds.get(h1), DELTA);
+		assertEquals(0.05, preds.get(h2), DELTA);
+	}
+
+	public void testRenormalization() {
+		preds.set(h1, 1.0);
+		for (int i = 0; i < 500; i++) {
+			preds.age(0.5);
+			if (i == 9) {
+				preds.set(h2, 1.0);
+			}
+		}
+
+		assertEquals(Math.pow(0.5, 500), preds.get(h1), 1e-160);
+		assertEquals(Math.pow(0.5, 490) / preds.get(h2), 1.0, 1e-9);
+
+		preds.set(h3, 0.5);
+		assertEquals(0.5, preds.get(h3), DELTA);
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.nddr.DistanceTable;
+import core.SimClock;
+
+/**
+ * Tests for the NDDR Distance Table.
+ */
+public class DistanceTableTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	public void testUpdate() {
+		DistanceTable dt = new DistanceTable(Double.MAX_VALUE);
+		assertFalse(dt.isKnown(3));
+		assertEquals(DistanceTable.UNKNOWN, dt.getDistance(3));
+		assertEquals(-1.0, dt.getUpdateTime(100), 0.0);
+
+		clock.setTime(5);
+		dt.update(3, 2, 7);
+		dt.update(100, 4, 1); // grows the table
+		assertTrue(dt.isKnown(3));
+		assertEquals(2, dt.getDistance(3));
+		assertEquals(7, dt.getSeqnum(3));
+		assertEquals(5.0, dt.getUpdateTime(3), 0.0);
+		assertEquals(4, dt.getDistance(100));
+		assertFalse(dt.isKnown(50));
+
+		clock.setTime(1000000);
+		assertTrue(dt.isKnown(3));
+	}
+
+	public void testAgeing() {
+		DistanceTable dt = new DistanceTable(10);
+		dt.update(1, 2, 0);
+		clock.setTime(8);
+		dt.update(2, 3, 0);
+
+		clock.setTime(10);
+		assertEquals(2, dt.getDistance(1));
+		clock.setTime(11);
+		assertEquals(DistanceTable.UNKNOWN, dt.getDistance(1));
+		assertFalse(dt.isKnown(1));
+		assertEquals(3, dt.getDistance(2));
+
+		dt.update(1, 5, 1);
+		assertEquals(5, dt.getDistance(1));
+	}
+
+	public void testMerge() {
+		DistanceTable dt = new DistanceTable(Double.MAX_VALUE);
+		assertTrue(dt.merge(1, 3, 5));
+		assertFalse(dt.merge(1, 2, 4)); // older
+		assertFalse(dt.merge(1, 3, 5)); // not shorter
+		assertTrue(dt.merge(1, 2, 5));
+		assertTrue(dt.merge(1, 6, 6)); // fresher
+		assertEquals(6, dt.getDistance(1));
+		assertEquals(6, dt.getSeqnum(1));
+
+		int[] distances = dt.getDistances();
+		assertEquals(6, distances[1]);
+		assertEquals(DistanceTable.UNKNOWN, distances[0]);
+		assertEquals(6, dt.getSeqnums()[1]);
+	}
+}
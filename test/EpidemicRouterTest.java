@@ -619,4 +619,106 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
-}
+
+	/**
+	 * Returns the IDs of the messages whose transfer was started, in order,
+	 * and drains the message checker
+	 */
+	private String drainStarts() {
+		String ids = "";
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_START)) {
+				ids += mc.getLastMsg().getId() + " ";
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Transfers all the messages of h1 to another node and returns the
+	 * order of the transfers
+	 */
+	private String sendAll(DTNHost other, int nrof) {
+		String ids = "";
+		h1.connect(other);
+		for (int i = 0; i < nrof; i++) {
+			updateAllNodes();
+			ids += drainStarts();
+			clock.advance(10);
+		}
+		updateAllNodes();
+		ids += drainStarts();
+		disconnect(other);
+		return ids;
+	}
+
+	public void testRandomSendingQPerConnection() throws Exception {
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				""+MessageRouter.Q_MODE_RANDOM);
+		this.setUp();
+		for (int i = 1; i <= 5; i++) {
+			newMessage("" + i, h1, h4);
+			clock.advance(1);
+		}
+		mc.reset();
+
+		/* every connection gets the messages in the same (random) order */
+		String order = sendAll(h2, 5);
+		assertEquals(10, order.length());
+		assertEquals(order, sendAll(h3, 5));
+	}
+
+	public void testFifoSendingQUpdatedDuringContact() throws Exception {
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				""+MessageRouter.Q_MODE_FIFO);
+		this.setUp();
+		newMessage("1", h1, h4);
+		clock.advance(1);
+		newMessage("2", h1, h4);
+		mc.reset();
+
+		h1.connect(h2);
+		updateAllNodes();
+		assertEquals("1 ", drainStarts());
+
+		/* a new message goes to the end of the open connection's queue */
+		clock.advance(0.05);
+		newMessage("3", h1, h4);
+		for (int i = 0; i < 3; i++) {
+			clock.advance(10);
+			updateAllNodes();
+		}
+		assertEquals("2 3 ", drainStarts());
+	}
+
+	public void testDeniedMessagesLeaveConnectionQueue() throws Exception {
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				""+MessageRouter.Q_MODE_FIFO);
+		this.setUp();
+		newMessage(msgId1, h1, h4);
+		clock.advance(1);
+		newMessage(msgId2, h1, h4);
+		newMessage(msgId1, h2, h4); // h2 already has msgId1
+		mc.reset();
+
+		h1.connect(h2);
+		updateAllNodes(); // msgId1 is denied as old, msgId2 is sent
+		assertEquals(msgId2 + " ", drainStarts());
+		clock.advance(10);
+		updateAllNodes();
+		assertEquals("", drainStarts());
+
+		/* msgId1 isn't offered again during the same connection... */
+		h2.deleteMessage(msgId1, false);
+		updateAllNodes();
+		clock.advance(10);
+		updateAllNodes();
+		assertEquals("", drainStarts());
+
+		/* ...but the queue is dropped when the link goes down */
+		disconnect(h2);
+		h1.connect(h2);
+		updateAllNodes();
+		assertEquals(msgId1 + " ", drainStarts());
+	}
+}
@@ -0,0 +1,94 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import routing.eviction.DropLargestPolicy;
+import routing.eviction.DropMostReplicatedPolicy;
+import routing.eviction.DropNearestExpiryPolicy;
+import routing.eviction.DropOldestPolicy;
+import routing.eviction.EvictionPolicy;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the buffer eviction policies
+ */
+public class EvictionPolicyTest extends TestCase {
+	private SimClock sc = SimClock.getInstance();
+	private TestSettings ts;
+	private Message m1, m2, m3;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		
+		m1 = new Message(null, null, "M1", 300);
+		m1.setTtl(10);
+		sc.advance(10);
+		m2 = new Message(null, null, "M2", 100);
+		m2.setTtl(1);
+		m2.addNodeOnPath(null);
+		m2.addNodeOnPath(null);
+		sc.advance(10);
+		m3 = new Message(null, null, "M3", 200);
+		m3.setTtl(5);
+		m3.addNodeOnPath(null);
+	}
+	
+	private EvictionPolicy fill(EvictionPolicy proto) {
+		EvictionPolicy p = proto.replicate();
+		p.messageAdded(m2);
+		p.messageAdded(m3);
+		p.messageAdded(m1);
+		return p;
+	}
+	
+	private void assertOrder(EvictionPolicy p, Message... expected) {
+		Iterator<Message> i = p.iterator();
+		for (Message m : expected) {
+			assertTrue(i.hasNext());
+			assertEquals(m, i.next());
+		}
+		assertFalse(i.hasNext());
+	}
+	
+	public void testDropOldest() {
+		EvictionPolicy p = fill(new DropOldestPolicy(ts));
+		assertOrder(p, m1, m2, m3);
+		p.messageRemoved(m1);
+		assertOrder(p, m2, m3);
+		assertEquals(2, p.size());
+	}
+	
+	public void testDropLargest() {
+		assertOrder(fill(new DropLargestPolicy(ts)), m1, m3, m2);
+	}
+	
+	public void testDropNearestExpiry() {
+		assertOrder(fill(new DropNearestExpiryPolicy(ts)), m2, m3, m1);
+	}
+	
+	public void testDropMostReplicated() {
+		EvictionPolicy p = fill(new DropMostReplicatedPolicy(ts));
+		assertOrder(p, m2, m3, m1);
+		p.messageRemoved(m3);
+		assertOrder(p, m2, m1);
+	}
+	
+	public void testEqualKeys() {
+		EvictionPolicy p = new DropOldestPolicy(ts).replicate();
+		Message a = new Message(null, null, "A", 10);
+		Message b = new Message(null, null, "B", 10);
+		p.messageAdded(b);
+		p.messageAdded(a);
+		assertEquals(2, p.size()); // same receive time, both are indexed
+		p.messageRemoved(a);
+		assertOrder(p, b);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.maxprop.HopCountHistogram;
+
+/**
+ * Tests for the hop count histogram of the MaxProp routers.
+ */
+public class HopCountHistogramTest extends TestCase {
+	private HopCountHistogram hist;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		hist = new HopCountHistogram();
+	}
+
+	public void testEmpty() {
+		assertEquals(-1, hist.getHopCountFor(100));
+		hist.add(3, 10);
+		hist.remove(3, 10);
+		assertEquals(-1, hist.getHopCountFor(100));
+	}
+
+	public void testPrefixSums() {
+		hist.add(2, 100);
+		hist.add(0, 50);
+		hist.add(2, 100);
+		hist.add(5, 20);
+
+		assertEquals(0, hist.getHopCountFor(1));
+		assertEquals(0, hist.getHopCountFor(50));
+		assertEquals(2, hist.getHopCountFor(51));
+		assertEquals(2, hist.getHopCountFor(250));
+		assertEquals(5, hist.getHopCountFor(251));
+		assertEquals(5, hist.getHopCountFor(1000)); // more than all
+
+		hist.remove(5, 20);
+		assertEquals(2, hist.getHopCountFor(1000));
+		hist.remove(0, 50);
+		assertEquals(2, hist.getHopCountFor(1));
+	}
+
+	public void testGrowing() {
+		hist.add(100, 10);
+		hist.add(1, 10);
+		assertEquals(100, hist.getHopCountFor(11));
+		hist.remove(100, 10);
+		assertEquals(1, hist.getHopCountFor(11));
+	}
+}
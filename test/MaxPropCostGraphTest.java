@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.maxprop.MaxPropCostGraph;
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Tests for MaxProp's incrementally updated cost graph.
+ */
+public class MaxPropCostGraphTest extends TestCase {
+	private static final double DELTA = 0.0000001;
+	private static final int NROF_NODES = 30;
+
+	private MaxPropCostGraph graph;
+	private Map<Integer, MeetingProbabilitySet> mapping;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		graph = new MaxPropCostGraph();
+		mapping = new HashMap<Integer, MeetingProbabilitySet>();
+	}
+
+	private void meet(int node, int other, int maxSetSize) {
+		MeetingProbabilitySet mps = mapping.get(node);
+		if (mps == null) {
+			mps = new MeetingProbabilitySet(maxSetSize, 1.0);
+			mapping.put(node, mps);
+		}
+		mps.updateMeetingProbFor(other);
+		graph.setProbs(node, mps);
+	}
+
+	public void testPath() {
+		meet(0, 1, 10);
+		meet(1, 2, 10);
+		assertEquals(0.0, graph.getCost(0, 0), DELTA);
+		assertEquals(0.0, graph.getCost(0, 1), DELTA);
+		assertEquals(0.0, graph.getCost(0, 2), DELTA);
+		assertEquals(MaxPropCostGraph.INFINITY, graph.getCost(0, 3));
+		assertEquals(MaxPropCostGraph.INFINITY, graph.getCost(2, 0));
+
+		meet(1, 3, 10); // P(1->2) = P(1->3) = 0.5
+		assertEquals(0.5, graph.getCost(0, 2), DELTA);
+		assertEquals(0.5, graph.getCost(0, 3), DELTA);
+
+		meet(0, 3, 10); // P(0->1) = P(0->3) = 0.5
+		assertEquals(0.5, graph.getCost(0, 3), DELTA);
+		assertEquals(1.0, graph.getCost(0, 2), DELTA);
+
+		/* unknown nodes are unreachable */
+		assertEquals(MaxPropCostGraph.INFINITY, graph.getCost(0, 100));
+		assertEquals(MaxPropCostGraph.INFINITY, graph.getCost(100, 0));
+		assertEquals(0.0, graph.getCost(100, 100), DELTA);
+	}
+
+	public void testEdgeRemoval() {
+		meet(0, 1, 2);
+		meet(1, 2, 2);
+		assertEquals(0.0, graph.getCost(0, 2), DELTA);
+
+		/* set size 2: meeting 3 and 4 drops 2 from node 1's set */
+		meet(1, 3, 2);
+		meet(1, 4, 2);
+		assertEquals(MaxPropCostGraph.INFINITY, graph.getCost(0, 2));
+	}
+
+	public void testAgainstDijkstra() {
+		Random rng = new Random(42);
+		MaxPropDijkstra dijkstra = new MaxPropDijkstra(mapping);
+		Set<Integer> targets = new HashSet<Integer>();
+		for (int i = 0; i < NROF_NODES; i++) {
+			targets.add(i);
+		}
+
+		for (int round = 0; round < 500; round++) {
+			int node = rng.nextInt(NROF_NODES);
+			int other = rng.nextInt(NROF_NODES);
+			if (node == other) {
+				continue;
+			}
+			meet(node, other, 5);
+
+			int[] sources = {0, 1, rng.nextInt(NROF_NODES)};
+			for (int from : sources) {
+				Map<Integer, Double> costs = dijkstra.getCosts(from, targets);
+				for (int to = 0; to < NROF_NODES; to++) {
+					Double expected = costs.get(to);
+					double cost = graph.getCost(from, to);
+					if (expected == null) {
+						assertEquals(MaxPropCostGraph.INFINITY, cost);
+					}
+					else {
+						assertEquals(expected, cost, DELTA);
+					}
+				}
+			}
+		}
+	}
+}
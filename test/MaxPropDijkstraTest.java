@@ -154,4 +154,28 @@ public class MaxPropDijkstraTest extends TestCase {
 		
 	}
 	
+	public void testSnapshots() {
+		MeetingProbabilitySet mps = mapping.get(0);
+		mps.updateMeetingProbFor(1);
+		int version = mps.getVersion();
+		
+		MeetingProbabilitySet snapshot = mps.getSnapshot();
+		assertSame(snapshot, mps.getSnapshot()); // shared until modified
+		assertSame(snapshot, snapshot.getSnapshot());
+		assertEquals(version, snapshot.getVersion());
+		
+		mps.updateMeetingProbFor(2);
+		assertTrue(mps.getVersion() > version);
+		assertNotSame(snapshot, mps.getSnapshot());
+		assertEquals(1.0, snapshot.getProbFor(1), DELTA); // not changed
+		assertEquals(0.5, mps.getSnapshot().getProbFor(1), DELTA);
+		
+		try {
+			snapshot.updateMeetingProbFor(3);
+			fail("Snapshot was modifiable");
+		} catch (core.SimError e) {
+			// expected
+		}
+	}
+	
 }
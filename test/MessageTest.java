@@ -60,5 +60,20 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testIdIndex() {
+		Message other = new Message(from, to, "OtherMsg", 100);
+		Message copy = msg.replicate();
+		
+		assertEquals(msg.getIdIndex(), copy.getIdIndex());
+		assertEquals(msg.getIdIndex(), Message.getIdIndex("M"));
+		assertTrue(msg.getIdIndex() >= 0);
+		assertTrue(other.getIdIndex() >= 0);
+		assertTrue(msg.getIdIndex() != other.getIdIndex());
+
+		assertEquals(msg.getIdIndex(), Message.findIdIndex("M"));
+		assertEquals(-1, Message.findIdIndex("NeverSeenMsg"));
+		assertEquals(-1, Message.findIdIndex("NeverSeenMsg"));
+	}
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.MessageTransferAcceptPolicy;
+import util.Range;
+import core.ArithmeticCondition;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests that the compiled message transfer accept policy gives the same
+ * results as checking the address lists and hop count conditions directly.
+ */
+public class MessageTransferAcceptPolicyTest extends TestCase {
+	private static final String POLICY_NS = "testPolicy";
+	private static final int NROF_HOSTS = 8;
+	private static final int MAX_HOPS = 20;
+
+	private TestSettings ts;
+	private DTNHost[] hosts;
+	private int base;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		hosts = new DTNHost[NROF_HOSTS];
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			hosts[i] = utils.createHost();
+		}
+		base = hosts[0].getAddress();
+		ts.setNameSpace(null);
+		ts.putSetting(MessageTransferAcceptPolicy.MTA_POLICY_NS, POLICY_NS);
+	}
+
+	/**
+	 * Sets a policy setting
+	 */
+	private void set(String name, String value) {
+		ts.putSetting(POLICY_NS + "." + name, value);
+	}
+
+	/**
+	 * Returns an address list of hosts (by their index); -1 is passed as is
+	 */
+	private String addresses(int... indexes) {
+		StringBuilder sb = new StringBuilder();
+		for (int i : indexes) {
+			if (sb.length() > 0) {
+				sb.append(",");
+			}
+			sb.append(i == MessageTransferAcceptPolicy.TO_ME_VALUE ?
+					i : base + i);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The uncompiled address list check
+	 */
+	private static boolean inList(String list, DTNHost host, int thisHost) {
+		if (list == null) {
+			return true;
+		}
+		for (String s : list.split(",")) {
+			Range r = new Range(s);
+			if (r.isInRange(MessageTransferAcceptPolicy.TO_ME_VALUE) &&
+					host.getAddress() == thisHost) {
+				return true;
+			} else if (r.isInRange(host.getAddress())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The uncompiled hop count check
+	 */
+	private static boolean hopCountOk(String cond, Message m, DTNHost to) {
+		return cond == null || m.getTo() == to ||
+			new ArithmeticCondition(cond).isTrueFor(m.getHopCount());
+	}
+
+	/**
+	 * Creates a message from a host to a host that has traveled the given
+	 * number of hops
+	 */
+	private Message msg(DTNHost from, DTNHost to, int hops) {
+		Message m = new Message(from, to, "M", 100);
+		for (int i = 0; i < hops; i++) {
+			m.addNodeOnPath(hosts[i % NROF_HOSTS]);
+		}
+		return m;
+	}
+
+	/**
+	 * Checks that the policy gives the same result as the uncompiled rules
+	 * for all sender, receiver, source and destination combinations. The
+	 * hop counts are checked from the biggest down so that the compiled
+	 * rules are checked right after they have grown too.
+	 */
+	private void assertSameAsRules(String toSend, String fromSend,
+			String hopSend, String toRecv, String fromRecv, String hopRecv) {
+		MessageTransferAcceptPolicy p = new MessageTransferAcceptPolicy(ts);
+		for (int hops = MAX_HOPS; hops >= 0; hops -= 3) {
+			for (DTNHost from : hosts) {
+				for (DTNHost to : hosts) {
+					Message m = msg(from, to, hops);
+					for (DTNHost s : hosts) {
+						for (DTNHost r : hosts) {
+							boolean send = inList(toSend, to, s.getAddress()) &&
+								inList(fromSend, from, s.getAddress()) &&
+								hopCountOk(hopSend, m, r);
+							boolean recv = inList(toRecv, to, r.getAddress()) &&
+								inList(fromRecv, from, r.getAddress()) &&
+								hopCountOk(hopRecv, m, r);
+							String info = m + " " + from + "->" + to + " " +
+								s + "->" + r + " hops " + hops;
+							assertEquals("send " + info, send,
+									p.acceptSending(s, r, null, m));
+							assertEquals("receive " + info, recv,
+									p.acceptReceiving(s, r, m));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public void testNoPolicy() {
+		assertSameAsRules(null, null, null, null, null, null);
+	}
+
+	public void testToSendPolicy() {
+		String list = addresses(1, 3) + "," + (base + 5) + "-" + (base + 6);
+		set(MessageTransferAcceptPolicy.TO_SPOLICY_S, list);
+		assertSameAsRules(list, null, null, null, null, null);
+	}
+
+	public void testFromSendPolicy() {
+		String list = addresses(0, 2);
+		set(MessageTransferAcceptPolicy.FROM_SPOLICY_S, list);
+		assertSameAsRules(null, list, null, null, null, null);
+	}
+
+	public void testToMe() {
+		String toList = addresses(MessageTransferAcceptPolicy.TO_ME_VALUE, 4);
+		String fromList = addresses(MessageTransferAcceptPolicy.TO_ME_VALUE);
+		set(MessageTransferAcceptPolicy.TO_SPOLICY_S, toList);
+		set(MessageTransferAcceptPolicy.FROM_SPOLICY_S, fromList);
+		set(MessageTransferAcceptPolicy.TO_RPOLICY_S, toList);
+		set(MessageTransferAcceptPolicy.FROM_RPOLICY_S, fromList);
+		assertSameAsRules(toList, fromList, null, toList, fromList, null);
+	}
+
+	public void testHopCountPolicies() {
+		set(MessageTransferAcceptPolicy.HOPCOUNT_SPOLICY_S, "<5");
+		set(MessageTransferAcceptPolicy.HOPCOUNT_RPOLICY_S, ">7");
+		assertSameAsRules(null, null, "<5", null, null, ">7");
+
+		set(MessageTransferAcceptPolicy.HOPCOUNT_SPOLICY_S, "=2");
+		set(MessageTransferAcceptPolicy.HOPCOUNT_RPOLICY_S, "<100");
+		assertSameAsRules(null, null, "=2", null, null, "<100");
+	}
+
+	public void testCombinedPolicies() {
+		String toList = addresses(1, 2, 3);
+		String fromList = addresses(MessageTransferAcceptPolicy.TO_ME_VALUE, 5);
+		set(MessageTransferAcceptPolicy.TO_SPOLICY_S, toList);
+		set(MessageTransferAcceptPolicy.FROM_SPOLICY_S, fromList);
+		set(MessageTransferAcceptPolicy.HOPCOUNT_SPOLICY_S, ">3");
+		set(MessageTransferAcceptPolicy.FROM_RPOLICY_S, toList);
+		set(MessageTransferAcceptPolicy.HOPCOUNT_RPOLICY_S, "<10");
+		assertSameAsRules(toList, fromList, ">3", null, toList, "<10");
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import routing.MessageRouter;
+import routing.NDDRRouter;
+import routing.nddr.ChunkRetrieval;
+import routing.nddr.ContentCatalog;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Tests for the NDDR router.
+ */
+public class NDDRRouterTest extends AbstractRouterTest {
+	private static final String TEST_NS = "NDDRRouterTest";
+	private static final int CHUNK_SIZE = 10;
+	private static final int WINDOW = 4;
+
+	private NDDRRouter r0;
+	private ContentCatalog catalog;
+
+	@Override
+	public void setUp() throws Exception {
+		TestSettings rs = new TestSettings(TEST_NS);
+		rs.putSetting(MessageRouter.MSG_TTL_S, "300");
+		rs.putSetting(MessageRouter.B_SIZE_S, "10000");
+		rs.putSetting(NDDRRouter.CHUNK_SIZE_S, "" + CHUNK_SIZE);
+		rs.putSetting(NDDRRouter.CHUNK_WINDOW_S, "" + WINDOW);
+		rs.putSetting(NDDRRouter.CHUNK_INTEREST_SIZE_S, "1");
+
+		/* four names produced by h5 and h6; h0 produces nothing */
+		TestSettings cs = new TestSettings(ContentCatalog.NDDR_NS);
+		cs.putSetting(ContentCatalog.NROF_NAMES_S, "4");
+		cs.putSetting(ContentCatalog.PRODUCERS_S, "5,7");
+		new TestSettings(SimScenario.GROUP_NS).putSetting(
+				SimScenario.NROF_HOSTS_S, "7");
+		ContentCatalog.reset();
+
+		setRouterProto(new NDDRRouter(rs));
+		super.setUp();
+		r0 = (NDDRRouter)h0.getRouter();
+		catalog = ContentCatalog.getInstance();
+	}
+
+	/**
+	 * Caches the given chunks of every object to the content store of h0
+	 */
+	private void cacheChunks(int... chunks) {
+		for (int id = 0; id < catalog.getNrofNames(); id++) {
+			for (int chunk : chunks) {
+				r0.getContentStore().add(catalog.getChunkId(id, chunk),
+						NDDRRouter.DATA_CONTENT_FOR_TEST, CHUNK_SIZE);
+			}
+		}
+	}
+
+	/**
+	 * Requests an object of the given size at h0 and returns the retrieval
+	 */
+	private ChunkRetrieval request(int size) {
+		h0.createNewMessage(new Message(h0, null, msgId1, size));
+		assertEquals(1, r0.getRetrievals().size());
+		return r0.getRetrievals().get(0);
+	}
+
+	/**
+	 * Returns the indexes of the chunks h0 has Interests for and checks that
+	 * there's only one Interest per chunk
+	 */
+	private Set<Integer> getRequestedChunks() {
+		Set<Integer> chunks = new HashSet<Integer>();
+		for (Message m : r0.getMessageCollection()) {
+			assertEquals(NDDRRouter.TYPE_INTEREST,
+					m.getProperty(NDDRRouter.TYPE));
+			assertTrue("duplicate Interest " + m.getDataName(),
+					chunks.add(catalog.getChunkIndex(m.getDataId())));
+		}
+		return chunks;
+	}
+
+	public void testWindow() {
+		ChunkRetrieval r = request(10 * CHUNK_SIZE);
+		assertEquals(10, r.getNrofChunks());
+		Set<Integer> chunks = getRequestedChunks();
+		assertEquals(WINDOW, chunks.size());
+		for (int i = 0; i < WINDOW; i++) {
+			assertTrue(chunks.contains(i));
+		}
+	}
+
+	public void testPrecachedChunks() {
+		cacheChunks(1, 2, 3, 5);
+		ChunkRetrieval r = request(10 * CHUNK_SIZE);
+
+		/* the cached chunks are received, the window is filled once */
+		assertEquals(4, r.getNrofReceived());
+		Set<Integer> chunks = getRequestedChunks();
+		assertEquals(WINDOW, chunks.size());
+		for (int chunk : new int[] {0, 4, 6, 7}) {
+			assertTrue(chunks.contains(chunk));
+		}
+		assertFalse(r.isComplete());
+	}
+
+	public void testAllChunksPrecached() {
+		cacheChunks(0, 1, 2, 3, 4);
+		ChunkRetrieval r = request(5 * CHUNK_SIZE);
+
+		assertTrue(r.isComplete());
+		assertEquals(0, r0.getNrofMessages());
+		assertEquals(clock.getTime(), r.getCompletionTime());
+	}
+
+	public void testFinishedMessagesRefused() {
+		Message m = new Message(h1, h0, msgId2, 1);
+		assertEquals(MessageRouter.RCV_OK, r0.offerMessage(m, h1));
+		r0.removeFinishedMessage(msgId2);
+
+		/* a finished message is not taken back, offered or received */
+		assertEquals(MessageRouter.DENIED_OLD, r0.offerMessage(m, h1));
+		assertEquals(MessageRouter.DENIED_OLD, r0.receiveMessage(m, h1));
+		assertFalse(r0.hasMessage(msgId2));
+		assertEquals(MessageRouter.RCV_OK,
+				r0.offerMessage(new Message(h1, h0, msgId3, 1), h1));
+	}
+
+	public void testLastChunkSize() {
+		ChunkRetrieval r = request(3 * CHUNK_SIZE + 5);
+		assertEquals(4, r.getNrofChunks());
+		for (Message m : r0.getMessageCollection()) {
+			int chunk = catalog.getChunkIndex(m.getDataId());
+			assertEquals(chunk == 3 ? 5 : CHUNK_SIZE,
+					m.getProperty(NDDRRouter.DATA_SIZE));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import routing.nddr.NameTree;
+
+/**
+ * Tests for the NDDR name tree.
+ */
+public class NameTreeTest extends TestCase {
+	private NameTree tree;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tree = new NameTree();
+	}
+
+	public void testAddAndFind() {
+		int n1 = tree.add("/city/sensor/42");
+		int n2 = tree.add("city/sensor/7/");
+		assertEquals(5, tree.size()); // root, city, sensor, 42 and 7
+		assertEquals(n1, tree.add("/city//sensor/42"));
+		assertEquals(n1, tree.find("/city/sensor/42"));
+		assertEquals(n2, tree.find("/city/sensor/7"));
+		assertEquals(NameTree.ROOT, tree.find("/"));
+		assertEquals(-1, tree.find("/city/sensor/8"));
+		assertEquals(-1, tree.find("/sensor"));
+
+		int sensor = tree.find("/city/sensor");
+		assertEquals(sensor, tree.getParent(n1));
+		assertEquals(2, tree.getDepth(sensor));
+		assertEquals("42", tree.getComponent(n1));
+		assertEquals("/city/sensor/42", tree.getName(n1));
+		assertEquals("/", tree.getName(NameTree.ROOT));
+		assertEquals(n2, tree.getChild(sensor, "7"));
+		assertEquals(-1, tree.getChild(n1, "7"));
+
+		assertTrue(tree.isPrefix(sensor, n1));
+		assertTrue(tree.isPrefix(n1, n1));
+		assertTrue(tree.isPrefix(NameTree.ROOT, n2));
+		assertFalse(tree.isPrefix(n1, n2));
+		assertFalse(tree.isPrefix(n1, sensor));
+	}
+
+	public void testLongestPrefixMatch() {
+		int city = tree.add("/city");
+		int sensor = tree.add("/city/sensor");
+		int n1 = tree.add("/city/sensor/42/chunk/7");
+		int other = tree.add("/other");
+		BitSet prefixes = new BitSet();
+		assertEquals(-1, tree.longestPrefixMatch(n1, prefixes));
+
+		prefixes.set(city);
+		prefixes.set(other);
+		assertEquals(city, tree.longestPrefixMatch(n1, prefixes));
+		prefixes.set(sensor);
+		assertEquals(sensor, tree.longestPrefixMatch(n1, prefixes));
+		assertEquals(sensor, tree.longestPrefixMatch("/city/sensor/43/x",
+				prefixes));
+		assertEquals(city, tree.longestPrefixMatch("/city/x", prefixes));
+		assertEquals(-1, tree.longestPrefixMatch("/x/city", prefixes));
+		prefixes.set(NameTree.ROOT);
+		assertEquals(NameTree.ROOT, tree.longestPrefixMatch("/x", prefixes));
+	}
+
+	public void testManyNames() {
+		int[] nodes = new int[10000];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = tree.add("/p" + (i % 10) + "/" + i);
+		}
+		assertEquals(1 + 10 + nodes.length, tree.size());
+		for (int i = 0; i < nodes.length; i++) {
+			assertEquals(nodes[i], tree.find("/p" + (i % 10) + "/" + i));
+			assertEquals("/p" + (i % 10) + "/" + i, tree.getName(nodes[i]));
+		}
+		assertEquals(-1, tree.find("/p1/2"));
+	}
+}
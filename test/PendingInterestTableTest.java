@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.nddr.PendingInterestTable;
+import core.DTNHost;
+
+/**
+ * Tests for the NDDR Pending Interest Table.
+ */
+public class PendingInterestTableTest extends TestCase {
+	private PendingInterestTable pit;
+	private DTNHost h0, h1, h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		pit = new PendingInterestTable();
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	public void testAggregation() {
+		assertTrue(pit.add(5, h0, 100));
+		assertFalse(pit.add(5, h1, 100));
+		assertFalse(pit.add(5, h0, 100));
+		assertTrue(pit.add(6, h2, 100));
+
+		assertEquals(2, pit.size());
+		assertEquals(2, pit.getNrofCreated());
+		assertEquals(1, pit.getNrofAggregated());
+		assertEquals(1, pit.getNrofDuplicates());
+
+		List<DTNHost> requesters = pit.getRequesters(5);
+		assertEquals(2, requesters.size());
+		assertEquals(h0, requesters.get(0));
+		assertEquals(h1, requesters.get(1));
+		assertTrue(pit.hasRequester(5, h1));
+		assertFalse(pit.hasRequester(5, h2));
+		assertFalse(pit.hasRequester(7, h0));
+	}
+
+	public void testRemoveRequesters() {
+		pit.add(5, h0, 100);
+		pit.add(5, h1, 100);
+		pit.add(5, h2, 100);
+
+		assertTrue(pit.removeRequester(5, h1));
+		assertFalse(pit.removeRequester(5, h1));
+		assertEquals(2, pit.getRequesters(5).size());
+		assertTrue(pit.add(7, h1, 100));
+		pit.add(5, h1, 100); // back to the requesters
+		assertEquals(3, pit.getRequesters(5).size());
+
+		pit.retainOnly(5, h2);
+		assertEquals(1, pit.getRequesters(5).size());
+		assertEquals(h2, pit.getRequesters(5).get(0));
+
+		pit.satisfy(5);
+		assertFalse(pit.contains(5));
+		assertEquals(0, pit.getRequesters(5).size());
+		assertEquals(1, pit.getNrofSatisfied());
+	}
+
+	public void testExpiry() {
+		pit.add(5, h0, 10);
+		pit.add(5, h1, 20); // extends the entry's lifetime
+		pit.add(6, h0, 15);
+		pit.add(7, h0, 12);
+		pit.add(8, h0, Double.MAX_VALUE);
+		pit.satisfy(7);
+
+		assertEquals(0, pit.expire(9));
+		assertEquals(0, pit.expire(11));
+		assertEquals(1, pit.expire(16));
+		assertFalse(pit.contains(6));
+		assertTrue(pit.contains(5));
+		assertEquals(1, pit.expire(20));
+		assertFalse(pit.contains(5));
+		assertEquals(0, pit.expire(100000));
+		assertEquals(1, pit.size());
+		assertEquals(2, pit.getNrofExpired());
+	}
+}
@@ -0,0 +1,83 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.TimerWheel;
+
+/**
+ * Tests for the hierarchical timer wheel
+ */
+public class TimerWheelTest extends TestCase {
+	private TimerWheel<String> tw;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		tw = new TimerWheel<String>(1.0);
+	}
+	
+	public void testExactExpiry() {
+		tw.schedule("a", 10.5);
+		tw.schedule("b", 10.7);
+		assertEquals(2, tw.size());
+		
+		assertEquals(0, tw.advance(10.0).size());
+		List<String> expired = tw.advance(10.5);
+		assertEquals(1, expired.size());
+		assertEquals("a", expired.get(0));
+		assertEquals(0, tw.advance(10.6).size());
+		expired = tw.advance(11.2);
+		assertEquals(1, expired.size());
+		assertEquals("b", expired.get(0));
+		assertEquals(0, tw.size());
+	}
+	
+	public void testOrderAndPastTimes() {
+		tw.advance(5);
+		tw.schedule("late", 300);
+		tw.schedule("early", 20);
+		tw.schedule("past", 1);
+		
+		List<String> expired = tw.advance(5);
+		assertEquals(1, expired.size());
+		assertEquals("past", expired.get(0));
+		
+		expired = tw.advance(1000);
+		assertEquals(2, expired.size());
+		assertEquals("early", expired.get(0));
+		assertEquals("late", expired.get(1));
+	}
+	
+	public void testCascading() {
+		double[] times = {255, 256, 257, 1000, 16383, 16384, 70000, 
+				2000000, 5.0e8};
+		for (double t : times) {
+			tw.schedule("t" + t, t);
+		}
+		
+		for (double t : times) {
+			assertEquals(0, tw.advance(t - 0.5).size());
+			List<String> expired = tw.advance(t);
+			assertEquals(1, expired.size());
+			assertEquals("t" + t, expired.get(0));
+		}
+		assertEquals(0, tw.size());
+	}
+	
+	public void testCancel() {
+		TimerWheel.Timer<String> t1 = tw.schedule("a", 100);
+		tw.schedule("b", 20000);
+		tw.cancel(t1);
+		tw.cancel(t1);
+		assertEquals(1, tw.size());
+		assertNull(t1.getItem()); // the wheel doesn't hold cancelled items
+		
+		assertEquals(0, tw.advance(19999).size());
+		assertEquals(1, tw.advance(20000).size());
+		assertEquals(0, tw.size());
+	}
+}
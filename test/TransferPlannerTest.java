@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.util.TransferPlanner;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the contact window estimate, the knapsack and the plans of the
+ * transfer planner.
+ */
+public class TransferPlannerTest extends TestCase {
+	private static final double DELTA = 0.0001;
+	private static final Coord STILL = new Coord(0, 0);
+
+	private static boolean[] choose(long budget, long... sizes) {
+		/* values by the order of the items, like the planner's default */
+		double[] values = new double[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			values[i] = sizes.length - i;
+		}
+		return TransferPlanner.choose(budget, sizes, values);
+	}
+
+	private static void assertChosen(boolean[] chosen, boolean... expected) {
+		assertEquals(expected.length, chosen.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("item " + i, expected[i], chosen[i]);
+		}
+	}
+
+	public void testContactWindowNoRelativeMovement() {
+		assertEquals(Double.MAX_VALUE, TransferPlanner.getContactWindow(
+				new Coord(0, 0), STILL, new Coord(5, 0), STILL, 10), DELTA);
+		Coord v = new Coord(3, 4);
+		assertEquals(Double.MAX_VALUE, TransferPlanner.getContactWindow(
+				new Coord(0, 0), v, new Coord(5, 0), v, 10), DELTA);
+	}
+
+	public void testContactWindowMovingApart() {
+		/* 5 units apart, separating with speed 1 -> 5 s left of range 10 */
+		assertEquals(5, TransferPlanner.getContactWindow(new Coord(0, 0),
+				STILL, new Coord(5, 0), new Coord(1, 0), 10), DELTA);
+		/* both moving: relative speed 2 */
+		assertEquals(2.5, TransferPlanner.getContactWindow(new Coord(0, 0),
+				new Coord(-1, 0), new Coord(5, 0), new Coord(1, 0), 10), DELTA);
+	}
+
+	public void testContactWindowPassingBy() {
+		/* 5 units behind, approaching with speed 1: passes and leaves range
+		 * after 5 + 10 s */
+		assertEquals(15, TransferPlanner.getContactWindow(new Coord(0, 0),
+				STILL, new Coord(-5, 0), new Coord(1, 0), 10), DELTA);
+	}
+
+	public void testContactWindowOutOfRange() {
+		assertEquals(0, TransferPlanner.getContactWindow(new Coord(0, 0),
+				STILL, new Coord(20, 0), new Coord(1, 0), 10), DELTA);
+		assertEquals(0, TransferPlanner.getContactWindow(new Coord(0, 0),
+				STILL, new Coord(0, 20), new Coord(1, 0), 10), DELTA);
+	}
+
+	public void testChooseAllFit() {
+		assertChosen(choose(1000, 100, 200, 300), true, true, true);
+	}
+
+	public void testChooseKeepsQueueOrder() {
+		/* only two of the three equal sized items fit: the first ones */
+		assertChosen(choose(256, 128, 128, 128), true, true, false);
+		assertChosen(choose(384, 200, 200, 100), true, false, true);
+	}
+
+	public void testChooseBestValue() {
+		/* a big first item is worth less than the two that fit instead */
+		assertChosen(choose(1280, 1280, 640, 640, 640),
+				false, true, true, false);
+		/* explicit values */
+		boolean[] chosen = TransferPlanner.choose(1024,
+				new long[] {500, 500, 500}, new double[] {1, 5, 3});
+		assertChosen(chosen, false, true, true);
+	}
+
+	public void testChooseRoundsUp() {
+		/* with 128 units of 10 bytes each item takes 4 units */
+		boolean[] chosen = choose(1280, 31, 31, 31, 31, 31, 31, 31, 31, 31,
+				31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31, 31,
+				31, 31, 31, 31, 31, 31, 31, 31);
+		long total = 0;
+		int n = 0;
+		for (int i = 0; i < chosen.length; i++) {
+			if (chosen[i]) {
+				total += 31;
+				n++;
+			}
+		}
+		assertTrue(total <= 1280);
+		assertEquals(32, n);
+		assertFalse(chosen[chosen.length - 1]);
+	}
+
+	public void testChooseSmallBudget() {
+		assertChosen(choose(3, 1, 1, 2), true, true, false);
+		assertChosen(choose(3, 2, 1, 1), true, true, false);
+		assertChosen(choose(0), new boolean[0]);
+	}
+
+	public void testRefusedMessages() {
+		TestSettings ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		DTNHost h0 = utils.createHost();
+		DTNHost h1 = utils.createHost();
+		h0.connect(h1);
+		Connection con = h0.getConnections().get(0);
+		ActiveRouter router = (ActiveRouter)h0.getRouter();
+		TransferPlanner p = new TransferPlanner(ts);
+
+		Message m1 = new Message(h0, h1, "M1", 10);
+		Message m2 = new Message(h0, h1, "M2", 10);
+		Message m3 = new Message(h0, h1, "M3", 10);
+		Message m4 = new Message(h0, h1, "M4", 10);
+		List<Message> queue = new ArrayList<Message>(
+				Arrays.asList(m1, m2, m3));
+		assertEquals(Arrays.asList(m1, m2, m3),
+				p.getPlan(router, h0, con, queue));
+
+		/* a refused head of the plan doesn't block the rest */
+		p.refused(con, m1);
+		assertEquals(Arrays.asList(m2, m3), p.getPlan(router, h0, con, queue));
+
+		/* a new plan is made when all of the plan is refused, without the
+		 * refused messages */
+		p.refused(con, m2);
+		p.refused(con, m3);
+		assertTrue(p.getPlan(router, h0, con, queue).isEmpty());
+		queue.add(m4);
+		p.messageAdded(m4);
+		assertEquals(Arrays.asList(m4), p.getPlan(router, h0, con, queue));
+
+		/* the refusals last only for the contact */
+		p.connectionDown(con);
+		assertEquals(queue, p.getPlan(router, h0, con, queue));
+	}
+}
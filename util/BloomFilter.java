@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Bloom filter of (long) integer keys. A compact set representation that never
+ * gives false negatives but may give false positives with a probability
+ * that depends on the size of the filter. The filter is sized for the
+ * expected number of keys and the wanted false positive rate; the bit
+ * positions of a key are computed with double hashing.
+ */
+public class BloomFilter {
+	/** smallest filter size (bits) */
+	private static final int MIN_BITS = 64;
+
+	private final long[] bits;
+	private final int nrofBits;
+	private final int nrofHashes;
+
+	/**
+	 * Creates an empty filter.
+	 * @param expectedKeys Expected number of keys in the filter
+	 * @param fpRate Wanted false positive probability (0-1) when the
+	 * filter has the expected number of keys
+	 */
+	public BloomFilter(int expectedKeys, double fpRate) {
+		assert fpRate > 0 && fpRate < 1 : "Invalid false positive rate " +
+			fpRate;
+		int n = Math.max(1, expectedKeys);
+		double ln2 = Math.log(2);
+		int m = (int)Math.ceil(-n * Math.log(fpRate) / (ln2 * ln2));
+		m = Math.max(MIN_BITS, (m + 63) & ~63);
+
+		this.nrofBits = m;
+		this.nrofHashes = Math.max(1, (int)Math.round((double)m / n * ln2));
+		this.bits = new long[m / 64];
+	}
+
+	/**
+	 * Adds a key to the filter
+	 * @param key The key
+	 */
+	public void add(long key) {
+		int h1 = mix((int)key ^ mix((int)(key >>> 32)));
+		int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = index(h1 + i * h2);
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Returns true if the key may be in the filter
+	 * @param key The key
+	 * @return false if the key is certainly not in the filter, true if it
+	 * (probably) is
+	 */
+	public boolean mightContain(long key) {
+		int h1 = mix((int)key ^ mix((int)(key >>> 32)));
+		int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = index(h1 + i * h2);
+			if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the size of the filter
+	 * @return The size in bytes
+	 */
+	public int getSizeInBytes() {
+		return this.nrofBits / 8;
+	}
+
+	/**
+	 * Returns the number of hash functions the filter uses
+	 * @return the number of hash functions
+	 */
+	public int getNrofHashes() {
+		return this.nrofHashes;
+	}
+
+	/**
+	 * Maps a hash value to a bit index of the filter
+	 */
+	private int index(int hash) {
+		return (int)((hash & 0xFFFFFFFFL) % this.nrofBits);
+	}
+
+	/**
+	 * Scrambles the bits of a key (MurmurHash3 finalizer)
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel for scheduling items to expire at given
+ * (simulation) times. Scheduling and cancelling a timer are O(1) operations
+ * and advancing the wheel costs O(1) amortised per elapsed tick and expired
+ * timer (timers further in the future are cascaded down the levels at most
+ * once per level).
+ * <P>
+ * The time axis is split into ticks of fixed length. The root level has one
+ * slot per tick for the next {@value #ROOT_SIZE} ticks and every upper level
+ * covers {@value #LEVEL_SIZE} times longer period with the same number of
+ * slots. Timers are still expired at their exact time: the slot of the
+ * current tick is only emptied of the timers whose time has passed.
+ * </P>
+ */
+public class TimerWheel<T> {
+	private static final int ROOT_BITS = 8;
+	private static final int LEVEL_BITS = 6;
+	/** Number of slots in the root level ({@value}) */
+	public static final int ROOT_SIZE = 1 << ROOT_BITS;
+	/** Number of slots in the upper levels ({@value}) */
+	public static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+	private static final int ROOT_MASK = ROOT_SIZE - 1;
+	private static final int LEVEL_MASK = LEVEL_SIZE - 1;
+	/** number of levels above the root level */
+	private static final int NROF_LEVELS = 4;
+
+	/** length of one tick (simulated seconds) */
+	private final double tickLength;
+	/** slots of the root level */
+	private List<Timer<T>>[] root;
+	/** slots of the upper levels */
+	private List<Timer<T>>[][] levels;
+	/** the tick that is processed next (all previous ticks are done) */
+	private long currentTick;
+	/** number of scheduled (not expired or cancelled) timers */
+	private int size;
+	/** number of timers in the slots (including cancelled ones) */
+	private int stored;
+
+	/**
+	 * Creates a new timer wheel.
+	 * @param tickLength Length of one tick of the wheel. Timers that expire
+	 * within the same tick are kept in the same slot.
+	 */
+	public TimerWheel(double tickLength) {
+		assert tickLength > 0 : "Invalid tick length " + tickLength;
+		this.tickLength = tickLength;
+		this.root = newSlots(ROOT_SIZE);
+		this.levels = newLevels(NROF_LEVELS, LEVEL_SIZE);
+		this.currentTick = 0;
+		this.size = 0;
+		this.stored = 0;
+	}
+
+	/**
+	 * Creates an array of empty slots
+	 * @param size Number of slots
+	 * @return The slot array
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<Timer<T>>[] newSlots(int size) {
+		return (List<Timer<T>>[])new List<?>[size];
+	}
+
+	/**
+	 * Creates the slot arrays of the upper levels
+	 * @param nrofLevels Number of levels
+	 * @param size Number of slots per level
+	 * @return The slot arrays
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<Timer<T>>[][] newLevels(int nrofLevels, int size) {
+		return (List<Timer<T>>[][])new List<?>[nrofLevels][size];
+	}
+
+	/**
+	 * Schedules an item to expire at the given time. If the time has already
+	 * passed, the item expires on the next call of {@link #advance(double)}.
+	 * @param item The item
+	 * @param time The expiry time
+	 * @return The timer that can be used for cancelling the expiry
+	 */
+	public Timer<T> schedule(T item, double time) {
+		Timer<T> t = new Timer<T>(item, time, toTick(time));
+		insert(t);
+		this.size++;
+		this.stored++;
+		return t;
+	}
+
+	/**
+	 * Cancels a timer. Cancelled timers are never returned by
+	 * {@link #advance(double)}. The wheel drops its reference to the item
+	 * right away; the timer itself is removed from its slot later.
+	 * @param t The timer to cancel
+	 */
+	public void cancel(Timer<T> t) {
+		if (!t.cancelled && !t.expired) {
+			t.cancelled = true;
+			t.item = null;
+			this.size--;
+		}
+	}
+
+	/**
+	 * Returns the number of scheduled timers
+	 * @return the number of scheduled timers
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Advances the wheel to the given time and returns the items whose
+	 * expiry time is at or before that time.
+	 * @param now The current time
+	 * @return The expired items in expiry tick order (an empty list if
+	 * nothing expired)
+	 */
+	public List<T> advance(double now) {
+		long nowTick = toTick(now);
+		List<T> expired = null;
+
+		if (this.size == 0) {
+			if (nowTick > this.currentTick) {
+				/* nothing scheduled; skipping the ticks is safe */
+				if (this.stored > 0) {
+					clearSlots(); // drop the cancelled timers
+				}
+				this.currentTick = nowTick;
+			}
+			return Collections.emptyList();
+		}
+
+		while (this.currentTick < nowTick) {
+			List<Timer<T>> slot = root[(int)(currentTick & ROOT_MASK)];
+			if (slot != null) {
+				root[(int)(currentTick & ROOT_MASK)] = null;
+				for (Timer<T> t : slot) {
+					expired = expire(t, expired);
+				}
+			}
+			this.currentTick++;
+			if ((this.currentTick & ROOT_MASK) == 0) {
+				cascade();
+			}
+		}
+
+		/* the current tick: expire only the timers whose time has come */
+		List<Timer<T>> slot = root[(int)(currentTick & ROOT_MASK)];
+		if (slot != null) {
+			List<Timer<T>> remaining = null;
+			for (Timer<T> t : slot) {
+				if (t.time <= now || t.cancelled) {
+					expired = expire(t, expired);
+				} else {
+					if (remaining == null) {
+						remaining = new ArrayList<Timer<T>>(slot.size());
+					}
+					remaining.add(t);
+				}
+			}
+			root[(int)(currentTick & ROOT_MASK)] = remaining;
+		}
+
+		if (expired == null) {
+			return Collections.emptyList();
+		}
+		return expired;
+	}
+
+	/**
+	 * Removes a timer from the wheel and, if the timer wasn't cancelled,
+	 * marks it expired and adds its item to the list
+	 * @param t The timer
+	 * @param list The list to add to (or null if no list is created yet)
+	 * @return The list (created if necessary)
+	 */
+	private List<T> expire(Timer<T> t, List<T> list) {
+		this.stored--;
+		if (t.cancelled) {
+			return list;
+		}
+		t.expired = true;
+		this.size--;
+		if (list == null) {
+			list = new ArrayList<T>();
+		}
+		list.add(t.item);
+		return list;
+	}
+
+	/**
+	 * Moves the timers of the upper level slots that start at the current
+	 * tick to lower levels
+	 */
+	private void cascade() {
+		for (int level = 0; level < NROF_LEVELS; level++) {
+			int index = (int)((currentTick >>>
+					(ROOT_BITS + level * LEVEL_BITS)) & LEVEL_MASK);
+			List<Timer<T>> slot = levels[level][index];
+			levels[level][index] = null;
+			if (slot != null) {
+				for (Timer<T> t : slot) {
+					if (!t.cancelled) {
+						insert(t);
+					} else {
+						this.stored--;
+					}
+				}
+			}
+			if (index != 0) {
+				break; // higher levels didn't wrap
+			}
+		}
+	}
+
+	/**
+	 * Inserts a timer to the right slot based on its tick
+	 * @param t The timer to insert
+	 */
+	private void insert(Timer<T> t) {
+		long tick = Math.max(t.tick, this.currentTick);
+		long delta = tick - this.currentTick;
+		List<Timer<T>>[] slots;
+		int index;
+
+		if (delta < ROOT_SIZE) {
+			slots = root;
+			index = (int)(tick & ROOT_MASK);
+		}
+		else {
+			int level = 0;
+			while (level < NROF_LEVELS - 1 &&
+					delta >= (1L << (ROOT_BITS + (level + 1) * LEVEL_BITS))) {
+				level++;
+			}
+			int shift = ROOT_BITS + level * LEVEL_BITS;
+			if (delta >= (1L << (shift + LEVEL_BITS))) {
+				/* beyond the wheel's range: park to the farthest slot; the
+				 * timer is re-inserted when that slot is cascaded */
+				tick = this.currentTick + (1L << (shift + LEVEL_BITS)) - 1;
+			}
+			slots = levels[level];
+			index = (int)((tick >>> shift) & LEVEL_MASK);
+		}
+
+		if (slots[index] == null) {
+			slots[index] = new ArrayList<Timer<T>>(2);
+		}
+		slots[index].add(t);
+	}
+
+	/**
+	 * Empties all slots (used when the wheel has no live timers)
+	 */
+	private void clearSlots() {
+		this.stored = 0;
+		for (int i = 0; i < ROOT_SIZE; i++) {
+			root[i] = null;
+		}
+		for (int level = 0; level < NROF_LEVELS; level++) {
+			for (int i = 0; i < LEVEL_SIZE; i++) {
+				levels[level][i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Converts a time to a tick number
+	 * @param time The time
+	 * @return The tick the time belongs to
+	 */
+	private long toTick(double time) {
+		return (long)Math.floor(time / this.tickLength);
+	}
+
+	/**
+	 * A scheduled expiry of an item
+	 */
+	public static class Timer<T> {
+		private T item;
+		private final double time;
+		private final long tick;
+		private boolean cancelled;
+		private boolean expired;
+
+		private Timer(T item, double time, long tick) {
+			this.item = item;
+			this.time = time;
+			this.tick = tick;
+			this.cancelled = false;
+			this.expired = false;
+		}
+
+		/**
+		 * Returns the item of this timer
+		 * @return the item (null if the timer was cancelled)
+		 */
+		public T getItem() {
+			return this.item;
+		}
+
+		/**
+		 * Returns the expiry time of this timer
+		 * @return the expiry time
+		 */
+		public double getTime() {
+			return this.time;
+		}
+	}
+}